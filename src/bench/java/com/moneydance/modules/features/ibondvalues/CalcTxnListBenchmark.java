@@ -0,0 +1,86 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of building, scanning and pruning the calculated interest payments
+ * of a 30-year bond, as done for each holding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CalcTxnListBenchmark {
+    private static final int NUM_MONTHS = 360;
+    private static final YearMonth ISSUE_MONTH = YearMonth.of(1998, 9);
+
+    private CalcTxn[] txns;
+    private CalcTxnList txnList;
+    private YearMonth midMonth;
+
+    @Setup
+    public void setUp() {
+        this.txns = new CalcTxn[NUM_MONTHS];
+        for (int m = 0; m < NUM_MONTHS; ++m) {
+            YearMonth month = ISSUE_MONTH.plusMonths(m);
+            // interest is deferred 3 months during the first 5 years
+            YearMonth payMonth = m < 57 ? month.plusMonths(3) : m < 60
+                    ? ISSUE_MONTH.plusMonths(60) : month.plusMonths(1);
+            this.txns[m] = new CalcTxn(payMonth, BigDecimal.valueOf(4000 + m, 2),
+                    "%tb %<tY interest".formatted(month));
+        }
+        this.txnList = fill();
+        this.midMonth = ISSUE_MONTH.plusMonths(NUM_MONTHS / 2);
+    } // end setUp()
+
+    /**
+     * @return New list holding all our transactions
+     */
+    private CalcTxnList fill() {
+        CalcTxnList txnList = new CalcTxnList();
+        for (CalcTxn txn : this.txns) {
+            txnList.add(txn);
+        }
+
+        return txnList;
+    } // end fill()
+
+    @Benchmark
+    public CalcTxnList add() {
+
+        return fill();
+    } // end add()
+
+    @Benchmark
+    public void tailKeys(Blackhole bh) {
+        for (YearMonth month : this.txnList.tailKeys(this.midMonth)) {
+            bh.consume(this.txnList.getForMonth(month));
+        }
+
+    } // end tailKeys(Blackhole)
+
+    @Benchmark
+    public CalcTxnList removeIf() {
+        CalcTxnList txnList = fill();
+        txnList.removeIf(txn -> txn.payMonth().isAfter(this.midMonth));
+
+        return txnList;
+    } // end removeIf()
+
+} // end class CalcTxnListBenchmark
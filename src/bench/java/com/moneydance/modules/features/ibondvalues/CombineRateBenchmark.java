@@ -0,0 +1,55 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.IBondImporter.IBondRateRec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of composing every fixed and inflation rate pair in the fixture rate history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CombineRateBenchmark {
+    private BigDecimal[] fixedRates;
+    private BigDecimal[] inflationRates;
+
+    @Setup
+    public void setUp() throws Exception {
+        IBondRateRec[] recs = FixtureRates.load().values().toArray(new IBondRateRec[0]);
+        this.fixedRates = new BigDecimal[recs.length * recs.length];
+        this.inflationRates = new BigDecimal[this.fixedRates.length];
+        int i = 0;
+        for (IBondRateRec fixedRec : recs) {
+            for (IBondRateRec inflationRec : recs) {
+                this.fixedRates[i] = fixedRec.fixedRate();
+                this.inflationRates[i++] = inflationRec.inflationRate();
+            }
+        }
+    } // end setUp()
+
+    @Benchmark
+    public void combineRate(Blackhole bh) {
+        for (int i = 0; i < this.fixedRates.length; ++i) {
+            bh.consume(CompositeRateSchedule.combineRate(this.fixedRates[i],
+                    this.inflationRates[i]));
+        }
+
+    } // end combineRate(Blackhole)
+
+} // end class CombineRateBenchmark
@@ -0,0 +1,74 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Throughput of calculating all interest payments for one I bond with the
+ * fixture rate history, by bond age, redemptions and interest calculation kernel.
+ * Ages past the fixture's history use its earliest issue month.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterestEngineBenchmark {
+    @Param({"1", "10", "30"})
+    public int years;
+
+    @Param({"false", "true"})
+    public boolean redeem;
+
+    @Param({"scaled", "decimal"})
+    public String kernel;
+
+    private IBondImporter importer;
+    private String ticker;
+    private Function<YearMonth, BigDecimal> monthNet;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.importer = FixtureRates.importer(this.kernel);
+        RateTable table = this.importer.getRateTable();
+        int issue = Math.max(table.firstOrdinal(), table.lastOrdinal() - this.years * 12);
+        YearMonth issueMonth = RateTable.monthOf(issue);
+        this.ticker = "IBond%d%02d".formatted(issueMonth.getYear(), issueMonth.getMonthValue());
+
+        // add to the bond after a few months, then redeem part of it half way to now
+        YearMonth addMonth = issueMonth.plusMonths(3);
+        YearMonth redeemMonth = issueMonth.plusMonths((table.lastOrdinal() - issue) / 2 + 1);
+        this.monthNet = month -> {
+            if (month.equals(issueMonth))
+                return BigDecimal.valueOf(10000);
+            if (this.redeem && month.equals(addMonth))
+                return BigDecimal.valueOf(5000);
+            if (this.redeem && month.equals(redeemMonth))
+                return BigDecimal.valueOf(-2500.37);
+
+            return BigDecimal.ZERO;
+        };
+    } // end setUp()
+
+    @Benchmark
+    public CalcTxnList calcIBondInterestTxns() throws Exception {
+
+        return this.importer.calcIBondInterestTxns(this.ticker, this.monthNet, rates -> {});
+    } // end calcIBondInterestTxns()
+
+} // end class InterestEngineBenchmark
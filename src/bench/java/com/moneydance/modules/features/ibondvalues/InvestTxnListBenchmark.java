@@ -0,0 +1,128 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.infinitekind.moneydance.model.Account;
+import com.infinitekind.moneydance.model.AccountBook;
+import com.infinitekind.moneydance.model.InvestFields;
+import com.infinitekind.moneydance.model.InvestTxnType;
+import com.infinitekind.moneydance.model.ParentTxn;
+import com.infinitekind.moneydance.model.TransactionSet;
+import io.github.jrhillery.moneydance.MdUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.infinitekind.moneydance.model.InvestTxnType.BUY;
+import static com.infinitekind.moneydance.model.InvestTxnType.SELL;
+
+/**
+ * Throughput of loading, the way holdings are loaded, and querying the transactions
+ * of a 30-year I bond holding in an in-memory Moneydance book: a purchase at issue,
+ * a purchase and a sale every few years, and a recorded interest payment every month.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvestTxnListBenchmark {
+    private static final int NUM_MONTHS = 360;
+    private static final YearMonth ISSUE_MONTH = YearMonth.of(1998, 9);
+
+    private TransactionSet txnSet;
+    private Account securityAccount;
+    private List<Account> securityAccounts;
+    private InvestTxnList txnList;
+    private YearMonth[] months;
+
+    /**
+     * Record a purchase or sale of I bond shares at the fixed price.
+     *
+     * @param book          Moneydance account book
+     * @param investAccount Investment account
+     * @param txnType       BUY or SELL
+     * @param month         Month of the transaction
+     * @param cents         Amount in cents
+     */
+    private void recordTrade(AccountBook book, Account investAccount,
+            InvestTxnType txnType, YearMonth month, long cents) {
+        ParentTxn pTxn = new ParentTxn(book);
+        pTxn.setEditingMode();
+        pTxn.setAccount(investAccount);
+
+        InvestFields invFields = new InvestFields();
+        invFields.txnType = txnType;
+        invFields.date = MdUtil.convLocalToDateInt(month.atDay(15));
+        invFields.taxDate = invFields.date;
+        invFields.shares = cents;
+        invFields.hasShares = true;
+        invFields.amount = cents;
+        invFields.hasAmount = true;
+        invFields.price = TxnHandler.FIXED_PRICE;
+        invFields.hasPrice = true;
+        invFields.security = this.securityAccount;
+        invFields.hasSecurity = true;
+        invFields.storeFields(pTxn);
+        pTxn.syncItem();
+
+    } // end recordTrade(AccountBook, Account, InvestTxnType, YearMonth, long)
+
+    @Setup
+    public void setUp() {
+        AccountBook book = AccountBook.fakeAccountBook();
+        Account investAccount = Account.makeAccount(book,
+                Account.AccountType.INVESTMENT, book.getRootAccount());
+        investAccount.setAccountName("TreasuryDirect");
+        investAccount.syncItem();
+        this.securityAccount = Account.makeAccount(book,
+                Account.AccountType.SECURITY, investAccount);
+        this.securityAccount.setAccountName("I Bond 1998-09");
+        this.securityAccount.syncItem();
+
+        this.months = new YearMonth[NUM_MONTHS];
+        recordTrade(book, investAccount, BUY, ISSUE_MONTH, 1_000_000);
+        for (int m = 0; m < NUM_MONTHS; ++m) {
+            this.months[m] = ISSUE_MONTH.plusMonths(m);
+            if (m > 0 && m % 40 == 0) {
+                recordTrade(book, investAccount, BUY, this.months[m], 500_000);
+                recordTrade(book, investAccount, SELL, this.months[m], 250_037);
+            }
+            new TxnHandler(book, investAccount, this.securityAccount,
+                    new CalcTxn(this.months[m].plusMonths(1), BigDecimal.valueOf(4000 + m, 2),
+                            "%tb %<tY interest".formatted(this.months[m]))).applyUpdate();
+        }
+        this.txnSet = book.getTransactionSet();
+        this.securityAccounts = List.of(this.securityAccount);
+        this.txnList = InvestTxnList.loadAll(this.txnSet, this.securityAccounts)
+                .get(this.securityAccount);
+    } // end setUp()
+
+    @Benchmark
+    public Map<Account, InvestTxnList> loadAll() {
+
+        return InvestTxnList.loadAll(this.txnSet, this.securityAccounts);
+    } // end loadAll()
+
+    @Benchmark
+    public void getChangesForMonth(Blackhole bh) {
+        for (YearMonth month : this.months) {
+            bh.consume(this.txnList.getChangesForMonth(month));
+        }
+
+    } // end getChangesForMonth(Blackhole)
+
+} // end class InvestTxnListBenchmark
@@ -0,0 +1,74 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.BatchValues.Holding;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput, in simulated inflation paths per second, of projecting a portfolio of
+ * I bonds ten years past the fixture rate history, by inflation model and thread count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark {
+    private static final int NUM_PATHS = 100;
+
+    @Param({"bootstrap", "parametric"})
+    public String model;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"10", "40"})
+    public int holdings;
+
+    private ValueProjection projection;
+    private long seed = 0;
+
+    @Setup
+    public void setUp() throws Exception {
+        IBondImporter importer = FixtureRates.importer();
+        RateTable table = importer.getRateTable();
+        List<Holding> portfolio = new ArrayList<>();
+
+        // a bond bought every 7 months, going back from the latest rates
+        for (int i = 0; i < this.holdings; ++i) {
+            YearMonth issueMonth = RateTable.monthOf(table.lastOrdinal() - i * 7);
+            TreeMap<YearMonth, BigDecimal> monthNet = new TreeMap<>();
+            monthNet.put(issueMonth, BigDecimal.valueOf(10000));
+            portfolio.add(new Holding("h" + i, "IBond%d%02d".formatted(issueMonth.getYear(),
+                    issueMonth.getMonthValue()), monthNet));
+        }
+        this.projection = new ValueProjection(importer, ValueProjection.model(this.model, table),
+                portfolio, table.lastMonth(), 10 * 12 + 1);
+    } // end setUp()
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_PATHS)
+    public List<ValueProjection.Band> project() throws Exception {
+
+        return this.projection.project(NUM_PATHS, ++this.seed, this.threads);
+    } // end project()
+
+} // end class ProjectionBenchmark
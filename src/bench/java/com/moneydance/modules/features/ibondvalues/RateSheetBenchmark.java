@@ -0,0 +1,136 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.IBondImporter.IBondRateRec;
+import org.dhatim.fastexcel.reader.Cell;
+import org.dhatim.fastexcel.reader.CellType;
+import org.dhatim.fastexcel.reader.ReadableWorkbook;
+import org.dhatim.fastexcel.reader.Row;
+import org.dhatim.fastexcel.reader.Sheet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.math.RoundingMode.HALF_UP;
+import static org.dhatim.fastexcel.reader.CellType.FORMULA;
+import static org.dhatim.fastexcel.reader.CellType.NUMBER;
+
+/**
+ * Parse time of the fixture rate history spreadsheet, reading the whole workbook
+ * into memory and walking cells through Optional as before, versus spooling it to a
+ * temporary file and reading only our columns. Run with -prof gc for bytes allocated
+ * per parse; the peak heap of each fork is printed when its trial ends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateSheetBenchmark {
+    private static final String DATA_SHEET = "Data";
+    /** Fixture column indexes, which the streaming parser finds from the headers */
+    private static final int SDATE_COL = 0, FRATE_COL = 2, IRATE_COL = 3;
+
+    private byte[] xlsx;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        try (InputStream iStream = RateSheetBenchmark.class.getClassLoader()
+                .getResourceAsStream(FixtureRates.FIXTURE)) {
+            if (iStream == null)
+                throw new IllegalStateException("Missing test resource " + FixtureRates.FIXTURE);
+            this.xlsx = iStream.readAllBytes();
+        }
+        if (!inMemoryWorkbook().equals(streamingParse()))
+            throw new IllegalStateException("Parsers disagree; check the column indexes");
+        System.gc();
+        ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+    } // end setUp()
+
+    @TearDown(Level.Trial)
+    public void reportPeakHeap() {
+        long peakBytes = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        System.out.format("%nPeak heap %.1f MiB%n", peakBytes / 1048576.0);
+
+    } // end reportPeakHeap()
+
+    /**
+     * The previous ingest: the whole workbook in memory and Optional cell access.
+     *
+     * @return Mapping from months to historical I bond interest rates
+     */
+    @Benchmark
+    public TreeMap<YearMonth, IBondRateRec> inMemoryWorkbook() throws Exception {
+        TreeMap<YearMonth, IBondRateRec> iBondRates = new TreeMap<>();
+        try (ReadableWorkbook wb = new ReadableWorkbook(new ByteArrayInputStream(this.xlsx))) {
+            Sheet dataSheet = wb.findSheet(DATA_SHEET).orElseThrow();
+            try (var rows = dataSheet.openStream()) {
+                rows.forEach(row -> {
+                    Optional<Cell> iRateCell = cellOfType(row, IRATE_COL, NUMBER);
+                    Optional<Cell> fRateCell = cellOfType(row, FRATE_COL, NUMBER);
+                    Optional<Cell> sDateCell = cellOfType(row, SDATE_COL, FORMULA);
+                    if (iRateCell.isPresent() && fRateCell.isPresent() && sDateCell.isPresent()) {
+                        LocalDateTime date = sDateCell.get().asDate();
+                        YearMonth startMonth = YearMonth.of(date.getYear(), date.getMonthValue());
+                        iBondRates.put(startMonth, new IBondRateRec(rate(iRateCell.get()),
+                                rate(fRateCell.get()), startMonth));
+                    }
+                });
+            }
+        }
+
+        return iBondRates;
+    } // end inMemoryWorkbook()
+
+    @Benchmark
+    public TreeMap<YearMonth, IBondRateRec> streamingParse() throws Exception {
+
+        return new RateSheetParser(URI.create(FixtureRates.FIXTURE), DATA_SHEET,
+                "InflationRate", "FixedRate", "From").parse(new ByteArrayInputStream(this.xlsx));
+    } // end streamingParse()
+
+    /**
+     * @param row         Row containing the cell
+     * @param colIndex    Column index of the cell
+     * @param desiredType Desired type of cell
+     * @return Optional cell with the desired type
+     */
+    private static Optional<Cell> cellOfType(Row row, int colIndex, CellType desiredType) {
+
+        return row.getOptionalCell(colIndex).filter(cell -> cell.getType() == desiredType);
+    } // end cellOfType(Row, int, CellType)
+
+    /**
+     * @param cell Cell holding an interest rate
+     * @return Interest rate rounded to the fourth place past the decimal point
+     */
+    private static BigDecimal rate(Cell cell) {
+
+        return cell.asNumber().setScale(IBondImporter.INTEREST_RATE_DIGITS, HALF_UP);
+    } // end rate(Cell)
+
+} // end class RateSheetBenchmark
@@ -0,0 +1,476 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.IBondImporter.IBondRateRec;
+import io.github.jrhillery.moneydance.MdUtil;
+import io.github.jrhillery.moneydance.MduExcepcionito;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Counter.CALC_TXNS;
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Counter.MONTHS;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Command line batch valuation of I bond holdings outside Moneydance, for bulk
+ * valuations and for exercising the interest engine without a user interface.
+ * Holdings are read from a CSV file with lines of holding id, ticker symbol in the
+ * format IBondYYYYMM, date (YYYY-MM-DD or YYYY-MM) and amount, positive for deposits
+ * and negative for redemptions. Blank lines and lines starting with # are ignored.
+ * Each holding's value as of a month, or its full interest payment schedule, is
+ * written as CSV, and throughput is reported on standard error. Alternatively,
+ * percentile bands of the portfolio's value are projected for months ahead over
+ * simulated inflation paths, or redemptions raising an amount are planned at the
+ * least cost in interest forgone.
+ */
+public class BatchValues {
+   /** Interest rate source: a rate snapshot or spreadsheet file, or null */
+   private Path ratesFile = null;
+   /** Properties file serving as local storage for the rate cache, or null */
+   private Path cacheFile = null;
+   /** Output file, or null for standard output */
+   private Path outFile = null;
+   /** Holdings file, or - for standard input */
+   private String holdingsName = null;
+   /** true to write interest payment schedules rather than values */
+   private boolean schedule = false;
+   /** Month to value holdings as of */
+   private YearMonth asOf = YearMonth.now();
+   /** Number of years to project portfolio values, or 0 to value holdings */
+   private int projectYears = 0;
+   /** Number of simulated inflation paths to project */
+   private int numPaths = 2000;
+   /** Seed for simulated inflation paths */
+   private long seed = 1;
+   /** Inflation model for simulated inflation paths */
+   private String modelName = "bootstrap";
+   /** Amount to raise by redeeming holdings in our as-of month, or null */
+   private BigDecimal redeemAmount = null;
+   /** Number of years to count interest forgone by redemptions */
+   private int horizonYears = 5;
+   /** Number of alternative redemption plans to write */
+   private int numPlans = 3;
+   /** Redemption amounts considered are multiples of this step, or null for a default */
+   private BigDecimal redeemStep = null;
+
+   private static final String USAGE = """
+      Usage: java -jar ibondvalues.jar [options] <holdings.csv | ->
+        --rates <file>    rate snapshot (.bin) or TreasuryDirect spreadsheet (.xlsx) to use
+        --cache <file>    properties file caching rates between runs
+        --as-of <YYYY-MM> month to value holdings as of (default this month)
+        --schedule        write each interest payment rather than values
+        --project <years> write portfolio value percentiles by month for years ahead
+        --paths <n>       number of simulated inflation paths to project (default 2000)
+        --seed <n>        seed for simulated inflation paths (default 1)
+        --model <name>    bootstrap or parametric inflation model (default bootstrap)
+        --redeem <amount> plan redemptions raising this amount in the as-of month
+        --horizon <years> years to count interest forgone by redemptions (default 5)
+        --plans <n>       number of alternative redemption plans to write (default 3)
+        --step <amount>   redemption amounts considered are multiples of this step
+        --out <file>      write to a file rather than standard output""";
+
+   /**
+    * Data record for one holding's deposits and redemptions.
+    *
+    * @param id       Holding id
+    * @param ticker   Ticker symbol in the format IBondYYYYMM
+    * @param monthNet Net deposits and redemptions by month
+    */
+   record Holding(String id, String ticker, TreeMap<YearMonth, BigDecimal> monthNet) {
+
+      /**
+       * @param month Month to total
+       * @return Sum of deposits and redemptions in the given month
+       */
+      BigDecimal netFor(YearMonth month) {
+
+         return this.monthNet.getOrDefault(month, BigDecimal.ZERO);
+      } // end netFor(YearMonth)
+
+      /**
+       * @param from    Month after which to total, or null to total from the start
+       * @param through Last month to total
+       * @return Sum of deposits and redemptions in the months
+       */
+      BigDecimal netBetween(YearMonth from, YearMonth through) {
+         var months = from == null ? this.monthNet.headMap(through, true)
+            : this.monthNet.subMap(from, false, through, true);
+
+         return months.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+      } // end netBetween(YearMonth, YearMonth)
+
+   } // end record Holding
+
+   /**
+    * @param args Command line arguments
+    */
+   private void parseArgs(String[] args) {
+      for (int i = 0; i < args.length; ++i) {
+         switch (args[i]) {
+            case "--rates" -> this.ratesFile = Path.of(nextArg(args, ++i));
+            case "--cache" -> this.cacheFile = Path.of(nextArg(args, ++i));
+            case "--out" -> this.outFile = Path.of(nextArg(args, ++i));
+            case "--as-of" -> this.asOf = YearMonth.parse(nextArg(args, ++i));
+            case "--schedule" -> this.schedule = true;
+            case "--project" -> this.projectYears = Integer.parseInt(nextArg(args, ++i));
+            case "--paths" -> this.numPaths = Integer.parseInt(nextArg(args, ++i));
+            case "--seed" -> this.seed = Long.parseLong(nextArg(args, ++i));
+            case "--model" -> this.modelName = nextArg(args, ++i);
+            case "--redeem" -> this.redeemAmount = new BigDecimal(nextArg(args, ++i));
+            case "--horizon" -> this.horizonYears = Integer.parseInt(nextArg(args, ++i));
+            case "--plans" -> this.numPlans = Integer.parseInt(nextArg(args, ++i));
+            case "--step" -> this.redeemStep = new BigDecimal(nextArg(args, ++i));
+            default -> {
+               if (this.holdingsName != null || args[i].startsWith("--"))
+                  throw new IllegalArgumentException(USAGE);
+               this.holdingsName = args[i];
+            }
+         }
+      } // end for each argument
+      int numModes = (this.schedule ? 1 : 0) + (this.projectYears > 0 ? 1 : 0)
+         + (this.redeemAmount != null ? 1 : 0);
+      if (this.holdingsName == null || this.projectYears < 0 || this.numPaths < 1
+            || numModes > 1 || this.horizonYears < 1 || this.numPlans < 1
+            || this.redeemAmount != null && this.redeemAmount.signum() <= 0)
+         throw new IllegalArgumentException(USAGE);
+
+   } // end parseArgs(String[])
+
+   /**
+    * @param args Command line arguments
+    * @param i    Index of the argument wanted
+    * @return The argument
+    */
+   private static String nextArg(String[] args, int i) {
+      if (i >= args.length)
+         throw new IllegalArgumentException(USAGE);
+
+      return args[i];
+   } // end nextArg(String[], int)
+
+   /**
+    * Read holdings, merging lines for the same holding id.
+    *
+    * @param reader Source of holdings CSV lines
+    * @return Holdings in the order first seen
+    */
+   private static Map<String, Holding> readHoldings(BufferedReader reader) throws IOException {
+      Map<String, Holding> holdings = new LinkedHashMap<>();
+      String line;
+      int lineNum = 0;
+
+      while ((line = reader.readLine()) != null) {
+         ++lineNum;
+         line = line.strip();
+         if (line.isEmpty() || line.startsWith("#"))
+            continue;
+         String[] fields = line.split("\\s*,\\s*");
+         try {
+            String dateStr = fields[2];
+            YearMonth month = dateStr.length() > 7
+               ? YearMonth.from(LocalDate.parse(dateStr)) : YearMonth.parse(dateStr);
+            Holding holding = holdings.computeIfAbsent(fields[0],
+               id -> new Holding(id, fields[1], new TreeMap<>()));
+            if (!holding.ticker().equalsIgnoreCase(fields[1]))
+               throw new IllegalArgumentException("ticker differs from earlier lines");
+            holding.monthNet().merge(month, new BigDecimal(fields[3]), BigDecimal::add);
+         } catch (Exception e) {
+            throw new IOException("Problem on holdings line %d [%s]: %s"
+               .formatted(lineNum, line, e), e);
+         }
+      } // end while more lines
+
+      return holdings;
+   } // end readHoldings(BufferedReader)
+
+   /**
+    * Create an importer with rates from our rate file, when given, otherwise from
+    * our cache file or the usual sources.
+    *
+    * @param storage Local storage for the rate cache
+    * @return Importer with rates loaded
+    */
+   private IBondImporter loadImporter(Map<String, String> storage) throws Exception {
+      Properties props = MdUtil.loadProps("ibond-values.properties", BatchValues.class);
+
+      if (this.ratesFile != null) {
+         TreeMap<YearMonth, IBondRateRec> iBondRates;
+
+         if (this.ratesFile.toString().endsWith(".bin")) {
+            try (InputStream iStream = Files.newInputStream(this.ratesFile)) {
+               iBondRates = RateSnapshot.read(iStream);
+            }
+         } else {
+            iBondRates = new RateSheetParser(this.ratesFile.toUri(),
+               props.getProperty("sheet.data"), props.getProperty("col.irate"),
+               props.getProperty("col.frate"), props.getProperty("col.sdate"))
+               .parse(this.ratesFile);
+         }
+         new RateCache(storage).store(iBondRates, Optional.empty(), Optional.empty());
+      }
+      IBondImporter importer = new IBondImporter(props, storage);
+      importer.loadIBondRates();
+
+      return importer;
+   } // end loadImporter(Map<String, String>)
+
+   /**
+    * @param text Text for a CSV field
+    * @return The text, quoted when needed
+    */
+   private static String csv(String text) {
+
+      return text.contains(",") || text.contains("\"")
+         ? '"' + text.replace("\"", "\"\"") + '"' : text;
+   } // end csv(String)
+
+   /**
+    * Write one holding's value, or its interest payment schedule.
+    *
+    * @param holding Holding to value
+    * @param txns    Calculated interest payments for the holding
+    * @param out     Where to write
+    */
+   private void writeHolding(Holding holding, CalcTxnList txns, PrintWriter out) {
+      if (this.schedule) {
+         txns.forEach(txn -> out.format("%s,%s,%s,%s,%s,%s%n", csv(holding.id()),
+            holding.ticker(), txn.payDate(), txn.payAmount(), txn.endingBal(), csv(txn.memo())));
+      } else {
+         CalcTxn[] last = new CalcTxn[1];
+         txns.forEach(txn -> {
+            if (!txn.payMonth().isAfter(this.asOf)) {
+               last[0] = txn;
+            }
+         });
+         BigDecimal deposits = holding.netBetween(null, this.asOf);
+         BigDecimal value = last[0] == null ? deposits : last[0].endingBal()
+            .add(holding.netBetween(last[0].payMonth(), this.asOf));
+         out.format("%s,%s,%s,%s,%s%n", csv(holding.id()), holding.ticker(),
+            this.asOf, value, value.subtract(deposits));
+      }
+
+   } // end writeHolding(Holding, CalcTxnList, PrintWriter)
+
+   /**
+    * @param importer Importer with rates loaded
+    * @param holdings Holdings read
+    * @return Holdings with usable ticker symbols
+    */
+   private static List<Holding> validHoldings(IBondImporter importer,
+         Map<String, Holding> holdings) {
+      List<Holding> valid = new ArrayList<>();
+
+      for (Holding holding : holdings.values()) {
+         try {
+            importer.getDateForTicker(holding.ticker());
+            valid.add(holding);
+         } catch (MduExcepcionito e) {
+            System.err.format("Skipping holding %s: %s%n", holding.id(), e.getLocalizedMessage());
+         }
+      } // end for each holding
+
+      return valid;
+   } // end validHoldings(IBondImporter, Map<String, Holding>)
+
+   /**
+    * Write the cheapest plans for redeeming holdings to raise our redemption amount.
+    *
+    * @param importer Importer with rates loaded
+    * @param holdings Holdings that may be redeemed
+    * @param out      Where to write
+    */
+   private void writeRedemptionPlans(IBondImporter importer, Map<String, Holding> holdings,
+         PrintWriter out) throws Exception {
+      List<Holding> valid = validHoldings(importer, holdings);
+      long startNanos = System.nanoTime();
+      BigDecimal step = this.redeemStep != null ? this.redeemStep
+         : RedemptionPlanner.defaultStep(this.redeemAmount);
+      RedemptionPlanner planner = new RedemptionPlanner(importer, valid, this.asOf,
+         this.asOf.plusYears(this.horizonYears), step);
+      List<RedemptionPlanner.Plan> plans = planner.plan(this.redeemAmount, this.numPlans);
+      out.println("plan,holding,ticker,month,amount,forgone interest,penalty");
+      int rank = 0;
+
+      for (RedemptionPlanner.Plan plan : plans) {
+         ++rank;
+         BigDecimal penalty = BigDecimal.ZERO;
+
+         for (RedemptionPlanner.Redemption redemption : plan.redemptions()) {
+            Holding holding = redemption.holding();
+            out.format("%d,%s,%s,%s,%s,%s,%s%n", rank, csv(holding.id()), holding.ticker(),
+               this.asOf, redemption.amount(), redemption.forgoneInterest(), redemption.penalty());
+            penalty = penalty.add(redemption.penalty());
+         }
+         out.format("%d,total,,%s,%s,%s,%s%n", rank, this.asOf, plan.amount(),
+            plan.cost().subtract(penalty), penalty);
+      } // end for each plan
+      if (out.checkError())
+         throw new IOException("Problem writing " + (this.outFile == null
+            ? "standard output" : this.outFile));
+      double seconds = (System.nanoTime() - startNanos) / 1e9;
+      if (plans.isEmpty()) {
+         System.err.format("No redemptions from %,d holdings raise %s in %s%n",
+            valid.size(), this.redeemAmount, this.asOf);
+      }
+      System.err.format("Planned %d ways to raise %s from %,d holdings in steps of %s"
+         + " (%,d what-if calculations) in %.3f s%n", plans.size(), this.redeemAmount,
+         valid.size(), step, planner.evaluations(), seconds);
+
+   } // end writeRedemptionPlans(IBondImporter, Map<String, Holding>, PrintWriter)
+
+   /**
+    * Write percentile bands of the portfolio's value by month over simulated inflation paths.
+    *
+    * @param importer Importer with rates loaded
+    * @param holdings Holdings to value
+    * @param out      Where to write
+    */
+   private void writeProjection(IBondImporter importer, Map<String, Holding> holdings,
+         PrintWriter out) throws Exception {
+      List<Holding> valid = validHoldings(importer, holdings);
+      long startNanos = System.nanoTime();
+      ValueProjection projection = new ValueProjection(importer,
+         ValueProjection.model(this.modelName, importer.getRateTable()), valid, this.asOf,
+         this.projectYears * 12 + 1);
+      StringJoiner header = new StringJoiner(",", "month,", "");
+
+      for (int percentile : ValueProjection.PERCENTILES) {
+         header.add("p" + percentile);
+      }
+      out.println(header);
+
+      for (ValueProjection.Band band : projection.project(this.numPaths, this.seed,
+            importer.workerThreads())) {
+         StringJoiner line = new StringJoiner(",", band.month() + ",", "");
+
+         for (BigDecimal value : band.percentiles()) {
+            line.add(value.toPlainString());
+         }
+         out.println(line);
+      } // end for each month
+      if (out.checkError())
+         throw new IOException("Problem writing " + (this.outFile == null
+            ? "standard output" : this.outFile));
+      double seconds = (System.nanoTime() - startNanos) / 1e9;
+      System.err.format("Projected %,d holdings over %,d %s inflation paths (%,d months simulated)"
+         + " in %.3f s: %,.0f paths/s%n", valid.size(), this.numPaths, this.modelName,
+         importer.metrics().count(MONTHS), seconds, this.numPaths / Math.max(seconds, 1e-9));
+
+   } // end writeProjection(IBondImporter, Map<String, Holding>, PrintWriter)
+
+   /**
+    * Value all holdings.
+    *
+    * @param args Command line arguments
+    */
+   private void run(String[] args) throws Exception {
+      parseArgs(args);
+      Properties cacheProps = new Properties();
+
+      if (this.cacheFile != null && Files.exists(this.cacheFile)) {
+         try (Reader reader = Files.newBufferedReader(this.cacheFile, UTF_8)) {
+            cacheProps.load(reader);
+         }
+      }
+      Map<String, String> storage = new HashMap<>();
+      cacheProps.stringPropertyNames().forEach(key ->
+         storage.put(key, cacheProps.getProperty(key)));
+      IBondImporter importer = loadImporter(storage);
+      Map<String, Holding> holdings;
+
+      try (BufferedReader reader = this.holdingsName.equals("-")
+            ? new BufferedReader(new InputStreamReader(System.in, UTF_8))
+            : Files.newBufferedReader(Path.of(this.holdingsName), UTF_8)) {
+         holdings = readHoldings(reader);
+      }
+      long startNanos = System.nanoTime();
+      int numValued = 0;
+
+      try (PrintWriter out = new PrintWriter(this.outFile == null
+            ? new BufferedWriter(new OutputStreamWriter(System.out, UTF_8))
+            : Files.newBufferedWriter(this.outFile, UTF_8))) {
+         if (this.projectYears > 0 || this.redeemAmount != null) {
+            if (this.projectYears > 0) {
+               writeProjection(importer, holdings, out);
+            } else {
+               writeRedemptionPlans(importer, holdings, out);
+            }
+            saveCache(cacheProps, storage);
+
+            return;
+         }
+         out.println(this.schedule ? "holding,ticker,date,interest,balance,memo"
+            : "holding,ticker,month,value,interest");
+
+         for (Holding holding : holdings.values()) {
+            try {
+               CalcTxnList txns = importer.calcIBondInterestTxns(holding.ticker(),
+                  holding::netFor, rates -> {}, null, null, this.schedule ? null : this.asOf);
+               writeHolding(holding, txns, out);
+               ++numValued;
+            } catch (MduExcepcionito e) {
+               System.err.format("Skipping holding %s: %s%n", holding.id(),
+                  e.getLocalizedMessage());
+            }
+         } // end for each holding
+         if (out.checkError())
+            throw new IOException("Problem writing " + (this.outFile == null
+               ? "standard output" : this.outFile));
+      }
+      double seconds = (System.nanoTime() - startNanos) / 1e9;
+      RunMetrics metrics = importer.metrics();
+      System.err.format("Valued %,d of %,d holdings (%,d months simulated, %,d payments) "
+         + "in %.3f s: %,.0f holdings/s%n", numValued, holdings.size(), metrics.count(MONTHS),
+         metrics.count(CALC_TXNS), seconds, numValued / Math.max(seconds, 1e-9));
+      saveCache(cacheProps, storage);
+
+   } // end run(String[])
+
+   /**
+    * Save the rate cache, when we have a cache file.
+    *
+    * @param cacheProps Properties read from the cache file
+    * @param storage    Local storage for the rate cache
+    */
+   private void saveCache(Properties cacheProps, Map<String, String> storage) throws IOException {
+      if (this.cacheFile != null) {
+         cacheProps.putAll(storage);
+         try (Writer writer = Files.newBufferedWriter(this.cacheFile, UTF_8)) {
+            cacheProps.store(writer, "I bond values rate cache");
+         }
+      }
+
+   } // end saveCache(Properties, Map<String, String>)
+
+   /**
+    * Value I bond holdings from the command line.
+    *
+    * @param args Options, then holdings file name, or - for standard input
+    */
+   public static void main(String[] args) throws Exception {
+      new BatchValues().run(args);
+
+   } // end main(String[])
+
+} // end class BatchValues
@@ -3,6 +3,7 @@ package com.moneydance.modules.features.ibondvalues;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.YearMonth;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Data record to hold calculated interest payment transaction details.
@@ -14,6 +15,10 @@ public class CalcTxn {
     private final String memo;
     private BigDecimal endingBal = BigDecimal.ZERO;
 
+    /** Memoized interest payment memos keyed by month accrued */
+    private static final ConcurrentHashMap<YearMonth, String> interestMemos =
+            new ConcurrentHashMap<>();
+
     /**
      * Sole constructor.
      *
@@ -29,6 +34,19 @@ public class CalcTxn {
 
     } // end constructor
 
+    /**
+     * Obtain the memo for interest accrued in a given month, formatting it once,
+     * since the same months recur for every bond and every simulated path.
+     *
+     * @param accrualMonth Month the interest accrued
+     * @return Interest payment memo
+     */
+    static String interestMemo(YearMonth accrualMonth) {
+
+        return interestMemos.computeIfAbsent(accrualMonth,
+                month -> "%tb %<tY interest".formatted(month));
+    } // end interestMemo(YearMonth)
+
     /**
      * {@return Payment month}
      */
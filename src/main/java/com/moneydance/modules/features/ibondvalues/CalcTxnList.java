@@ -10,6 +10,7 @@ import java.util.function.Predicate;
  */
 public class CalcTxnList {
     private final TreeMap<YearMonth, List<CalcTxn>> txnListMap = new TreeMap<>();
+    private IBondCheckpoint checkpoint = null;
 
     /**
      * Append a calculated interest payment transaction record to the end
@@ -60,6 +61,32 @@ public class CalcTxnList {
 
     } // end forEach(Consumer<CalcTxn>)
 
+    /**
+     * {@return Number of transactions in this collection}
+     */
+    public int size() {
+
+        return this.txnListMap.values().stream().mapToInt(List::size).sum();
+    } // end size()
+
+    /**
+     * {@return Optional calculation state captured at a semiannual boundary}
+     */
+    public Optional<IBondCheckpoint> checkpoint() {
+
+        return Optional.ofNullable(this.checkpoint);
+    } // end checkpoint()
+
+    /**
+     * Store the calculation state captured at a semiannual boundary.
+     *
+     * @param checkpoint Calculation state to store
+     */
+    public void checkpoint(IBondCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+
+    } // end checkpoint(IBondCheckpoint)
+
     /**
      * Removes all the transactions of this collection that satisfy the given predicate.
      *
@@ -72,4 +99,14 @@ public class CalcTxnList {
 
     } // end removeIf(Predicate<CalcTxn>)
 
+    /**
+     * Removes all the transactions of this collection payable after a given month.
+     *
+     * @param month Latest payment month to keep
+     */
+    public void truncateAfter(YearMonth month) {
+        this.txnListMap.tailMap(month, false).clear();
+
+    } // end truncateAfter(YearMonth)
+
 } // end class CalcTxnList
@@ -0,0 +1,90 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayDeque;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.SEMIANNUAL_MONTHS;
+
+/**
+ * Lazily generated interest payment transactions for one I bond, in payment month order.
+ * Each time more transactions are wanted, the next semiannual period is simulated,
+ * resuming from the checkpoint captured at the end of the prior period, and the
+ * transactions payable through the end of that period are released. Generation stops
+ * at the period after which no transaction can be payable by the horizon month.
+ */
+final class CalcTxnSpliterator extends Spliterators.AbstractSpliterator<CalcTxn> {
+   private final IBondImporter importer;
+   private final CompositeRateSchedule schedule;
+   private final Function<YearMonth, BigDecimal> monthNet;
+   private final Consumer<Supplier<String>> displayRates;
+   /** Latest payment month wanted, or null for all payments */
+   private final YearMonth horizon;
+   /** Number of leading periods to simulate */
+   private final int endPeriod;
+   /** Transactions released but not yet consumed */
+   private final ArrayDeque<CalcTxn> released = new ArrayDeque<>();
+   /** Calculation state at the end of the latest simulated period, or null at issue */
+   private IBondCheckpoint resumeFrom = null;
+   /** Number of periods simulated so far */
+   private int numSimulated = 0;
+   private boolean finished = false;
+
+   /**
+    * Sole constructor.
+    *
+    * @param importer     Importer performing the calculations
+    * @param schedule     Composite rates and unit values for the bond's issue month
+    * @param monthNet     Function providing total net deposits and redemptions for a month
+    * @param displayRates Consumer of interest rate message producer lambdas
+    * @param horizon      Latest payment month wanted, or null for all payments
+    */
+   CalcTxnSpliterator(IBondImporter importer, CompositeRateSchedule schedule,
+         Function<YearMonth, BigDecimal> monthNet, Consumer<Supplier<String>> displayRates,
+         YearMonth horizon) {
+      super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+      this.importer = importer;
+      this.schedule = schedule;
+      this.monthNet = monthNet;
+      this.displayRates = displayRates;
+      this.horizon = horizon;
+      this.endPeriod = IBondImporter.endPeriod(schedule, horizon);
+
+   } // end constructor
+
+   /**
+    * Simulate the next semiannual period and release its transactions. The last period
+    * also completes the payments deferred past the end of the schedule.
+    */
+   private void simulateNextPeriod() {
+      boolean lastPeriod = this.numSimulated + 1 >= this.endPeriod;
+      YearMonth periodEnd = this.schedule.issueMonth()
+         .plusMonths((long) (this.numSimulated + 1) * SEMIANNUAL_MONTHS);
+      CalcTxnList txns = this.importer.calcInterestTxns(this.schedule, this.monthNet,
+         this.displayRates, this.resumeFrom, lastPeriod ? null : periodEnd,
+         lastPeriod ? this.horizon : periodEnd);
+      txns.forEach(this.released::add);
+      this.resumeFrom = txns.checkpoint().orElse(null);
+      ++this.numSimulated;
+      this.finished = lastPeriod;
+
+   } // end simulateNextPeriod()
+
+   public boolean tryAdvance(Consumer<? super CalcTxn> action) {
+      while (this.released.isEmpty() && !this.finished) {
+         simulateNextPeriod();
+      }
+      CalcTxn txn = this.released.poll();
+      if (txn == null)
+         return false;
+      action.accept(txn);
+
+      return true;
+   } // end tryAdvance(Consumer)
+
+} // end class CalcTxnSpliterator
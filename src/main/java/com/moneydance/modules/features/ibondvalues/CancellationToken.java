@@ -0,0 +1,77 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Cooperative cancellation shared by a run's worker, its calculation threads, its
+ * spreadsheet parse and its network requests. Long-running loops check the token at
+ * natural boundaries, so a cancelled run stops within a few milliseconds rather than
+ * after finishing all its work. Work that blocks, like waiting for a response or
+ * reading a download, registers a callback to release it instead.
+ */
+class CancellationToken {
+   /** Completed when cancellation is requested */
+   private final CompletableFuture<Void> cancelled = new CompletableFuture<>();
+
+   /**
+    * Request cancellation of all work checking this token, and run any cancel callbacks.
+    */
+   void cancel() {
+      this.cancelled.complete(null);
+
+   } // end cancel()
+
+   /**
+    * {@return true when cancellation has been requested}
+    */
+   boolean isCancelled() {
+
+      return this.cancelled.isDone();
+   } // end isCancelled()
+
+   /**
+    * Register an action releasing blocked work when cancellation is requested. The
+    * action runs on the cancelling thread, or right away when already cancelled.
+    *
+    * @param action Action to run, which must not block
+    */
+   void onCancel(Runnable action) {
+      this.cancelled.thenRun(action);
+
+   } // end onCancel(Runnable)
+
+   /**
+    * Stop work that has been cancelled.
+    *
+    * @throws CancellationException When cancellation has been requested
+    */
+   void checkCancelled() {
+      if (isCancelled())
+         throw new CancellationException("I bond values run cancelled");
+
+   } // end checkCancelled()
+
+   /**
+    * Wait for a future to complete, cancelling it if this token is cancelled first.
+    *
+    * @param future Future to wait for
+    * @param <T>    Result type
+    * @return Result of the future
+    * @throws ExecutionException   The future completed exceptionally
+    * @throws InterruptedException The current thread was interrupted while waiting
+    */
+   <T> T await(Future<T> future) throws ExecutionException, InterruptedException {
+      onCancel(() -> future.cancel(true));
+      try {
+
+         return future.get();
+      } catch (CancellationException e) {
+         checkCancelled();
+         throw e;
+      }
+   } // end await(Future<T>)
+
+} // end class CancellationToken
@@ -0,0 +1,250 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.infinitekind.moneydance.model.Account;
+import com.infinitekind.moneydance.model.AccountBook;
+import com.infinitekind.moneydance.model.ParentTxn;
+import io.github.jrhillery.moneydance.MdLog;
+import io.github.jrhillery.moneydance.MduException;
+
+import javax.swing.SwingWorker;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Phase.COMMIT;
+
+/**
+ * Records staged interest payment transactions in Moneydance on a background thread,
+ * so committing thousands of back-filled payments does not freeze the user interface.
+ * Payments are grouped by investment account and applied in batches, with balance
+ * recalculation deferred to the end of each batch. A batch that fails partway is
+ * rolled back, leaving every earlier batch recorded, and the outcome is reported.
+ */
+public class CommitWorker extends SwingWorker<String, Integer> implements AutoCloseable {
+   private final IBondWindow iBondWindow;
+   private final AccountBook book;
+   private final Map<String, String> storage;
+   /** Interest payment transaction handlers grouped by investment account */
+   private final Map<Account, List<TxnHandler>> handlersByAccount = new LinkedHashMap<>();
+   /** Checkpoints to store once their security account's payments are recorded */
+   private final Map<String, IBondCheckpoint> pendingCheckpoints;
+   private final int batchSize;
+   /** Timers and counters of the run that calculated these payments */
+   private final RunMetrics metrics;
+   private final int numInterestTxns;
+   /** Completes once recording payments has stopped, whether finished or cancelled */
+   private final CompletableFuture<Void> finished = new CompletableFuture<>();
+   /** Claimed by whichever comes first: recording payments, or closing before that */
+   private final AtomicBoolean claimed = new AtomicBoolean();
+
+   /**
+    * Sole constructor.
+    *
+    * @param iBondWindow        Our I bond window
+    * @param book               Moneydance account book to record payments in
+    * @param handlers           Interest payment transaction handlers to apply
+    * @param pendingCheckpoints Checkpoints keyed by local storage key
+    * @param batchSize          Maximum number of payments to apply in each batch
+    * @param metrics            Timers and counters of the run that calculated these payments
+    */
+   CommitWorker(IBondWindow iBondWindow, AccountBook book, List<TxnHandler> handlers,
+         Map<String, IBondCheckpoint> pendingCheckpoints, int batchSize, RunMetrics metrics) {
+      super();
+      this.iBondWindow = iBondWindow;
+      this.book = book;
+      this.storage = book.getLocalStorage();
+      this.pendingCheckpoints = pendingCheckpoints;
+      this.batchSize = batchSize;
+      this.metrics = metrics;
+      this.numInterestTxns = handlers.size();
+
+      for (TxnHandler handler : handlers) {
+         this.handlersByAccount.computeIfAbsent(handler.investAccount(),
+            investAccount -> new ArrayList<>()).add(handler);
+      }
+      iBondWindow.addCloseableResource(this);
+
+   } // end constructor
+
+   /**
+    * Apply one batch of interest payment transactions, deferring balance recalculation
+    * until the batch is done. Should any transaction fail, delete those already
+    * created in this batch.
+    *
+    * @param investAccount Investment account the batch is for
+    * @param batch         Interest payment transaction handlers to apply
+    * @throws MduException Problem applying the batch, which has been rolled back
+    */
+   private void applyBatch(Account investAccount, List<TxnHandler> batch)
+         throws MduException {
+      List<ParentTxn> applied = new ArrayList<>(batch.size());
+      this.book.setRecalcBalances(false);
+
+      try {
+         for (TxnHandler handler : batch) {
+            applied.add(handler.applyUpdate());
+         }
+      } catch (Exception e) {
+         applied.forEach(ParentTxn::deleteItem);
+
+         throw new MduException(e, "Problem recording interest payments in %s; "
+            + "rolled back %d of this batch", investAccount.getAccountName(), applied.size());
+      } finally {
+         this.book.setRecalcBalances(true);
+      }
+
+   } // end applyBatch(Account, List<TxnHandler>)
+
+   /**
+    * Store pending checkpoints, except for security accounts with unrecorded payments.
+    *
+    * @param unrecorded Security accounts with payments that were not recorded
+    */
+   private void storeCheckpoints(Set<Account> unrecorded) {
+      Set<String> skipKeys = new HashSet<>();
+      unrecorded.forEach(secAccount -> skipKeys.add(IBondWorker.checkpointKey(secAccount)));
+
+      this.pendingCheckpoints.forEach((key, checkpoint) -> {
+         if (!skipKeys.contains(key)) {
+            this.storage.put(key, checkpoint.toStorageString());
+         }
+      });
+
+   } // end storeCheckpoints(Set<Account>)
+
+   /**
+    * Record staged interest payments in batches, and add the time spent to the
+    * history of the run that calculated them. Runs on worker thread.
+    *
+    * @return Summary of the payments recorded
+    */
+   protected String doInBackground() {
+      if (!this.claimed.compareAndSet(false, true))
+         return "Closed before recording interest payments";
+
+      Set<Account> unrecorded = new HashSet<>();
+      int numRecorded = 0;
+      String problem = null;
+
+      try (RunMetrics.Span ignored = this.metrics.time(COMMIT)) {
+         for (Map.Entry<Account, List<TxnHandler>> entry : this.handlersByAccount.entrySet()) {
+            List<TxnHandler> handlers = entry.getValue();
+
+            for (int start = 0; start < handlers.size(); start += this.batchSize) {
+               List<TxnHandler> batch =
+                  handlers.subList(start, Math.min(start + this.batchSize, handlers.size()));
+
+               if (problem == null && !isCancelled()) {
+                  try {
+                     applyBatch(entry.getKey(), batch);
+                     numRecorded += batch.size();
+                     publish(numRecorded);
+                  } catch (MduException e) {
+                     MdLog.all("Problem committing changes", e);
+                     problem = e.getLocalizedMessage();
+                  }
+               }
+               if (problem != null || isCancelled()) {
+                  batch.forEach(handler -> unrecorded.add(handler.securityAccount()));
+               }
+            } // end for each batch
+         } // end for each investment account
+         storeCheckpoints(unrecorded);
+      } finally {
+         this.finished.complete(null);
+      }
+      // update the run's history with the time spent committing
+      this.metrics.record(this.storage);
+      String summary = "Recorded %d interest payment transaction%s"
+         .formatted(numRecorded, numRecorded == 1 ? "" : "s");
+
+      if (numRecorded < this.numInterestTxns) {
+         summary += " of %d; %s".formatted(this.numInterestTxns,
+            problem != null ? problem : "stopped before recording the rest");
+         summary += "<br>Run again to record the remaining interest payments";
+      }
+
+      return summary;
+   } // end doInBackground()
+
+   /**
+    * Runs on event dispatch thread.
+    *
+    * @param chunks Numbers of payments recorded so far
+    */
+   protected void process(List<Integer> chunks) {
+      this.iBondWindow.showCommitProgress(chunks.getLast(), this.numInterestTxns);
+
+   } // end process(List<Integer>)
+
+   /**
+    * Report the outcome of recording payments.
+    * Runs on event dispatch thread after the doInBackground method is finished.
+    */
+   protected void done() {
+      // also release waiters when cancelled before doInBackground ran
+      this.finished.complete(null);
+      this.iBondWindow.endCommitProgress();
+      this.iBondWindow.removeCloseableResource(this);
+
+      try {
+         String summary = get();
+         MdLog.all(summary);
+         this.iBondWindow.addText(summary);
+      } catch (CancellationException e) {
+         // ignore
+      } catch (Exception e) {
+         MdLog.all("Problem committing changes", e);
+         this.iBondWindow.addText(e.toString());
+      }
+
+   } // end done()
+
+   /**
+    * {@return Future completing once recording payments has stopped, whether finished
+    * or cancelled, after which the book no longer changes beneath a new calculation}
+    */
+   CompletableFuture<Void> finished() {
+
+      return this.finished;
+   } // end finished()
+
+   /**
+    * Close this resource, relinquishing any underlying resources.
+    * Stop recording payments after the current batch and wait for it to complete.
+    * A commit still queued never starts, so there is nothing to wait for.
+    */
+   public void close() {
+      if (getState() != StateValue.DONE) {
+         MdLog.all("Stopping interest payment commit after the current batch");
+         cancel(false);
+
+         if (this.claimed.compareAndSet(false, true)) {
+            this.finished.complete(null);
+         } else {
+            // wait for the current batch to complete
+            try {
+               this.finished.get();
+            } catch (InterruptedException | ExecutionException e) {
+               // ignore
+            }
+         }
+
+         // discard results and some exceptions
+         try {
+            get();
+         } catch (CancellationException | InterruptedException | ExecutionException e) {
+            // ignore
+         }
+      }
+
+   } // end close()
+
+} // end class CommitWorker
@@ -0,0 +1,209 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.INITIAL_UNIT_VALUE;
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.INTEREST_RATE_DIGITS;
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.MATURITY_YEARS;
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.PENALTY_MONTHS;
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.SEMIANNUAL_MONTHS;
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.min;
+import static java.math.MathContext.DECIMAL64;
+import static java.math.RoundingMode.HALF_UP;
+
+/**
+ * Immutable schedule of the composite interest rates for each semiannual period of
+ * Series I savings bonds issued in a given month, from issue through maturity (or
+ * through the latest known rate data), along with the resulting series of monthly
+ * unit values. Neither depends on deposit or redemption amounts, so all bonds issued
+ * in the same month share one schedule, and instances are memoized by the rate table
+ * they were derived from.
+ */
+public final class CompositeRateSchedule {
+   private final YearMonth issueMonth;
+   private final BigDecimal fixedRate;
+   private final YearMonth endMonth;
+   /** Composite interest rates indexed by semiannual period since issue */
+   private final BigDecimal[] compositeRates;
+   /** Rounded unit values in cents indexed by months since issue */
+   private final long[] unitValCents;
+   /** Months indexed by months since issue, through the last possible payment month */
+   private final YearMonth[] months;
+
+   /**
+    * Sole constructor.
+    *
+    * @param rateTable  Historical I bond interest rates to use
+    * @param issueMonth Month the bonds were issued
+    */
+   CompositeRateSchedule(RateTable rateTable, YearMonth issueMonth) {
+      this.issueMonth = issueMonth;
+      this.fixedRate = rateTable.getRateForMonth(issueMonth).fixedRate();
+      this.endMonth = min(issueMonth.plusYears(MATURITY_YEARS),
+         rateTable.lastMonth().plusMonths(SEMIANNUAL_MONTHS));
+      int issueOrdinal = RateTable.monthOrdinal(issueMonth);
+      int numMonths = RateTable.monthOrdinal(this.endMonth) - issueOrdinal;
+      this.compositeRates = new BigDecimal[
+         Math.max(0, (numMonths + SEMIANNUAL_MONTHS - 1) / SEMIANNUAL_MONTHS)];
+
+      for (int period = 0; period < this.compositeRates.length; ++period) {
+         BigDecimal inflateRate = rateTable.getRateForOrdinal(
+            issueOrdinal + period * SEMIANNUAL_MONTHS).inflationRate();
+         this.compositeRates[period] = combineRate(this.fixedRate, inflateRate);
+      } // end for each semiannual period
+      this.unitValCents = calcUnitValues(rateTable, this.compositeRates);
+      this.months = new YearMonth[this.unitValCents.length + PENALTY_MONTHS];
+
+      for (int monthIdx = 0; monthIdx < this.months.length; ++monthIdx) {
+         this.months[monthIdx] = issueMonth.plusMonths(monthIdx);
+      }
+
+   } // end constructor
+
+   /**
+    * Step the unit value forward month by month. For each 6-month rate period, a
+    * monthly growth multiplier is derived from the composite rate, and the unit value
+    * is stepped forward by this multiplier and rounded to the nearest cent each month.
+    * Each period starts from the prior period's final rounded unit value.
+    *
+    * @param rateTable      Rate table memoizing monthly growth multipliers
+    * @param compositeRates Composite interest rates indexed by semiannual period
+    * @return Rounded unit values in cents indexed by months since issue
+    */
+   private static long[] calcUnitValues(RateTable rateTable, BigDecimal[] compositeRates) {
+      long[] unitValCents = new long[compositeRates.length * SEMIANNUAL_MONTHS + 1];
+      BigDecimal roundedUnitVal = INITIAL_UNIT_VALUE;
+      unitValCents[0] = toCents(roundedUnitVal);
+
+      for (int period = 0; period < compositeRates.length; ++period) {
+         BigDecimal unitVal = roundedUnitVal;
+         BigDecimal monthlyMultiplier = rateTable.monthlyMultiplier(compositeRates[period]);
+
+         for (int m = 1; m <= SEMIANNUAL_MONTHS; ++m) {
+            unitVal = unitVal.multiply(monthlyMultiplier, DECIMAL64);
+            roundedUnitVal = unitVal.setScale(2, HALF_UP);
+            unitValCents[period * SEMIANNUAL_MONTHS + m] = toCents(roundedUnitVal);
+         } // end for non-compounding months
+      } // end for each semiannual period
+
+      return unitValCents;
+   } // end calcUnitValues(RateTable, BigDecimal[])
+
+   /**
+    * @param value Decimal value with at most 2 places past the decimal point
+    * @return Value in cents
+    */
+   private static long toCents(BigDecimal value) {
+
+      return value.movePointRight(2).longValueExact();
+   } // end toCents(BigDecimal)
+
+   /**
+    * Compose the interest rate that will apply for the specified fixed and semiannual
+    * inflation interest rates using the rules for Series I savings bonds. See
+    * <a href="https://www.treasurydirect.gov/savings-bonds/i-bonds/i-bonds-interest-rates">
+    *    TreasuryDirect website</a> for details.
+    *
+    * @param fixedRate     Fixed interest rate
+    * @param inflationRate Semiannual inflation interest rate
+    * @return Composite interest rate
+    */
+   static BigDecimal combineRate(BigDecimal fixedRate, BigDecimal inflationRate) {
+      BigDecimal compositeRate =
+         fixedRate.add(BigDecimal.TWO).multiply(inflationRate).add(fixedRate);
+
+      if (compositeRate.signum() < 0) {
+         compositeRate = BigDecimal.ZERO;
+      }
+
+      // Round composite rate to the fourth place past the decimal point
+      compositeRate = compositeRate.setScale(INTEREST_RATE_DIGITS, HALF_UP);
+
+      return compositeRate;
+   } // end combineRate(BigDecimal, BigDecimal)
+
+   /**
+    * {@return Month the bonds were issued}
+    */
+   public YearMonth issueMonth() { return this.issueMonth; }
+
+   /**
+    * {@return Fixed interest rate in effect when the bonds were issued}
+    */
+   public BigDecimal fixedRate() { return this.fixedRate; }
+
+   /**
+    * {@return Month after the last semiannual period, either maturity or
+    *          6 months past the latest known rate data}
+    */
+   public YearMonth endMonth() { return this.endMonth; }
+
+   /**
+    * {@return Number of semiannual periods in this schedule}
+    */
+   public int periods() { return this.compositeRates.length; }
+
+   /**
+    * @param period Semiannual period since issue, starting at zero
+    * @return Composite interest rate for that period
+    */
+   public BigDecimal compositeRate(int period) {
+
+      return this.compositeRates[period];
+   } // end compositeRate(int)
+
+   /**
+    * @param numPeriods Number of leading semiannual periods to include
+    * @return Fingerprint of our issue month and this schedule's rates for those periods
+    */
+   public String ratesKey(int numPeriods) {
+      StringBuilder canonical = new StringBuilder(this.issueMonth.toString());
+
+      for (int period = 0; period < numPeriods; ++period) {
+         canonical.append(';').append(this.compositeRates[period].toPlainString());
+      }
+
+      return IBondCheckpoint.fingerprint(canonical);
+   } // end ratesKey(int)
+
+   /**
+    * @param monthIdx Months since issue, from zero through 6 times our number of periods
+    * @return Rounded unit value at that point
+    */
+   public BigDecimal unitValue(int monthIdx) {
+
+      return BigDecimal.valueOf(this.unitValCents[monthIdx], 2);
+   } // end unitValue(int)
+
+   /**
+    * @param monthIdx Months since issue, from zero through 6 times our number of periods
+    * @return Rounded unit value at that point, in cents
+    */
+   long unitValueCents(int monthIdx) {
+
+      return this.unitValCents[monthIdx];
+   } // end unitValueCents(int)
+
+   /**
+    * @param monthIdx Months since issue, from zero through 3 more than
+    *                 6 times our number of periods
+    * @return Corresponding month
+    */
+   YearMonth month(int monthIdx) {
+
+      return this.months[monthIdx];
+   } // end month(int)
+
+   /**
+    * @param monthIdx Months since issue, from one through 6 times our number of periods
+    * @return Change in rounded unit value during the month ending at that point
+    */
+   public BigDecimal unitValueDelta(int monthIdx) {
+
+      long deltaCents = this.unitValCents[monthIdx] - this.unitValCents[monthIdx - 1];
+
+      return BigDecimal.valueOf(deltaCents, 2);
+   } // end unitValueDelta(int)
+
+} // end class CompositeRateSchedule
@@ -0,0 +1,65 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Index from security names to every investment account holding a security account
+ * of that name, built in a single pass over the investment accounts. Lookups then take
+ * constant time, rather than scanning each investment account's subaccounts for every
+ * security. Generic in the account type so it does not depend on a Moneydance book.
+ *
+ * @param <A> Account type
+ */
+class HoldingIndex<A> {
+   /** Holdings keyed by security account name, each list in investment account order */
+   private final Map<String, List<AccountPair<A>>> holdingsByName = new HashMap<>();
+
+   /**
+    * Data record for a security account and the investment account holding it.
+    *
+    * @param investAccount   Investment account
+    * @param securityAccount Investment subaccount for the security
+    * @param <A>             Account type
+    */
+   record AccountPair<A>(A investAccount, A securityAccount) { }
+
+   /**
+    * Sole constructor.
+    *
+    * @param investAccounts Investment accounts, in the order to report holdings
+    * @param subAccounts    Function providing an account's subaccounts
+    * @param accountName    Function providing an account's name
+    */
+   HoldingIndex(Stream<A> investAccounts, Function<A, ? extends Collection<A>> subAccounts,
+         Function<A, String> accountName) {
+      investAccounts.forEach(investAccount -> {
+         for (A secAccount : subAccounts.apply(investAccount)) {
+            List<AccountPair<A>> holdings = this.holdingsByName.computeIfAbsent(
+               accountName.apply(secAccount), name -> new ArrayList<>());
+
+            // like a lookup by name, only use the first subaccount with a given name
+            if (holdings.isEmpty() || holdings.getLast().investAccount() != investAccount) {
+               holdings.add(new AccountPair<>(investAccount, secAccount));
+            }
+         } // end for each subaccount
+      });
+
+   } // end constructor
+
+   /**
+    * @param securityName Name of a security
+    * @return Investment and security account pairs holding the security,
+    *         in investment account order
+    */
+   List<AccountPair<A>> holdingsOf(String securityName) {
+
+      return this.holdingsByName.getOrDefault(securityName, List.of());
+   } // end holdingsOf(String)
+
+} // end class HoldingIndex
@@ -0,0 +1,135 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import java.math.BigDecimal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.StringJoiner;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Data record to hold interest calculation state at a semiannual boundary, so a later
+ * calculation can resume there rather than replaying every month since issue.
+ * A checkpoint is only resumed when SHA-256 fingerprints of the rates and of the
+ * deposits, redemptions and interest payments it was calculated from still match.
+ *
+ * @param issueMonth    Month the I bond was issued
+ * @param month         Semiannual boundary month the balances correspond to
+ * @param redemptionVal Redemption value
+ * @param eligibleBal   Balance eligible to earn interest, after compounding
+ * @param unitVal       Unit value for interest calculations
+ * @param pendingTxns   Interest accrued by the boundary month but payable after it
+ * @param ratesKey      Fingerprint of the composite rates used through the boundary month
+ * @param changesKey    Fingerprint of the deposits, redemptions and interest payments
+ *                      through the boundary month
+ */
+public record IBondCheckpoint(YearMonth issueMonth, YearMonth month,
+        BigDecimal redemptionVal, BigDecimal eligibleBal, BigDecimal unitVal,
+        List<CalcTxn> pendingTxns, String ratesKey, String changesKey) {
+
+    private static final String VERSION = "2";
+    private static final String FIELD_SEPARATOR = "|";
+    private static final String TXN_SEPARATOR = ";";
+    private static final String TXN_FIELD_SEPARATOR = ",";
+
+    /**
+     * Fingerprint inputs to a calculation, so any difference in them, rather than
+     * just a likely one, is detected.
+     *
+     * @param canonical Canonical text serialization of the inputs
+     * @return Hex SHA-256 digest of the serialization
+     */
+    static String fingerprint(CharSequence canonical) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            return HexFormat.of().formatHex(digest.digest(canonical.toString().getBytes(UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    } // end fingerprint(CharSequence)
+
+    /**
+     * @param changesKey Fingerprint of the deposits, redemptions and interest payments
+     *                   through our month
+     * @return Copy of this checkpoint with the supplied fingerprint
+     */
+    public IBondCheckpoint withChangesKey(String changesKey) {
+
+        return new IBondCheckpoint(issueMonth(), month(), redemptionVal(), eligibleBal(),
+            unitVal(), pendingTxns(), ratesKey(), changesKey);
+    } // end withChangesKey(String)
+
+    /**
+     * {@return Balances to resume calculations from}
+     */
+    public IBondBalanceRec toBalanceRec() {
+        IBondBalanceRec balanceRec = new IBondBalanceRec(redemptionVal(), unitVal(), month());
+        balanceRec.eligibleBal(eligibleBal());
+
+        return balanceRec;
+    } // end toBalanceRec()
+
+    /**
+     * {@return New copies of our pending interest payment transactions}
+     */
+    public List<CalcTxn> copyPendingTxns() {
+        List<CalcTxn> txns = new ArrayList<>(pendingTxns().size());
+        pendingTxns().forEach(txn ->
+            txns.add(new CalcTxn(txn.payMonth(), txn.payAmount(), txn.memo())));
+
+        return txns;
+    } // end copyPendingTxns()
+
+    /**
+     * {@return Text representation suitable for Moneydance local storage}
+     */
+    public String toStorageString() {
+        StringJoiner txnsStr = new StringJoiner(TXN_SEPARATOR);
+        pendingTxns().forEach(txn -> txnsStr.add(txn.payMonth() + TXN_FIELD_SEPARATOR
+            + txn.payAmount().toPlainString() + TXN_FIELD_SEPARATOR + txn.memo()));
+
+        return String.join(FIELD_SEPARATOR, VERSION, issueMonth().toString(), month().toString(),
+            redemptionVal().toPlainString(), eligibleBal().toPlainString(),
+            unitVal().toPlainString(), ratesKey(), changesKey(), txnsStr.toString());
+    } // end toStorageString()
+
+    /**
+     * @param storageStr Text representation from Moneydance local storage, or null
+     * @return Optional checkpoint, empty when absent or not usable
+     */
+    public static Optional<IBondCheckpoint> fromStorageString(String storageStr) {
+        if (storageStr == null)
+            return Optional.empty();
+
+        try {
+            String[] fields = storageStr.split("\\" + FIELD_SEPARATOR, -1);
+
+            if (fields.length != 9 || !VERSION.equals(fields[0]))
+                return Optional.empty();
+
+            List<CalcTxn> pendingTxns = new ArrayList<>();
+
+            if (!fields[8].isEmpty()) {
+                for (String txnStr : fields[8].split(TXN_SEPARATOR)) {
+                    String[] txnFields = txnStr.split(TXN_FIELD_SEPARATOR, 3);
+                    pendingTxns.add(new CalcTxn(YearMonth.parse(txnFields[0]),
+                        new BigDecimal(txnFields[1]), txnFields[2]));
+                } // end for each pending transaction
+            }
+
+            return Optional.of(new IBondCheckpoint(YearMonth.parse(fields[1]),
+                YearMonth.parse(fields[2]), new BigDecimal(fields[3]), new BigDecimal(fields[4]),
+                new BigDecimal(fields[5]), List.copyOf(pendingTxns), fields[6], fields[7]));
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    } // end fromStorageString(String)
+
+} // end record IBondCheckpoint
@@ -1,60 +1,82 @@
 package com.moneydance.modules.features.ibondvalues;
 
+import io.github.jrhillery.moneydance.MdLog;
 import io.github.jrhillery.moneydance.MdUtil;
 import io.github.jrhillery.moneydance.MduExcepcionito;
 import io.github.jrhillery.moneydance.MduException;
-import org.dhatim.fastexcel.reader.Cell;
-import org.dhatim.fastexcel.reader.CellType;
-import org.dhatim.fastexcel.reader.ReadableWorkbook;
-import org.dhatim.fastexcel.reader.Row;
-import org.dhatim.fastexcel.reader.Sheet;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.net.URI;
-import java.time.LocalDateTime;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Counter.CALC_TXNS;
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Counter.MONTHS;
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Phase.DOWNLOAD;
 import static java.math.MathContext.DECIMAL64;
 import static java.math.RoundingMode.HALF_UP;
 import static java.time.temporal.ChronoField.MONTH_OF_YEAR;
 import static java.time.temporal.ChronoField.YEAR;
-import static org.dhatim.fastexcel.reader.CellType.FORMULA;
-import static org.dhatim.fastexcel.reader.CellType.NUMBER;
-import static org.dhatim.fastexcel.reader.CellType.STRING;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public class IBondImporter {
    /** Module properties */
    private final Properties props;
    /** Spreadsheet location */
    private final URI iBondRateHistory;
-   /** Mapping from months to historical I bond interest rates */
-   private TreeMap<YearMonth, IBondRateRec> iBondRates = null;
-   /** History column header handlers */
-   private final HashMap<String, Consumer<Integer>> histColHdrHandlers = new HashMap<>();
-   /** Column index of semiannual inflation interest rates */
-   private int iRateCol = -1;
-   /** Column index of fixed interest rates */
-   private int fRateCol = -1;
-   /** Column index of dates rates take effect */
-   private int sDateCol = -1;
+   /** Moneydance local storage */
+   private final Map<String, String> storage;
+   /** Persistent cache of previously retrieved interest rate history */
+   private final RateCache rateCache;
+   /** Minimum time between checks for a newer spreadsheet */
+   private final Duration revalidateInterval;
+   /** true to fall back on rates bundled with this extension when none are cached */
+   private final boolean useBundledRates;
+   /** true to start loading rates in the background before they are needed */
+   private final boolean prefetchRates;
+   /** Number of threads calculating interest for I bond holdings concurrently */
+   private final int workerThreads;
+   /** Maximum number of interest payments to record in each commit batch */
+   private final int commitBatchSize;
+   /** true to calculate interest in cents held in longs rather than in BigDecimals */
+   private final boolean scaledKernel;
+   /** Cancellation checked while loading rates and calculating interest */
+   private final CancellationToken cancellation = new CancellationToken();
+   /** Phase timers and counters for this run */
+   private final RunMetrics metrics;
+   /** Snapshot of historical I bond interest rates used for all our calculations */
+   private volatile RateTable rateTable = null;
    private static final String propertiesFileName = "ibond-values.properties";
 
-   private static final int INTEREST_RATE_DIGITS = 4;
-   private static final int SEMIANNUAL_MONTHS = 6;
-   private static final int PENALTY_MONTHS = 3;
-   private static final BigDecimal INITIAL_UNIT_VALUE = BigDecimal.valueOf(25);
-   private static final int MATURITY_YEARS = 30;
-   private static final int PENALTY_YEARS = 5;
+   static final int INTEREST_RATE_DIGITS = 4;
+   static final int SEMIANNUAL_MONTHS = 6;
+   static final int PENALTY_MONTHS = 3;
+   static final BigDecimal INITIAL_UNIT_VALUE = BigDecimal.valueOf(25);
+   static final int MATURITY_YEARS = 30;
+   static final int PENALTY_YEARS = 5;
+   private static final int HTTP_OK = 200;
+   private static final int HTTP_NOT_MODIFIED = 304;
+   private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(20);
+   /** Longest wait for the response headers once a request is sent */
+   private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+   /** Longest time to receive the spreadsheet once the response headers arrive */
+   private static final Duration BODY_TIMEOUT = Duration.ofSeconds(120);
 
-   private static final Consumer<Integer> NOOP = ignoredInteger -> {};
    private static final DateTimeFormatter TICKER_DATE_FORMATTER = new DateTimeFormatterBuilder()
       .parseCaseInsensitive()
       .appendLiteral(MdUtil.IBOND_TICKER_PREFIX)
@@ -76,13 +98,25 @@ public class IBondImporter {
    } // end record IBondRateRec
 
    /**
-    * Sole constructor.
+    * Standard constructor.
+    *
+    * @param storage Moneydance local storage
     */
-   public IBondImporter() throws MduException {
-      this.props = MdUtil.loadProps(propertiesFileName, getClass());
-      this.histColHdrHandlers.put(getProperty("col.irate"), colIdx -> this.iRateCol = colIdx);
-      this.histColHdrHandlers.put(getProperty("col.frate"), colIdx -> this.fRateCol = colIdx);
-      this.histColHdrHandlers.put(getProperty("col.sdate"), colIdx -> this.sDateCol = colIdx);
+   public IBondImporter(Map<String, String> storage) throws MduException {
+      this(MdUtil.loadProps(propertiesFileName, IBondImporter.class), storage);
+
+   } // end constructor
+
+   /**
+    * Constructor allowing the module properties to be supplied.
+    *
+    * @param props   Module properties
+    * @param storage Moneydance local storage
+    */
+   IBondImporter(Properties props, Map<String, String> storage) throws MduException {
+      this.props = props;
+      this.storage = storage;
+      this.rateCache = new RateCache(storage);
 
       String uriStr = getProperty("url.treasurydirect");
       try {
@@ -90,6 +124,40 @@ public class IBondImporter {
       } catch (Exception e) {
          throw new MduException(e, "Problem parsing URL [%s]", uriStr);
       }
+      String hoursStr = getProperty("cache.revalidate.hours");
+      try {
+         this.revalidateInterval = Duration.ofHours(Long.parseLong(hoursStr));
+      } catch (Exception e) {
+         throw new MduException(e, "Problem parsing revalidate hours [%s]", hoursStr);
+      }
+      this.useBundledRates = Boolean.parseBoolean(getProperty("rates.bundled"));
+      this.prefetchRates = Boolean.parseBoolean(getProperty("rates.prefetch"));
+      String threadsStr = getProperty("worker.threads");
+      try {
+         int threads = Integer.parseInt(threadsStr);
+         this.workerThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+      } catch (Exception e) {
+         throw new MduException(e, "Problem parsing worker threads [%s]", threadsStr);
+      }
+      String batchStr = getProperty("commit.batch.size");
+      try {
+         this.commitBatchSize = Math.max(1, Integer.parseInt(batchStr));
+      } catch (Exception e) {
+         throw new MduException(e, "Problem parsing commit batch size [%s]", batchStr);
+      }
+      String historyStr = getProperty("metrics.history.runs");
+      try {
+         this.metrics = new RunMetrics(Math.max(1, Integer.parseInt(historyStr)));
+      } catch (Exception e) {
+         throw new MduException(e, "Problem parsing metrics history runs [%s]", historyStr);
+      }
+      String kernelStr = getProperty("calc.kernel");
+      switch (kernelStr) {
+         case "scaled" -> this.scaledKernel = true;
+         case "decimal" -> this.scaledKernel = false;
+         default -> throw new MduException(null,
+            "Calculation kernel [%s] is neither scaled nor decimal", kernelStr);
+      }
 
    } // end constructor
 
@@ -107,152 +175,196 @@ public class IBondImporter {
    } // end getProperty(String)
 
    /**
-    * {@return fastexcel-reader ReadableWorkbook of a spreadsheet on the TreasuryDirect website}
+    * {@return Number of threads to use calculating interest for I bond holdings}
     */
-   private ReadableWorkbook getIBondRateHistoryWorkbook() throws MduException {
-      try (InputStream iStream = this.iBondRateHistory.toURL().openStream()) {
+   int workerThreads() {
 
-         // fastexcel-reader Javadoc explains the following constructor loads the whole
-         // xlsx file into memory, so it's okay that we close the stream after construction
-         // https://javadoc.io/doc/org.dhatim/fastexcel-reader
-         return new ReadableWorkbook(iStream);
-      } catch (Exception e) {
-         throw new MduException(e, "Problem accessing %s", this.iBondRateHistory);
-      } // end try-with-resources
-   } // end getIBondRateHistoryWorkbook()
+      return this.workerThreads;
+   } // end workerThreads()
 
    /**
-    * Retrieve an interest rate value from a spreadsheet
-    * cell and clean it up to avoid lots of zeros and nines.
-    *
-    * @param cell Cell to interrogate
-    * @return BigDecimal value rounded to the fourth place past the decimal point
+    * {@return Cancellation checked while loading rates and calculating interest}
     */
-   private static BigDecimal getInterestRateClean(Cell cell) {
-      BigDecimal bd = cell.asNumber();
+   CancellationToken cancellation() {
 
-      return bd.setScale(INTEREST_RATE_DIGITS, HALF_UP);
-   } // end getInterestRateClean(Cell)
+      return this.cancellation;
+   } // end cancellation()
 
    /**
-    * Retrieve a year and month value from a spreadsheet cell.
-    *
-    * @param cell Cell to interrogate
-    * @return Year-month value
+    * {@return Phase timers and counters for this run}
+    */
+   RunMetrics metrics() {
+
+      return this.metrics;
+   } // end metrics()
+
+   /**
+    * {@return true to start loading rates in the background before they are needed}
     */
-   private static YearMonth getMonthClean(Cell cell) {
-      LocalDateTime date = cell.asDate();
+   boolean prefetchRates() {
 
-      return YearMonth.of(date.getYear(), date.getMonthValue());
-   } // end getMonthClean(Cell)
+      return this.prefetchRates;
+   } // end prefetchRates()
 
    /**
-    * Load I bond interest rate history from a spreadsheet on the TreasuryDirect website.
+    * {@return Maximum number of interest payments to record in each commit batch}
+    */
+   int commitBatchSize() {
+
+      return this.commitBatchSize;
+   } // end commitBatchSize()
+
+   /**
+    * Obtain the I bond interest rate history snapshot for our calculations, taking
+    * over a background prefetch of the rates when one was started for our local storage.
     * Runs on worker thread.
     *
     * @throws MduException Problem retrieving or interpreting TreasuryDirect spreadsheet
     */
    public void loadIBondRates() throws MduException {
-      if (this.iBondRates == null) {
-         try (ReadableWorkbook wb = getIBondRateHistoryWorkbook()) {
-            String dataSheetName = getProperty("sheet.data");
-            Sheet dataSheet = wb.findSheet(dataSheetName).orElseThrow(
-               () -> new MduException(null, "Unable to find sheet %s in %s",
-                  dataSheetName, this.iBondRateHistory));
-
-            Spliterator<Row> dataRowItr;
-            try {
-               dataRowItr = dataSheet.openStream().spliterator();
-            } catch (Exception e) {
-               throw new MduException(e, "Problem accessing rows in %s", this.iBondRateHistory);
-            }
-            loadColumnIndexes(dataRowItr);
-            this.iBondRates = getIBondRates(dataRowItr);
-         } catch (IOException e) {
-            throw new MduException(e, "Problem closing %s", this.iBondRateHistory);
-         }
+      if (this.rateTable == null) {
+         RatePrefetcher.take(this.storage, this.cancellation, this.metrics)
+            .ifPresent(table -> this.rateTable = table);
+         loadIBondRatesNow();
       }
 
    } // end loadIBondRates()
 
    /**
-    * {@return Mapping from months to historical I bond interest rates}
+    * Obtain the I bond interest rate history snapshot for our calculations. The
+    * process-wide snapshot is reused while our persistent cache is fresh. Otherwise
+    * the spreadsheet on the TreasuryDirect website is revalidated, using a conditional
+    * GET, and any changed rates are published as a new process-wide snapshot. Without
+    * cached rates, the rates bundled with this extension are only a fallback for when
+    * the website can't supply the spreadsheet, since rates may have changed since the build.
+    * Runs on worker thread.
+    *
+    * @throws MduException Problem retrieving or interpreting TreasuryDirect spreadsheet
     */
-   private TreeMap<YearMonth, IBondRateRec> getIBondRates() {
-      if (this.iBondRates == null)
-         throw new IllegalStateException("%s.loadIBondRates must be called earlier"
-            .formatted(getClass().getSimpleName()));
+   void loadIBondRatesNow() throws MduException {
+      if (this.rateTable == null) {
+         Optional<RateTable> current = RateTable.current();
+         boolean fresh = this.rateCache.isFresh(this.revalidateInterval);
+
+         if (current.isPresent() && fresh) {
+            this.rateTable = current.get();
+         } else {
+            Optional<TreeMap<YearMonth, IBondRateRec>> cachedRates = this.rateCache.rates();
+
+            if (cachedRates.isEmpty() && this.useBundledRates) {
+               cachedRates = RateSnapshot.bundled();
+               fresh = false;
+            }
+            this.rateTable = RateTable.publish(cachedRates.isPresent() && fresh
+               ? cachedRates.get() : fetchIBondRates(cachedRates));
+         }
+      }
 
-      return this.iBondRates;
-   } // end getIBondRates()
+   } // end loadIBondRatesNow()
 
    /**
-    * Load the column indexes of interest into our corresponding fields. Find
-    * these column headers in the next row provided by the supplied spliterator.
+    * Use cached rates when the TreasuryDirect website can't supply fresh ones.
     *
-    * @param dataRowItr Row spliterator over the data sheet portion of the spreadsheet to use
-    * @throws MduException Problem finding all interesting column headers
+    * @param cachedRates Optional cached or bundled mapping from months to historical
+    *                    I bond interest rates
+    * @param problem     Description of what went wrong
+    * @param cause       Exception that caused the problem, or null
+    * @return Mapping from months to historical I bond interest rates
+    * @throws MduException When no cached or bundled rates are available
     */
-   private void loadColumnIndexes(Spliterator<Row> dataRowItr) throws MduException {
-      while (dataRowItr.tryAdvance(row -> {
-         for (Cell cell : row) {
-            if (cell != null && cell.getType() == STRING) {
-               this.histColHdrHandlers.getOrDefault(cell.asString(), NOOP)
-                  .accept(cell.getColumnIndex());
-            }
-         } // end for each cell in the next row
-      })) {
-         if (this.iRateCol >= 0 && this.fRateCol >= 0 && this.sDateCol >= 0)
-            return;
+   private TreeMap<YearMonth, IBondRateRec> fallBack(
+         Optional<TreeMap<YearMonth, IBondRateRec>> cachedRates, String problem,
+         Exception cause) throws MduException {
+      if (cachedRates.isPresent()) {
+         MdLog.all("Using cached I bond rates; %s%s"
+            .formatted(problem, cause == null ? "" : ": " + cause));
+
+         return cachedRates.get();
       }
-
-      throw new MduException(null, "Unable to locate column headers %s in %s",
-         this.histColHdrHandlers.keySet(), this.iBondRateHistory);
-
-   } // end loadColumnIndexes(Spliterator<Row>)
+      throw new MduException(cause, "%s", problem);
+   } // end fallBack(Optional<TreeMap<YearMonth, IBondRateRec>>, String, Exception)
 
    /**
-    * Load I bond interest rate history from a spreadsheet on the TreasuryDirect website.
+    * Retrieve I bond interest rate history from the TreasuryDirect website, unless
+    * the server indicates our cached rates are still current. Fall back to cached, or
+    * bundled, rates when the website can't be reached or doesn't supply the spreadsheet.
     *
-    * @param dataRowItr Row spliterator over the data sheet portion of the spreadsheet to use
-    * @return Mapping from dates to historical I bond interest rates
+    * @param cachedRates Optional cached or bundled mapping from months to historical
+    *                    I bond interest rates
+    * @return Mapping from months to historical I bond interest rates
+    * @throws MduException Problem retrieving or interpreting TreasuryDirect spreadsheet
     */
-   private TreeMap<YearMonth, IBondRateRec> getIBondRates(Spliterator<Row> dataRowItr) {
-      TreeMap<YearMonth, IBondRateRec> iBondRates = new TreeMap<>();
-
-      dataRowItr.forEachRemaining(row -> {
-         Optional<Cell> iRateCell = getCellOfType(this.iRateCol, NUMBER, row);
-         Optional<Cell> fRateCell = getCellOfType(this.fRateCol, NUMBER, row);
-         Optional<Cell> sDateCell = getCellOfType(this.sDateCol, FORMULA, row);
-
-         if (iRateCell.isPresent() && fRateCell.isPresent() && sDateCell.isPresent()) {
-            BigDecimal inflateRate = getInterestRateClean(iRateCell.get());
-            BigDecimal fixedRate = getInterestRateClean(fRateCell.get());
-            YearMonth startMonth = getMonthClean(sDateCell.get());
-            iBondRates.put(startMonth, new IBondRateRec(inflateRate, fixedRate, startMonth));
+   private TreeMap<YearMonth, IBondRateRec> fetchIBondRates(
+         Optional<TreeMap<YearMonth, IBondRateRec>> cachedRates) throws MduException {
+      HttpRequest.Builder reqBuilder = HttpRequest.newBuilder(this.iBondRateHistory)
+         .timeout(REQUEST_TIMEOUT).GET();
+
+      if (cachedRates.isPresent()) {
+         this.rateCache.etag().ifPresent(etag ->
+            reqBuilder.header("If-None-Match", etag));
+         this.rateCache.lastModified().ifPresent(lastModified ->
+            reqBuilder.header("If-Modified-Since", lastModified));
+      }
+      HttpResponse<InputStream> response;
+      try (RunMetrics.Span ignored = this.metrics.time(DOWNLOAD)) {
+         response = this.cancellation.await(HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(CONNECT_TIMEOUT).build()
+            .sendAsync(reqBuilder.build(), HttpResponse.BodyHandlers.ofInputStream()));
+      } catch (CancellationException e) {
+         throw e;
+      } catch (Exception e) {
+         if (e instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+         }
+
+         return fallBack(cachedRates, "Problem accessing %s"
+            .formatted(this.iBondRateHistory), e);
+      }
+
+      try (InputStream body = response.body()) {
+         if (response.statusCode() == HTTP_NOT_MODIFIED && cachedRates.isPresent()) {
+            this.rateCache.markChecked();
+
+            return cachedRates.get();
          }
-      }); // end for each remaining row
+         if (response.statusCode() != HTTP_OK)
+            return fallBack(cachedRates, "Received HTTP status %d from %s"
+               .formatted(response.statusCode(), this.iBondRateHistory), null);
+
+         // the request timeout only covers the headers, so close a stalled download
+         CompletableFuture<Void> stalled = CompletableFuture.runAsync(
+            () -> RateSheetParser.close(body),
+            CompletableFuture.delayedExecutor(BODY_TIMEOUT.toMillis(), MILLISECONDS));
+         TreeMap<YearMonth, IBondRateRec> iBondRates;
+         try {
+            iBondRates = new RateSheetParser(this.iBondRateHistory,
+               getProperty("sheet.data"), getProperty("col.irate"), getProperty("col.frate"),
+               getProperty("col.sdate"), this.cancellation, this.metrics).parse(body);
+         } finally {
+            stalled.cancel(false);
+         }
+         this.rateCache.store(iBondRates, response.headers().firstValue("ETag"),
+            response.headers().firstValue("Last-Modified"));
 
-      return iBondRates;
-   } // end getIBondRates(Spliterator<Row>)
+         return iBondRates;
+      } catch (IOException e) {
+         throw new MduException(e, "Problem closing response from %s", this.iBondRateHistory);
+      }
+   } // end fetchIBondRates(Optional<TreeMap<YearMonth, IBondRateRec>>)
 
    /**
-    * Get the cell at the specified column index with the desired type, otherwise null.
-    *
-    * @param colIndex column index to get
-    * @param desiredType desired type of cell
-    * @param row row containing cell
-    * @return Optional cell with the desired type
+    * {@return Snapshot of historical I bond interest rates used for all our calculations}
     */
-   private static Optional<Cell> getCellOfType(int colIndex, CellType desiredType, Row row) {
-      Optional<Cell> cell = row.getOptionalCell(colIndex);
+   public RateTable getRateTable() {
+      RateTable table = this.rateTable;
 
-      if (cell.isPresent() && cell.get().getType() != desiredType) {
-         cell = Optional.empty();
-      }
+      if (table == null)
+         throw new IllegalStateException("%s.loadIBondRates must be called earlier"
+            .formatted(getClass().getSimpleName()));
 
-      return cell;
-   } // end getCellOfType(int, CellType, Row)
+      return table;
+   } // end getRateTable()
 
    /**
     * Generic min utility.
@@ -261,7 +373,7 @@ public class IBondImporter {
     * @param b Comparable parameter b
     * @return Earlier of a or b
     */
-   private static <T extends Comparable<T>> T min(T a, T b) {
+   static <T extends Comparable<T>> T min(T a, T b) {
 
       return a.compareTo(b) <= 0 ? a : b;
    } // end min(T, T)
@@ -292,7 +404,7 @@ public class IBondImporter {
             e.getLocalizedMessage());
       }
 
-      if (issueMonth.isBefore(getIBondRates().firstKey()))
+      if (issueMonth.isBefore(getRateTable().firstMonth()))
          throw new MduExcepcionito(null,
             "No interest rates for I bonds issued as early as %tY-%<tm (%s)",
             issueMonth, tickerSymbol);
@@ -300,43 +412,6 @@ public class IBondImporter {
       return issueMonth;
    } // end getDateForTicker(String)
 
-   /**
-    * Find the Series I savings bond interest rate history data for a given month.
-    * Note: The caller must ensure the specified month is not earlier than
-    * the earliest historical I bond interest rate (currently Nov. 1997).
-    *
-    * @param month Month for which to return I bond rate record
-    * @return Corresponding I bond rate record
-    */
-   private IBondRateRec getRateForMonth(YearMonth month) {
-
-      return getIBondRates().floorEntry(month).getValue();
-   } // end getRateForMonth(YearMonth)
-
-   /**
-    * Compose the interest rate that will apply for the specified fixed and semiannual
-    * inflation interest rates using the rules for Series I savings bonds. See
-    * <a href="https://www.treasurydirect.gov/savings-bonds/i-bonds/i-bonds-interest-rates">
-    *    TreasuryDirect website</a> for details.
-    *
-    * @param fixedRate     Fixed interest rate
-    * @param inflationRate Semiannual inflation interest rate
-    * @return Composite interest rate
-    */
-   private static BigDecimal combineRate(BigDecimal fixedRate, BigDecimal inflationRate) {
-      BigDecimal compositeRate =
-         fixedRate.add(BigDecimal.TWO).multiply(inflationRate).add(fixedRate);
-
-      if (compositeRate.signum() < 0) {
-         compositeRate = BigDecimal.ZERO;
-      }
-
-      // Round composite rate to the fourth place past the decimal point
-      compositeRate = compositeRate.setScale(INTEREST_RATE_DIGITS, HALF_UP);
-
-      return compositeRate;
-   } // end combineRate(BigDecimal, BigDecimal)
-
    /**
     * Update current balances for a specified month.
     *
@@ -375,25 +450,23 @@ public class IBondImporter {
     *    Title 31 Subtitle B Chapter II Subchapter A Part 359</a>.
     *
     * @param curBals          Current balances in calculation
-    * @param compositeRate    Composite interest rate to use
+    * @param schedule         Composite rates and unit values for this bond's issue month
+    * @param period           Semiannual period since issue
     * @param penaltyFreeMonth Month I bond stops losing the last 3 months of interest
     * @param iBondIntTxns     Collection of interest payment transactions
     * @param monthNet         Function providing total net deposits and redemptions for a month
     */
    private static void addInterestTxns(IBondBalanceRec curBals,
-         BigDecimal compositeRate, YearMonth penaltyFreeMonth, CalcTxnList iBondIntTxns,
-         Function<YearMonth, BigDecimal> monthNet) {
-      BigDecimal unitVal = curBals.unitVal(), priorUnitVal = unitVal;
-      BigDecimal monthlyMultiplier = BigDecimal.valueOf(
-         Math.pow(1.0 + compositeRate.doubleValue() / 2.0, 1.0 / SEMIANNUAL_MONTHS));
+         CompositeRateSchedule schedule, int period, YearMonth penaltyFreeMonth,
+         CalcTxnList iBondIntTxns, Function<YearMonth, BigDecimal> monthNet) {
+      int monthIdx = period * SEMIANNUAL_MONTHS;
 
       for (int m = 0; m < SEMIANNUAL_MONTHS; ++m) {
-         unitVal = unitVal.multiply(monthlyMultiplier, DECIMAL64);
-         BigDecimal roundedUnitVal = unitVal.setScale(2, HALF_UP);
+         ++monthIdx;
          BigDecimal eligibleUnits = curBals.eligibleBal().divide(curBals.unitVal(), DECIMAL64);
-         BigDecimal interest = roundedUnitVal.subtract(priorUnitVal).multiply(eligibleUnits)
+         BigDecimal interest = schedule.unitValueDelta(monthIdx).multiply(eligibleUnits)
             .setScale(2, HALF_UP);
-         String memo = "%tb %<tY interest".formatted(curBals.month());
+         String memo = CalcTxn.interestMemo(curBals.month());
          curBals.month(curBals.month().plusMonths(1));
 
          if (interest.signum() > 0) {
@@ -404,11 +477,10 @@ public class IBondImporter {
          }
 
          updateBalances(curBals, curBals.month(), iBondIntTxns, monthNet);
-         priorUnitVal = roundedUnitVal;
       } // end for non-compounding months
-      curBals.unitVal(priorUnitVal);
+      curBals.unitVal(schedule.unitValue(monthIdx));
 
-   } // end addInterestTxns(IBondBalanceRec, BigDecimal, YearMonth, CalcTxnList, Function)
+   } // end addInterestTxns(IBondBalanceRec, CompositeRateSchedule, int, YearMonth, ...)
 
    /**
     * Top-level orchestrator for computing all interest payment transactions for a Series I
@@ -424,33 +496,244 @@ public class IBondImporter {
    public CalcTxnList calcIBondInterestTxns(String tickerSymbol,
          Function<YearMonth, BigDecimal> monthNet,
          Consumer<Supplier<String>> displayRates) throws MduExcepcionito {
-      CalcTxnList iBondIntTxns = new CalcTxnList();
-      YearMonth issueMonth = getDateForTicker(tickerSymbol);
-      BigDecimal issueVal = monthNet.apply(issueMonth);
 
-      IBondBalanceRec curBals = new IBondBalanceRec(issueVal, INITIAL_UNIT_VALUE, issueMonth);
-      YearMonth endMonth = min(issueMonth.plusYears(MATURITY_YEARS),
-         getIBondRates().lastKey().plusMonths(SEMIANNUAL_MONTHS));
-      BigDecimal fixedRate = getRateForMonth(issueMonth).fixedRate();
+      return calcIBondInterestTxns(tickerSymbol, monthNet, displayRates, null, null);
+   } // end calcIBondInterestTxns(String, Function, Consumer)
+
+   /**
+    * Compute interest payment transactions for a Series I savings bond, optionally resuming
+    * from a checkpoint rather than starting at issue. When resuming, only transactions
+    * payable after the checkpoint month are produced. A checkpoint whose issue month or
+    * rates no longer match is ignored. Deposits, redemptions and recorded interest
+    * payments through the checkpoint month are the caller's responsibility to verify.
+    * Note: {@code loadIBondRates} must have been called on this instance earlier.
+    *
+    * @param tickerSymbol    Ticker symbol in the format IBondYYYYMM
+    * @param monthNet        Function providing total net deposits and redemptions for a month
+    * @param displayRates    Consumer of interest rate message producer lambdas
+    * @param resumeFrom      Checkpoint to resume from, or null to start at issue
+    * @param checkpointLimit Capture a checkpoint at the latest semiannual boundary
+    *                        not after this month, or null to skip capture
+    * @return Collection of calculated interest payment transactions
+    * @throws MduExcepcionito Problem getting interest rates for the supplied ticker symbol
+    */
+   public CalcTxnList calcIBondInterestTxns(String tickerSymbol,
+         Function<YearMonth, BigDecimal> monthNet, Consumer<Supplier<String>> displayRates,
+         IBondCheckpoint resumeFrom, YearMonth checkpointLimit) throws MduExcepcionito {
+      CompositeRateSchedule schedule =
+         getRateTable().compositeSchedule(getDateForTicker(tickerSymbol));
+
+      return calcInterestTxns(schedule, monthNet, displayRates, resumeFrom, checkpointLimit, null);
+   } // end calcIBondInterestTxns(String, Function, Consumer, IBondCheckpoint, YearMonth)
+
+   /**
+    * Compute interest payment transactions for a Series I savings bond payable no later
+    * than a horizon month, optionally resuming from a checkpoint. Simulation stops once
+    * no further transaction can be payable by the horizon, so callers only interested
+    * in payments through some month avoid calculating the rest of the bond's life.
+    * Note: {@code loadIBondRates} must have been called on this instance earlier.
+    *
+    * @param tickerSymbol    Ticker symbol in the format IBondYYYYMM
+    * @param monthNet        Function providing total net deposits and redemptions for a month
+    * @param displayRates    Consumer of interest rate message producer lambdas
+    * @param resumeFrom      Checkpoint to resume from, or null to start at issue
+    * @param checkpointLimit Capture a checkpoint at the latest semiannual boundary
+    *                        not after this month, or null to skip capture
+    * @param horizon         Latest payment month wanted, or null for all payments
+    * @return Collection of calculated interest payment transactions
+    * @throws MduExcepcionito Problem getting interest rates for the supplied ticker symbol
+    */
+   public CalcTxnList calcIBondInterestTxns(String tickerSymbol,
+         Function<YearMonth, BigDecimal> monthNet, Consumer<Supplier<String>> displayRates,
+         IBondCheckpoint resumeFrom, YearMonth checkpointLimit, YearMonth horizon)
+         throws MduExcepcionito {
+      CompositeRateSchedule schedule =
+         getRateTable().compositeSchedule(getDateForTicker(tickerSymbol));
+
+      return calcInterestTxns(schedule, monthNet, displayRates, resumeFrom, checkpointLimit,
+         horizon);
+   } // end calcIBondInterestTxns(String, Function, Consumer, IBondCheckpoint, YearMonth, YearMonth)
+
+   /**
+    * Stream interest payment transactions for a Series I savings bond in payment month
+    * order, simulating one semiannual period at a time as the stream is consumed, and
+    * stopping once no further transaction can be payable by a horizon month. Each
+    * period resumes from a checkpoint captured by the period before, so transactions
+    * match those of {@code calcIBondInterestTxns}.
+    * Note: {@code loadIBondRates} must have been called on this instance earlier.
+    *
+    * @param tickerSymbol Ticker symbol in the format IBondYYYYMM
+    * @param monthNet     Function providing total net deposits and redemptions for a month
+    * @param displayRates Consumer of interest rate message producer lambdas
+    * @param horizon      Latest payment month wanted, or null for all payments
+    * @return Sequential stream of calculated interest payment transactions
+    * @throws MduExcepcionito Problem getting interest rates for the supplied ticker symbol
+    */
+   public Stream<CalcTxn> streamIBondInterestTxns(String tickerSymbol,
+         Function<YearMonth, BigDecimal> monthNet, Consumer<Supplier<String>> displayRates,
+         YearMonth horizon) throws MduExcepcionito {
+      CompositeRateSchedule schedule =
+         getRateTable().compositeSchedule(getDateForTicker(tickerSymbol));
+
+      return StreamSupport.stream(
+         new CalcTxnSpliterator(this, schedule, monthNet, displayRates, horizon), false);
+   } // end streamIBondInterestTxns(String, Function, Consumer, YearMonth)
+
+   /**
+    * Determine how many semiannual periods must be simulated for all transactions
+    * payable by a horizon month. Interest accrued in a month is payable no earlier than
+    * the following month, so a period starting at or after the horizon pays nothing by then.
+    *
+    * @param schedule Composite rates and unit values for the bond's issue month
+    * @param horizon  Latest payment month wanted, or null for all payments
+    * @return Number of leading periods of the schedule to simulate
+    */
+   static int endPeriod(CompositeRateSchedule schedule, YearMonth horizon) {
+      if (horizon == null)
+         return schedule.periods();
+      int horizonIdx = RateTable.monthOrdinal(horizon)
+         - RateTable.monthOrdinal(schedule.issueMonth());
+
+      return Math.clamp(Math.ceilDiv(horizonIdx, SEMIANNUAL_MONTHS), 0, schedule.periods());
+   } // end endPeriod(CompositeRateSchedule, YearMonth)
+
+   /**
+    * Compute interest payment transactions for a Series I savings bond following a given
+    * composite rate schedule, which may come from a rate table other than the current one.
+    *
+    * @param schedule        Composite rates and unit values for the bond's issue month
+    * @param monthNet        Function providing total net deposits and redemptions for a month
+    * @param displayRates    Consumer of interest rate message producer lambdas
+    * @param resumeFrom      Checkpoint to resume from, or null to start at issue
+    * @param checkpointLimit Capture a checkpoint at the latest semiannual boundary
+    *                        not after this month, or null to skip capture
+    * @return Collection of calculated interest payment transactions
+    */
+   CalcTxnList calcInterestTxns(CompositeRateSchedule schedule,
+         Function<YearMonth, BigDecimal> monthNet, Consumer<Supplier<String>> displayRates,
+         IBondCheckpoint resumeFrom, YearMonth checkpointLimit) {
+
+      return calcInterestTxns(schedule, monthNet, displayRates, resumeFrom, checkpointLimit, null);
+   } // end calcInterestTxns(CompositeRateSchedule, Function, Consumer, IBondCheckpoint, YearMonth)
+
+   /**
+    * Compute interest payment transactions for a Series I savings bond following a given
+    * composite rate schedule, payable no later than a horizon month.
+    *
+    * @param schedule        Composite rates and unit values for the bond's issue month
+    * @param monthNet        Function providing total net deposits and redemptions for a month
+    * @param displayRates    Consumer of interest rate message producer lambdas
+    * @param resumeFrom      Checkpoint to resume from, or null to start at issue
+    * @param checkpointLimit Capture a checkpoint at the latest semiannual boundary
+    *                        not after this month, or null to skip capture
+    * @param horizon         Latest payment month wanted, or null for all payments
+    * @return Collection of calculated interest payment transactions
+    */
+   CalcTxnList calcInterestTxns(CompositeRateSchedule schedule,
+         Function<YearMonth, BigDecimal> monthNet, Consumer<Supplier<String>> displayRates,
+         IBondCheckpoint resumeFrom, YearMonth checkpointLimit, YearMonth horizon) {
+      CalcTxnList iBondIntTxns = new CalcTxnList();
+      YearMonth issueMonth = schedule.issueMonth();
       YearMonth penaltyFreeMonth = issueMonth.plusYears(PENALTY_YEARS);
+      boolean resumable = isResumable(resumeFrom, schedule);
+      int startPeriod = resumable ? (RateTable.monthOrdinal(resumeFrom.month())
+         - RateTable.monthOrdinal(issueMonth)) / SEMIANNUAL_MONTHS : 0;
+      int endPeriod = endPeriod(schedule, horizon);
+      this.metrics.add(MONTHS, (long) Math.max(0, endPeriod - startPeriod) * SEMIANNUAL_MONTHS);
+
+      if (this.scaledKernel) {
+         try {
+            CalcTxnList kernelTxns = new ScaledInterestKernel(schedule, monthNet, this.cancellation)
+               .calcInterestTxns(displayRates, resumable ? resumeFrom : null, checkpointLimit,
+                  horizon);
+            this.metrics.add(CALC_TXNS, kernelTxns.size());
+
+            return kernelTxns;
+         } catch (ArithmeticException e) {
+            // some amount is not in whole cents, so use BigDecimal arithmetic
+            MdLog.debug(() -> "Scaled kernel fell back to BigDecimal arithmetic for I bonds "
+               + "issued %s; %s".formatted(schedule.issueMonth(), e.getMessage()));
+         }
+      }
+      IBondBalanceRec curBals;
+
+      if (resumable) {
+         curBals = resumeFrom.toBalanceRec();
+         resumeFrom.copyPendingTxns().forEach(iBondIntTxns::add);
+      } else {
+         BigDecimal issueVal = monthNet.apply(issueMonth);
+         curBals = new IBondBalanceRec(issueVal, INITIAL_UNIT_VALUE, issueMonth);
+      }
 
-      while (curBals.month().isBefore(endMonth)) {
-         BigDecimal inflateRate = getRateForMonth(curBals.month()).inflationRate();
-         BigDecimal compositeRate = combineRate(fixedRate, inflateRate);
+      for (int period = startPeriod; period < endPeriod; ++period) {
+         this.cancellation.checkCancelled();
+         BigDecimal compositeRate = schedule.compositeRate(period);
          displayRates.accept(() -> "For I bonds issued %s, starting %s composite rate is %s%%"
             .formatted(issueMonth, curBals.month(), compositeRate.scaleByPowerOfTen(2)));
-         addInterestTxns(curBals, compositeRate, penaltyFreeMonth, iBondIntTxns, monthNet);
+         addInterestTxns(curBals, schedule, period, penaltyFreeMonth, iBondIntTxns, monthNet);
          // compound semiannually, including interest not yet available
          curBals.eligibleBal(curBals.redemptionVal()
             .add(iBondIntTxns.tailKeys(curBals.month()).stream()
                .map(tMonth -> addAmounts(iBondIntTxns.getForMonth(tMonth)))
                .reduce(BigDecimal.ZERO, BigDecimal::add)));
-      } // end while more months
 
-      iBondIntTxns.tailKeys(curBals.month()).forEach(tailingMonth ->
-         updateBalances(curBals, tailingMonth, iBondIntTxns, monthNet));
+         if (checkpointLimit != null && !curBals.month().isAfter(checkpointLimit)
+               && (period + 1 == endPeriod
+                  || curBals.month().plusMonths(SEMIANNUAL_MONTHS).isAfter(checkpointLimit))) {
+            iBondIntTxns.checkpoint(captureCheckpoint(curBals, schedule, period, iBondIntTxns));
+         }
+      } // end for each semiannual period
+
+      if (endPeriod == schedule.periods()) {
+         iBondIntTxns.tailKeys(curBals.month()).forEach(tailingMonth ->
+            updateBalances(curBals, tailingMonth, iBondIntTxns, monthNet));
+      }
+      if (horizon != null) {
+         // payments later than our simulation are incomplete or lack balances
+         iBondIntTxns.truncateAfter(horizon);
+      }
+      this.metrics.add(CALC_TXNS, iBondIntTxns.size());
 
       return iBondIntTxns;
-   } // end calcIBondInterestTxns(String, Function, Consumer)
+   } // end calcInterestTxns(CompositeRateSchedule, Function, Consumer, IBondCheckpoint, ...)
+
+   /**
+    * @param checkpoint Checkpoint to examine, or null
+    * @param schedule   Composite rates and unit values for the bond's issue month
+    * @return true when the checkpoint can be used to resume calculations with this schedule
+    */
+   private static boolean isResumable(IBondCheckpoint checkpoint, CompositeRateSchedule schedule) {
+      if (checkpoint == null || !checkpoint.issueMonth().equals(schedule.issueMonth()))
+         return false;
+
+      int monthsSinceIssue = RateTable.monthOrdinal(checkpoint.month())
+         - RateTable.monthOrdinal(schedule.issueMonth());
+      int numPeriods = monthsSinceIssue / SEMIANNUAL_MONTHS;
+
+      return monthsSinceIssue > 0 && monthsSinceIssue % SEMIANNUAL_MONTHS == 0
+         && numPeriods <= schedule.periods()
+         && checkpoint.ratesKey().equals(schedule.ratesKey(numPeriods));
+   } // end isResumable(IBondCheckpoint, CompositeRateSchedule)
+
+   /**
+    * Capture calculation state at a semiannual boundary.
+    *
+    * @param curBals      Current balances, just after compounding
+    * @param schedule     Composite rates and unit values for the bond's issue month
+    * @param period       Semiannual period just completed
+    * @param iBondIntTxns Collection of interest payment transactions
+    * @return Checkpoint without a deposits, redemptions and interest payments fingerprint
+    */
+   static IBondCheckpoint captureCheckpoint(IBondBalanceRec curBals,
+         CompositeRateSchedule schedule, int period, CalcTxnList iBondIntTxns) {
+      List<CalcTxn> pendingTxns = new ArrayList<>();
+      iBondIntTxns.tailKeys(curBals.month()).forEach(tMonth ->
+         iBondIntTxns.getForMonth(tMonth).forEach(txn ->
+            pendingTxns.add(new CalcTxn(txn.payMonth(), txn.payAmount(), txn.memo()))));
+
+      return new IBondCheckpoint(schedule.issueMonth(), curBals.month(),
+         curBals.redemptionVal(), curBals.eligibleBal(), curBals.unitVal(),
+         List.copyOf(pendingTxns), schedule.ratesKey(period + 1), "");
+   } // end captureCheckpoint(IBondBalanceRec, CompositeRateSchedule, int, CalcTxnList)
 
 } // end class IBondImporter
@@ -10,6 +10,8 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.event.WindowEvent;
+import java.io.File;
+import java.nio.file.Path;
 import java.util.ArrayDeque;
 import java.util.Map;
 
@@ -17,8 +19,11 @@ import static javax.swing.GroupLayout.DEFAULT_SIZE;
 
 public class IBondWindow extends JFrame {
    private final MdStorageUtil mdStorage;
+   private JButton btnExportLog;
    private JButton btnCommit;
+   private JProgressBar prgCommit;
    private HTMLPane pnOutputLog;
+   private OutputLog outputLog;
    private final AwtScreenUtil screenUtil = new AwtScreenUtil(this);
    /** Reference to object to manage staged changes */
    private StagedInterface staged = null;
@@ -49,25 +54,40 @@ public class IBondWindow extends JFrame {
       contentPane.setBorder(new EmptyBorder(5, 5, 5, 5));
       setContentPane(contentPane);
 
+      this.btnExportLog = new JButton("Export Log");
+      HTMLPane.reduceHeight(this.btnExportLog, 20);
+      this.btnExportLog.setToolTipText("Save the full output log to a file");
+
       this.btnCommit = new JButton("Commit");
       this.btnCommit.setEnabled(false);
       HTMLPane.reduceHeight(this.btnCommit, 20);
       this.btnCommit.setToolTipText("Commit changes to Moneydance");
 
+      this.prgCommit = new JProgressBar();
+      this.prgCommit.setStringPainted(true);
+      this.prgCommit.setVisible(false);
+
       this.pnOutputLog = new HTMLPane();
+      this.outputLog = new OutputLog(this.pnOutputLog, OutputLog.MAX_LINES);
       JScrollPane scrollPane = new JScrollPane(this.pnOutputLog);
       GroupLayout layoutContent = new GroupLayout(contentPane);
       layoutContent.setHorizontalGroup(
          layoutContent.createParallelGroup(GroupLayout.Alignment.TRAILING)
             .addGroup(layoutContent.createSequentialGroup()
-               .addContainerGap(403, Short.MAX_VALUE)
+               .addComponent(this.btnExportLog)
+               .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED, 97, Short.MAX_VALUE)
+               .addComponent(this.prgCommit, DEFAULT_SIZE, 200, DEFAULT_SIZE)
+               .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
                .addComponent(this.btnCommit))
             .addComponent(scrollPane, DEFAULT_SIZE, 532, Short.MAX_VALUE)
       );
       layoutContent.setVerticalGroup(
          layoutContent.createParallelGroup(GroupLayout.Alignment.LEADING)
             .addGroup(layoutContent.createSequentialGroup()
-               .addComponent(this.btnCommit)
+               .addGroup(layoutContent.createParallelGroup(GroupLayout.Alignment.CENTER)
+                  .addComponent(this.btnExportLog)
+                  .addComponent(this.prgCommit)
+                  .addComponent(this.btnCommit))
                .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
                .addComponent(scrollPane, DEFAULT_SIZE, 271, Short.MAX_VALUE))
       );
@@ -85,7 +105,7 @@ public class IBondWindow extends JFrame {
             try {
                this.staged.commitChanges().ifPresent(summary -> {
                   MdLog.all(summary);
-                  this.pnOutputLog.addText(summary);
+                  this.outputLog.add(summary);
                });
                enableCommitButton(this.staged.isModified());
             } catch (Exception e) {
@@ -96,6 +116,23 @@ public class IBondWindow extends JFrame {
          }
       }); // end btnCommit.addActionListener
 
+      this.btnExportLog.addActionListener(event -> {
+         // invoked when Export Log is selected
+         JFileChooser chooser = new JFileChooser();
+         chooser.setSelectedFile(new File("ibond-values-log.txt"));
+
+         if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            Path target = chooser.getSelectedFile().toPath();
+            try {
+               this.outputLog.export(target);
+               MdLog.all("Exported output log to " + target);
+            } catch (Exception e) {
+               MdLog.all("Problem exporting output log", e);
+               addText(e.toString());
+            }
+         }
+      }); // end btnExportLog.addActionListener
+
    } // end wireEvents()
 
    /**
@@ -107,11 +144,12 @@ public class IBondWindow extends JFrame {
    } // end readIconImage()
 
    /**
+    * Queue text for the output log text area, which renders queued text once per frame.
+    *
     * @param text HTML-text to append to the output log text area
     */
    public void addText(String text) {
-      MdLog.debug(text);
-      this.pnOutputLog.addText(text);
+      this.outputLog.add(text);
 
    } // end addText(String)
 
@@ -119,7 +157,7 @@ public class IBondWindow extends JFrame {
     * Clear the output log text area.
     */
    public void clearText() {
-      this.pnOutputLog.clearText();
+      this.outputLog.clear();
 
    } // end clearText()
 
@@ -131,6 +169,28 @@ public class IBondWindow extends JFrame {
 
    } // end enableCommitButton(boolean)
 
+   /**
+    * Show progress recording interest payments.
+    *
+    * @param numRecorded Number of payments recorded so far
+    * @param total       Total number of payments to record
+    */
+   public void showCommitProgress(int numRecorded, int total) {
+      this.prgCommit.setMaximum(total);
+      this.prgCommit.setValue(numRecorded);
+      this.prgCommit.setString("Recorded %d of %d".formatted(numRecorded, total));
+      this.prgCommit.setVisible(true);
+
+   } // end showCommitProgress(int, int)
+
+   /**
+    * Hide progress once recording interest payments ends.
+    */
+   public void endCommitProgress() {
+      this.prgCommit.setVisible(false);
+
+   } // end endCommitProgress()
+
    /**
     * Store the object to manage staged changes.
     *
@@ -193,6 +253,7 @@ public class IBondWindow extends JFrame {
             MdLog.all("Problem closing resource", e);
          }
       }
+      this.outputLog.close();
 
       return null;
    } // end goAway()
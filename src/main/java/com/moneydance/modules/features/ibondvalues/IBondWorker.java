@@ -2,6 +2,7 @@ package com.moneydance.modules.features.ibondvalues;
 
 import com.infinitekind.moneydance.model.*;
 import com.moneydance.apps.md.controller.FeatureModuleContext;
+import com.moneydance.modules.features.ibondvalues.HoldingIndex.AccountPair;
 import io.github.jrhillery.moneydance.*;
 
 import javax.swing.SwingWorker;
@@ -9,11 +10,19 @@ import java.math.BigDecimal;
 import java.time.YearMonth;
 import java.util.*;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static com.infinitekind.moneydance.model.Account.AccountType.INVESTMENT;
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Counter.SECURITIES;
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Phase.CALCULATE;
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Phase.SCAN;
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Phase.VERIFY;
 import static io.github.jrhillery.moneydance.MdUtil.IBOND_TICKER_PREFIX;
 
 public class IBondWorker extends SwingWorker<Boolean, String>
@@ -22,6 +31,7 @@ public class IBondWorker extends SwingWorker<Boolean, String>
    private final String extensionName;
    private final IBondImporter importer;
    private final AccountBook book;
+   private final Map<String, String> storage;
    private final CurrencyTable securities;
    private final TransactionSet txnSet;
    private boolean haveIBondSecurities = false;
@@ -30,21 +40,72 @@ public class IBondWorker extends SwingWorker<Boolean, String>
 
    private final Set<Account> informedAccounts = new HashSet<>();
    private final List<TxnHandler> interestTransactions = new ArrayList<>();
+   /** Checkpoints to store once staged interest payments are committed */
+   private final Map<String, IBondCheckpoint> pendingCheckpoints = new LinkedHashMap<>();
+   /** Commit started by an earlier invocation, to finish before calculating, or null */
+   private volatile CommitWorker priorCommit;
+   /** Commit of our staged interest payments, or null */
+   private CommitWorker commitWorker = null;
+   /** Completes when this worker is closed, ending any wait for a prior commit */
+   private final CompletableFuture<Void> closed = new CompletableFuture<>();
+
+   private static final String CHECKPOINT_KEY_PREFIX = "ibond-values.checkpoint.";
+
+   /**
+    * Data record for an I bond security held in an investment account, along with
+    * a snapshot of the Moneydance data needed to calculate its interest payments.
+    * The Moneydance model is not thread-safe, so processing a holding only reads
+    * these captured values; the accounts are only handed on to transaction handlers.
+    *
+    * @param ticker        Ticker symbol in the format IBondYYYYMM
+    * @param investAccount Investment account
+    * @param investName    Investment account name
+    * @param secName       Security account name
+    * @param decimalPlaces Number of decimal places in the investment account's currency
+    * @param txnList       List of investment transactions for the security account
+    * @param checkpointKey Local storage key for the security account's checkpoint
+    * @param resumeFrom    Checkpoint to resume calculations from, or null
+    * @param showRates     true to display interest rates used for this holding
+    */
+   private record Holding(String ticker, Account investAccount, String investName,
+         String secName, int decimalPlaces, InvestTxnList txnList, String checkpointKey,
+         IBondCheckpoint resumeFrom, boolean showRates) { }
+
+   /**
+    * Outcome of processing one holding, kept apart from this worker's state
+    * until merged so holdings may be processed concurrently.
+    */
+   private static final class HoldingResult {
+      /** Messages to display */
+      private final List<String> msgs = new ArrayList<>();
+      /** Handlers for new interest payment transactions */
+      private final List<TxnHandler> handlers = new ArrayList<>();
+      /** Index in msgs of the first new interest payment, or -1 when none */
+      private int firstNewPaymentIdx = -1;
+      /** Number of calculated transactions found to differ from Moneydance data */
+      private int numDiscrepancies = 0;
+      /** Checkpoint to store for the security account, or null */
+      private IBondCheckpoint checkpoint = null;
+
+   } // end class HoldingResult
 
    /**
     * Sole constructor.
     *
-    * @param iBondWindow Our I bond window
+    * @param iBondWindow   Our I bond window
     * @param extensionName This extension's name
-    * @param fmContext Moneydance context
+    * @param fmContext     Moneydance context
+    * @param priorCommit   Commit started by an earlier invocation, or null
     */
    public IBondWorker(IBondWindow iBondWindow, String extensionName,
-                      FeatureModuleContext fmContext) throws MduException {
+         FeatureModuleContext fmContext, CommitWorker priorCommit) throws MduException {
       super();
       this.iBondWindow = iBondWindow;
+      this.priorCommit = priorCommit;
       this.extensionName = extensionName;
-      this.importer = new IBondImporter();
       this.book = fmContext.getCurrentAccountBook();
+      this.storage = this.book.getLocalStorage();
+      this.importer = new IBondImporter(this.storage);
       this.securities = this.book.getCurrencies();
       this.txnSet = this.book.getTransactionSet();
       iBondWindow.setStaged(this);
@@ -53,31 +114,65 @@ public class IBondWorker extends SwingWorker<Boolean, String>
    } // end constructor
 
    /**
-    * Add an interest payment transaction handler to our collection.
-    *
-    * @param handler A deferred update interest payment transaction handler to store
+    * @param secAccount Moneydance security account
+    * @return Local storage key for the security account's checkpoint
     */
-   private void addHandler(TxnHandler handler) {
-      this.interestTransactions.add(handler);
+   static String checkpointKey(Account secAccount) {
 
-   } // end addHandler(TxnHandler)
+      return CHECKPOINT_KEY_PREFIX + secAccount.getUUID();
+   } // end checkpointKey(Account)
 
    /**
-    * Commit any changes to Moneydance.
+    * Commit any changes to Moneydance. Hand staged interest payments to a commit
+    * worker, which records them on a background thread and reports its progress.
     *
-    * @return Optional summary of the changes committed
+    * @return Optional summary of the changes being committed
     */
    public Optional<String> commitChanges() {
       int numInterestTxns = this.interestTransactions.size();
 
-      this.interestTransactions.forEach(TxnHandler::applyUpdate);
+      this.commitWorker = new CommitWorker(this.iBondWindow, this.book,
+         List.copyOf(this.interestTransactions), new LinkedHashMap<>(this.pendingCheckpoints),
+         this.importer.commitBatchSize(), this.importer.metrics());
+      this.commitWorker.execute();
       this.informedAccounts.clear();
       this.interestTransactions.clear();
+      this.pendingCheckpoints.clear();
 
-      return Optional.of("Recorded %d interest payment transaction%s"
+      return Optional.of("Recording %d interest payment transaction%s"
          .formatted(numInterestTxns, numInterestTxns == 1 ? "" : "s"));
    } // end commitChanges()
 
+   /**
+    * Hand over a commit still recording our staged interest payments, so a new
+    * invocation can wait for it rather than calculate against a half-recorded book.
+    * We no longer stop the commit when closed.
+    *
+    * @return Commit still recording payments, or null
+    */
+   public CommitWorker handOffCommit() {
+      CommitWorker commit = this.commitWorker != null ? this.commitWorker : this.priorCommit;
+      this.commitWorker = null;
+      this.priorCommit = null;
+
+      return commit == null || commit.finished().isDone() ? null : commit;
+   } // end handOffCommit()
+
+   /**
+    * Wait for the commit started by an earlier invocation to stop recording payments,
+    * so any payments it recorded are seen and not staged again. Runs on worker thread.
+    */
+   private void awaitPriorCommit() throws InterruptedException, ExecutionException {
+      CommitWorker commit = this.priorCommit;
+
+      if (commit != null && !commit.finished().isDone()) {
+         display("Waiting for earlier interest payments to be recorded");
+         CompletableFuture.anyOf(commit.finished(), this.closed).get();
+      }
+      this.importer.cancellation().checkCancelled();
+
+   } // end awaitPriorCommit()
+
    /**
     * {@return True when we have uncommitted changes in memory}
     */
@@ -89,138 +184,292 @@ public class IBondWorker extends SwingWorker<Boolean, String>
    /**
     * Store a handler for a deferred transaction if it differs from Moneydance data.
     *
-    * @param txn           Interest payment transaction details
-    * @param investAccount Investment account
-    * @param investTxns    List of investment transactions for this transaction's security account
+    * @param txn     Interest payment transaction details
+    * @param holding I bond security holding the transaction is for
+    * @param result  Where to store the outcome
     */
-   private void storeInterestTxnIfDiff(
-         CalcTxn txn, Account investAccount, InvestTxnList investTxns) {
-      Account secAccount = investTxns.account();
-      Optional<SplitTxn> divTxn = investTxns.getMatchingDivReinvestTxn(txn);
+   private void storeInterestTxnIfDiff(CalcTxn txn, Holding holding, HoldingResult result) {
+      InvestTxnList investTxns = holding.txnList();
+      Optional<BigDecimal> recordedAmount = investTxns.getMatchingInterestAmount(txn);
 
-      if (divTxn.isEmpty()) {
-         if (!this.informedAccounts.contains(investAccount)) {
-            Account category = AccountUtil.getDefaultCategoryForAcct(investAccount);
-            display("Will use category %s (the default) for new interest payments in %s"
-               .formatted(category.getAccountName(), investAccount.getAccountName()));
-            this.informedAccounts.add(investAccount);
+      if (recordedAmount.isEmpty()) {
+         if (result.firstNewPaymentIdx < 0) {
+            result.firstNewPaymentIdx = result.msgs.size();
          }
          // store a new transaction
-         display("On %tF %s:%s pay %s for %s, bal %.2f".formatted(txn.payDate(),
-            investAccount.getAccountName(), secAccount.getAccountName(),
-            txn.payAmount(), txn.memo(), txn.endingBal()));
+         result.msgs.add("On %tF %s:%s pay %s for %s, bal %.2f".formatted(txn.payDate(),
+            holding.investName(), holding.secName(), txn.payAmount(), txn.memo(),
+            txn.endingBal()));
 
-         addHandler(new TxnHandler(this.book, investAccount, secAccount, txn));
+         result.handlers.add(
+            new TxnHandler(this.book, holding.investAccount(), investTxns.account(), txn));
       } else {
          // verify transaction information
-         BigDecimal oldAmount = MdUtil.getTxnAmount(divTxn.get());
+         BigDecimal oldAmount = recordedAmount.get();
 
          if (txn.payAmount().compareTo(oldAmount) != 0) {
-            display("Found a different interest amount on %s %s:%s: have %s, calculate %s for %s"
-               .formatted(txn.payDate(), investAccount.getAccountName(),
-               secAccount.getAccountName(), oldAmount, txn.payAmount(), txn.memo()));
+            ++result.numDiscrepancies;
+            result.msgs.add(
+               "Found a different interest amount on %s %s:%s: have %s, calculate %s for %s"
+               .formatted(txn.payDate(), holding.investName(), holding.secName(),
+               oldAmount, txn.payAmount(), txn.memo()));
          }
-         oldAmount = MdUtil.getBalanceAsOf(this.book, secAccount, txn.payMonth().atEndOfMonth());
+         oldAmount = investTxns.getBalanceAtEndOf(txn.payMonth());
 
          if (txn.endingBal().compareTo(oldAmount) != 0) {
-            display("Found a different ending balance for %s in %s:%s: have %s, calculate %s"
-               .formatted(txn.payMonth(), investAccount.getAccountName(),
-               secAccount.getAccountName(), oldAmount, txn.endingBal()));
+            ++result.numDiscrepancies;
+            result.msgs.add(
+               "Found a different ending balance for %s in %s:%s: have %s, calculate %s"
+               .formatted(txn.payMonth(), holding.investName(), holding.secName(),
+               oldAmount, txn.endingBal()));
          }
       }
 
-   } // end storeInterestTxnIfDiff(CalcTxn, Account, InvestTxnList)
+   } // end storeInterestTxnIfDiff(CalcTxn, Holding, HoldingResult)
 
    /**
-    * Provide total net deposits and redemptions for a month.
+    * Provide total net deposits and redemptions for a month. Most months have none,
+    * so this looks up precomputed totals and only lists transactions when debugging.
     *
-    * @param month         Month to total
-    * @param investAccount Investment account
-    * @param txnList       List of investment transactions for a securities account
+    * @param month   Month to total
+    * @param holding I bond security holding to total
     * @return Sum of deposits and redemptions in the given month
     */
-   private BigDecimal monthNet(
-         YearMonth month, Account investAccount, InvestTxnList txnList) {
-      List<SplitTxn> changes = txnList.getChangesForMonth(month);
-
-      long amountTotal = changes.stream().mapToLong(SplitTxn::getAmount).sum();
-      int decimalPlaces = investAccount.getCurrencyType().getDecimalPlaces();
-      BigDecimal netChange = BigDecimal.valueOf(amountTotal).movePointLeft(decimalPlaces);
-
-      if (!changes.isEmpty()) {
-         MdLog.debug(() -> changes.stream().map(txn -> "%s on %s"
-            .formatted(MdUtil.getTxnAmount(txn), MdUtil.convDateIntToLocal(txn.getDateInt())))
+   private static BigDecimal monthNet(YearMonth month, Holding holding) {
+      InvestTxnList txnList = holding.txnList();
+      int monthOrdinal = RateTable.monthOrdinal(month);
+      BigDecimal netChange = BigDecimal.valueOf(
+         txnList.getNetChangeForMonth(monthOrdinal), holding.decimalPlaces());
+
+      if (txnList.hasChangesForMonth(monthOrdinal)) {
+         MdLog.debug(() -> txnList.getChangesForMonth(month).stream().map(change -> "%s on %s"
+            .formatted(change.amount(), MdUtil.convDateIntToLocal(change.dateInt())))
             .collect(Collectors.joining("; ", "From %s:%s add "
-               .formatted(investAccount.getAccountName(), txnList.account().getAccountName()),
+               .formatted(holding.investName(), holding.secName()),
                " => %s for the month".formatted(netChange))));
       }
 
       return netChange;
-   } // end monthNet(YearMonth, Account, InvestTxnList)
+   } // end monthNet(YearMonth, Holding)
 
    /**
-    * Store any new interest payments for this security.
+    * Calculate interest payments for an I bond security holding and compare them with
+    * Moneydance data. Resume calculations from the security account's stored checkpoint
+    * when one was found. Only reads the holding's snapshot of Moneydance data, so any
+    * number of holdings may be processed concurrently. Throws CancellationException
+    * once this run is cancelled.
     *
-    * @param securityAccount Moneydance security account to use
-    * @param ticker          Ticker symbol in the format IBondYYYYMM
-    * @param invAccount      Corresponding investment account
-    * @param newSecurity     true when called for a new security
-    * @return false when transactions for this security have been found
-    * @throws MduExcepcionito Problem getting interest rates for the supplied ticker symbol
+    * @param holding I bond security holding to process
+    * @return Outcome to merge into this worker
     */
-   private boolean storeNewIBondTxns(Account securityAccount, String ticker,
-         Account invAccount, boolean newSecurity) throws MduExcepcionito {
-      InvestTxnList txnList = new InvestTxnList(this.txnSet, securityAccount);
+   private HoldingResult processHolding(Holding holding) {
+      this.importer.cancellation().checkCancelled();
+      HoldingResult result = new HoldingResult();
+      InvestTxnList txnList = holding.txnList();
 
-      if (!txnList.isEmpty()) {
-         CalcTxnList txns = this.importer.calcIBondInterestTxns(ticker,
-            month -> monthNet(month, invAccount, txnList),
-            newSecurity ? MdLog::debug : msgSupplier -> {});
+      try {
+         RunMetrics metrics = this.importer.metrics();
+         CalcTxnList txns;
+
+         try (RunMetrics.Span ignored = metrics.time(CALCULATE)) {
+            // omit future transactions -- they would change if redemptions occur
+            txns = this.importer.calcIBondInterestTxns(holding.ticker(),
+               month -> monthNet(month, holding),
+               holding.showRates() ? MdLog::debug : msgSupplier -> {},
+               holding.resumeFrom(), this.thisMonth, this.thisMonth);
+         }
 
-         // avoid repeat display of interest rates
-         newSecurity = false;
+         try (RunMetrics.Span ignored = metrics.time(VERIFY)) {
+            txns.forEach(txn -> storeInterestTxnIfDiff(txn, holding, result));
+         }
 
-         // discard future transactions -- they would change if redemptions occur
-         txns.removeIf(ibIntTxn -> ibIntTxn.payMonth().isAfter(this.thisMonth));
+         // never checkpoint calculations that differ from Moneydance data
+         if (result.numDiscrepancies == 0) {
+            // staged payments are fingerprinted as recorded, since the checkpoint
+            // is only stored once they are committed
+            List<CalcTxn> staged = result.handlers.stream().map(TxnHandler::txnRec).toList();
+            result.checkpoint = txns.checkpoint().map(checkpoint -> checkpoint.withChangesKey(
+               txnList.changesKey(checkpoint.month(), staged))).orElse(null);
+         }
+      } catch (MduExcepcionito e) {
+         result.msgs.add(e.getLocalizedMessage());
+      }
 
-         txns.forEach(txn -> storeInterestTxnIfDiff(txn, invAccount, txnList));
+      return result;
+   } // end processHolding(Holding)
+
+   /**
+    * Merge the outcome of processing a holding into this worker. Runs on worker thread,
+    * in holding order, so results do not depend on which holdings finish first.
+    * A checkpoint is stored once all calculated interest payments through its month are
+    * recorded in Moneydance, so any payments staged for the holding defer storing until
+    * they are committed.
+    *
+    * @param holding I bond security holding processed
+    * @param result  Outcome of processing the holding
+    */
+   private void mergeResult(Holding holding, HoldingResult result) {
+      Account investAccount = holding.investAccount();
 
-         this.haveIBondSecurities = true;
+      for (int i = 0; i < result.msgs.size(); ++i) {
+         if (i == result.firstNewPaymentIdx && this.informedAccounts.add(investAccount)) {
+            Account category = AccountUtil.getDefaultCategoryForAcct(investAccount);
+            display("Will use category %s (the default) for new interest payments in %s"
+               .formatted(category.getAccountName(), investAccount.getAccountName()));
+         }
+         display(result.msgs.get(i));
+      } // end for each message
+      this.interestTransactions.addAll(result.handlers);
+
+      if (result.checkpoint != null) {
+         if (result.handlers.isEmpty()) {
+            this.storage.put(holding.checkpointKey(), result.checkpoint.toStorageString());
+         } else {
+            this.pendingCheckpoints.put(holding.checkpointKey(), result.checkpoint);
+         }
       }
 
-      return newSecurity;
-   } // end storeNewIBondTxns(Account, String, Account, Consumer)
+   } // end mergeResult(Holding, HoldingResult)
 
    /**
-    * Check if this security has a ticker symbol for Series I savings bonds and if shares
-    * exist in an investment account. If so, store any new interest payments for this security.
+    * Collect a holding for each investment account with transactions for this I bond
+    * security, along with a snapshot of the Moneydance data needed to process it.
     *
-    * @param security Moneydance security
+    * @param security Moneydance security with an I bond ticker symbol
+    * @param pairs    Investment and security accounts holding this security
+    * @param txnLists Mapping from security accounts to their investment transactions
+    * @param holdings Where to collect holdings
     */
-   private void processIBondHoldings(CurrencyType security) {
-      boolean newSecurity = true;
+   private void collectIBondHoldings(CurrencyType security, List<AccountPair<Account>> pairs,
+         Map<Account, InvestTxnList> txnLists, List<Holding> holdings) {
+      boolean firstHolding = true;
       String ticker = security.getTickerSymbol();
-      String secName = security.getName();
 
-      if (MdUtil.isIBondTickerPrefix(ticker)) {
-         try {
-            Iterable<Account> invAccounts = MdUtil.getAccounts(this.book, INVESTMENT)::iterator;
+      try {
+         for (AccountPair<Account> pair : pairs) {
+            Account secAccount = pair.securityAccount();
+            InvestTxnList txnList = txnLists.get(secAccount);
+
+            if (!txnList.isEmpty()) {
+               if (firstHolding) {
+                  // verify the ticker symbol before processing any holding
+                  this.importer.getDateForTicker(ticker);
+                  this.importer.metrics().add(SECURITIES, 1);
+               }
+               String checkpointKey = checkpointKey(secAccount);
+               IBondCheckpoint resumeFrom = IBondCheckpoint
+                  .fromStorageString(this.storage.get(checkpointKey))
+                  .filter(checkpoint -> !checkpoint.month().isAfter(this.thisMonth)
+                     && checkpoint.changesKey().equals(txnList.changesKey(checkpoint.month())))
+                  .orElse(null);
+
+               Account investAccount = pair.investAccount();
+
+               // only display interest rates for the first holding of each security
+               holdings.add(new Holding(ticker, investAccount, investAccount.getAccountName(),
+                  secAccount.getAccountName(),
+                  investAccount.getCurrencyType().getDecimalPlaces(), txnList,
+                  checkpointKey, resumeFrom, firstHolding));
+               firstHolding = false;
+            }
+         } // for investment accounts holding this security
+      } catch (MduExcepcionito e) {
+         display(e.getLocalizedMessage());
+      }
+
+   } // end collectIBondHoldings(CurrencyType, List<AccountPair<Account>>, Map, List<Holding>)
+
+   /**
+    * Find securities with ticker symbols for Series I savings bonds and the investment
+    * accounts holding them. Load the transactions of all their security accounts in a
+    * single pass, then collect holdings with transactions in securities order.
+    *
+    * @return I bond security holdings to process
+    */
+   private List<Holding> collectHoldings() {
+      HoldingIndex<Account> holdingIndex = new HoldingIndex<>(
+         MdUtil.getAccounts(this.book, INVESTMENT),
+         Account::getSubAccounts, Account::getAccountName);
+      Map<CurrencyType, List<AccountPair<Account>>> pairsBySecurity = new LinkedHashMap<>();
+
+      for (CurrencyType security : this.securities.getAllCurrencies()) {
+         this.importer.cancellation().checkCancelled();
+
+         if (MdUtil.isIBondTickerPrefix(security.getTickerSymbol())) {
+            pairsBySecurity.put(security, holdingIndex.holdingsOf(security.getName()));
+         }
+      } // end for each security
+      Map<Account, InvestTxnList> txnLists;
+
+      try (RunMetrics.Span ignored = this.importer.metrics().time(SCAN)) {
+         txnLists = InvestTxnList.loadAll(this.txnSet,
+            pairsBySecurity.values().stream().flatMap(List::stream)
+               .map(AccountPair::securityAccount).toList());
+      }
+      List<Holding> holdings = new ArrayList<>();
+      pairsBySecurity.forEach((security, pairs) -> {
+         this.importer.cancellation().checkCancelled();
+         collectIBondHoldings(security, pairs, txnLists, holdings);
+      });
+
+      return holdings;
+   } // end collectHoldings()
 
-            for (Account invAccount : invAccounts) {
-               Optional<Account> secAccount = MdUtil.getSubAccountByName(invAccount, secName);
+   /**
+    * Process holdings, fanning them out to a bounded pool of threads when configured
+    * for more than one, and merge each outcome in holding order. Once this run is
+    * cancelled, holdings not yet started are abandoned.
+    *
+    * @param holdings I bond security holdings to process
+    */
+   private void processHoldings(List<Holding> holdings)
+         throws InterruptedException, ExecutionException {
+      int numThreads = Math.min(this.importer.workerThreads(), holdings.size());
 
-               if (secAccount.isPresent()) {
-                  // keep track of transaction presence for this security
-                  newSecurity = storeNewIBondTxns(
-                     secAccount.get(), ticker, invAccount, newSecurity);
+      if (numThreads <= 1) {
+         for (Holding holding : holdings) {
+            mergeResult(holding, processHolding(holding));
+         }
+      } else {
+         try (ExecutorService executor = Executors.newFixedThreadPool(numThreads)) {
+            List<Future<HoldingResult>> results = new ArrayList<>(holdings.size());
+
+            for (Holding holding : holdings) {
+               results.add(executor.submit(() -> processHolding(holding)));
+            }
+            try {
+               for (int i = 0; i < holdings.size(); ++i) {
+                  mergeResult(holdings.get(i),
+                     this.importer.cancellation().await(results.get(i)));
                }
-            } // for investment accounts
-         } catch (MduExcepcionito e) {
-            display(e.getLocalizedMessage());
+            } catch (ExecutionException e) {
+               if (e.getCause() instanceof CancellationException ce)
+                  throw ce;
+               throw e;
+            } finally {
+               if (this.importer.cancellation().isCancelled()) {
+                  executor.shutdownNow();
+               }
+            }
          }
       }
 
-   } // end processIBondHoldings(CurrencyType)
+   } // end processHoldings(List<Holding>)
+
+   /**
+    * Show a summary of this run's phase timers and counters, and add it to the
+    * history of recent runs. Runs on worker thread.
+    */
+   private void reportMetrics() {
+      RunMetrics metrics = this.importer.metrics();
+      metrics.finish();
+      List<RunMetrics.HistoryRec> priorRuns = RunMetrics.history(this.storage);
+      metrics.record(this.storage);
+      String summary = metrics.summary(priorRuns);
+      MdLog.all(summary);
+      display(summary);
+
+   } // end reportMetrics()
 
    /**
     * Long-running routine to pull I bond interest rates from a remote site and
@@ -231,7 +480,10 @@ public class IBondWorker extends SwingWorker<Boolean, String>
    protected Boolean doInBackground() {
       try {
          this.importer.loadIBondRates();
-         this.securities.getAllCurrencies().forEach(this::processIBondHoldings);
+         awaitPriorCommit();
+         List<Holding> holdings = collectHoldings();
+         this.haveIBondSecurities = !holdings.isEmpty();
+         processHoldings(holdings);
 
          if (!this.haveIBondSecurities) {
             display("Unable to locate any security with an I bond ticker symbol",
@@ -244,8 +496,13 @@ public class IBondWorker extends SwingWorker<Boolean, String>
          } else if (!isModified()) {
             display("No new interest payment data found");
          }
+         reportMetrics();
 
          return isModified();
+      } catch (CancellationException e) {
+         MdLog.all("Cancelled %s".formatted(this.extensionName));
+
+         return false;
       } catch (Throwable e) {
          MdLog.all("Problem running %s".formatted(this.extensionName), e);
          display(e.toString());
@@ -313,8 +570,13 @@ public class IBondWorker extends SwingWorker<Boolean, String>
    /**
     * Close this resource, relinquishing any underlying resources.
     * Cancel this worker, wait for it to complete and discard its results.
+    * Stop any commit we still own after its current batch.
     */
    public void close() {
+      // cancel before ending any wait for a prior commit, so we don't calculate after
+      this.importer.cancellation().cancel();
+      this.closed.complete(null);
+
       if (getState() != StateValue.DONE) {
          MdLog.all("Cancelling running %s invocation".formatted(this.extensionName));
          cancel(false);
@@ -333,6 +595,13 @@ public class IBondWorker extends SwingWorker<Boolean, String>
             // ignore
          }
       }
+      for (CommitWorker commit : new CommitWorker[] {this.priorCommit, this.commitWorker}) {
+         if (commit != null) {
+            commit.close();
+         }
+      }
+      this.priorCommit = null;
+      this.commitWorker = null;
 
    } // end close()
 
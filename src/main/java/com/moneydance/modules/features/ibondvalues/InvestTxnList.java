@@ -6,10 +6,16 @@ import com.infinitekind.moneydance.model.SplitTxn;
 import com.infinitekind.moneydance.model.TransactionSet;
 import io.github.jrhillery.moneydance.MdUtil;
 
-import java.time.LocalDate;
+import java.math.BigDecimal;
 import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.TreeMap;
 
@@ -17,26 +23,239 @@ import static com.infinitekind.moneydance.model.InvestTxnType.DIVIDEND_REINVEST;
 
 /**
  * Utility class to house a list of investment transactions for a Moneydance security account.
+ * Transactions are keyed by their Moneydance date integers (YYYYMMDD), which sort by date.
+ * Once loaded, a running balance is indexed by month, so month-end balances take
+ * constant time rather than a rescan of the account's history. Net deposits and
+ * redemptions are also totaled for each month that has any, so the many months
+ * without them cost a single search of a small array.
+ * <p>
+ * The Moneydance model is not thread-safe, so everything needed from it is captured
+ * while loading, and only these captured values are read afterward. Once loaded, an
+ * instance may be queried from any thread.
  */
 public class InvestTxnList {
     private final Account account;
-    private final TreeMap<LocalDate, List<AbstractTxn>> transactions = new TreeMap<>();
+    /** Number of decimal places in our security account's units */
+    private int decimalPlaces = 0;
+    /** Starting balance of our security account, in account units */
+    private long startBalance = 0;
+    /** Loaded transactions keyed by date, whose Moneydance objects are only read while indexing */
+    private final TreeMap<Integer, List<AbstractTxn>> transactions = new TreeMap<>();
+    /** Month ordinal of the first month with transactions */
+    private int firstBalanceOrdinal = 0;
+    /** Month-end balances in account units, indexed by month ordinal less our first */
+    private long[] monthEndBalances = null;
+    /** Deposits and redemptions keyed by month ordinal, only for months with any */
+    private final TreeMap<Integer, List<Change>> changesByMonth = new TreeMap<>();
+    /** Net deposits and redemptions in account units, keyed by date, only for days with any */
+    private final TreeMap<Integer, Long> changeNetsByDate = new TreeMap<>();
+    /** Recorded interest payments keyed by date */
+    private final TreeMap<Integer, List<Interest>> interestByDate = new TreeMap<>();
+    /** Ascending ordinals of the months with deposits or redemptions */
+    private int[] changeOrdinals = null;
+    /** Net deposits and redemptions in account units, indexed like changeOrdinals */
+    private long[] changeNets = null;
 
     /**
-     * Sole constructor.
+     * Data record to hold a deposit or redemption captured from Moneydance.
+     *
+     * @param dateInt Moneydance date integer (YYYYMMDD)
+     * @param amount  Amount deposited, or negative amount redeemed
+     */
+    public record Change(int dateInt, BigDecimal amount) { }
+
+    /**
+     * Data record to hold a recorded interest payment captured from Moneydance.
+     *
+     * @param memo   Interest payment memo
+     * @param amount Interest payment amount
+     * @param shares Interest payment in security account units
+     */
+    private record Interest(String memo, BigDecimal amount, long shares) { }
+
+    /**
+     * Constructor for an empty list to be populated by a bulk load.
+     *
+     * @param account Moneydance security account for this instance
+     */
+    private InvestTxnList(Account account) {
+        this.account = account;
+
+    } // end constructor
+
+    /**
+     * Constructor loading the transactions for one security account with a query of
+     * its own. Holdings are loaded with loadAll, which must produce the same lists.
      *
      * @param txnSet  Set of all transactions
      * @param account Moneydance security account for this instance
      */
     public InvestTxnList(TransactionSet txnSet, Account account) {
-        this.account = account;
+        this(account);
 
-        txnSet.getTxnsForAccount(account).forEach(txn -> this.transactions
-            .computeIfAbsent(MdUtil.convDateIntToLocal(txn.getDateInt()), k -> new ArrayList<>())
-            .add(txn));
+        txnSet.getTxnsForAccount(account).forEach(this::add);
+        indexMonths();
 
     } // end constructor
 
+    /**
+     * Load the transactions for a number of security accounts in a single pass
+     * over all transactions, rather than one query per security account.
+     *
+     * @param txnSet   Set of all transactions
+     * @param accounts Moneydance security accounts to load
+     * @return Mapping from each security account to its investment transactions
+     */
+    public static Map<Account, InvestTxnList> loadAll(
+            TransactionSet txnSet, Collection<Account> accounts) {
+        Map<Account, InvestTxnList> txnLists = new HashMap<>();
+        accounts.forEach(account -> txnLists.put(account, new InvestTxnList(account)));
+
+        if (!txnLists.isEmpty()) {
+            for (AbstractTxn txn : txnSet.getAllTxns()) {
+                InvestTxnList txnList = txnLists.get(txn.getAccount());
+
+                if (txnList != null) {
+                    txnList.add(txn);
+                }
+            } // end for all transactions
+        }
+        txnLists.values().forEach(InvestTxnList::indexMonths);
+
+        return txnLists;
+    } // end loadAll(TransactionSet, Collection<Account>)
+
+    /**
+     * @param txn Transaction in our security account to add
+     */
+    private void add(AbstractTxn txn) {
+        this.transactions.computeIfAbsent(txn.getDateInt(), k -> new ArrayList<>(1)).add(txn);
+
+    } // end add(AbstractTxn)
+
+    /**
+     * @param dateInt Moneydance date integer (YYYYMMDD)
+     * @return Ordinal that increases by one for each successive month
+     */
+    private static int monthOrdinal(int dateInt) {
+
+        return dateInt / 10000 * 12 + dateInt / 100 % 100 - 1;
+    } // end monthOrdinal(int)
+
+    /**
+     * @param txn Transaction to check
+     * @return true for a deposit or redemption, rather than an interest payment
+     */
+    private static boolean isChange(AbstractTxn txn) {
+
+        return txn.getParentTxn().getInvestTxnType() != DIVIDEND_REINVEST
+            && txn instanceof SplitTxn;
+    } // end isChange(AbstractTxn)
+
+    /**
+     * @param txn Transaction to check
+     * @return true for the security side of an interest payment
+     */
+    private static boolean isInterest(AbstractTxn txn) {
+
+        return txn.getParentTxn().getInvestTxnType() == DIVIDEND_REINVEST
+            && txn instanceof SplitTxn;
+    } // end isInterest(AbstractTxn)
+
+    /**
+     * Serialize one interest payment for a fingerprint. The memo is prefixed with its
+     * length, so no memo text can be mistaken for another field or payment.
+     *
+     * @param dateInt Moneydance date integer (YYYYMMDD) of an interest payment
+     * @param shares  Interest payment in security account units
+     * @param memo    Interest payment memo, compared ignoring case
+     * @return Canonical text of one interest payment
+     */
+    private static String interestEntry(int dateInt, long shares, String memo) {
+        String memoKey = memo == null ? "" : memo.toLowerCase(Locale.ROOT);
+
+        return "I%d:%d:%d:%s;".formatted(dateInt, shares, memoKey.length(), memoKey);
+    } // end interestEntry(int, long, String)
+
+    /**
+     * Index the running balance at the end of each month from the first month with
+     * transactions through the last, along with the deposits, redemptions and interest
+     * payments, in a single pass over our loaded transactions. Like Moneydance balances,
+     * start from the account's starting balance and add each transaction's value.
+     */
+    private void indexMonths() {
+        this.decimalPlaces = this.account.getCurrencyType().getDecimalPlaces();
+        this.startBalance = this.account.getStartBalance();
+        long balance = this.startBalance;
+        TreeMap<Integer, Long> monthNets = new TreeMap<>();
+
+        if (this.transactions.isEmpty()) {
+            this.monthEndBalances = new long[] {balance};
+        } else {
+            this.firstBalanceOrdinal = monthOrdinal(this.transactions.firstKey());
+            this.monthEndBalances = new long[
+                monthOrdinal(this.transactions.lastKey()) - this.firstBalanceOrdinal + 1];
+            int monthIdx = 0;
+
+            for (Map.Entry<Integer, List<AbstractTxn>> entry : this.transactions.entrySet()) {
+                int txnMonthOrdinal = monthOrdinal(entry.getKey());
+                int txnMonthIdx = txnMonthOrdinal - this.firstBalanceOrdinal;
+
+                while (monthIdx < txnMonthIdx) {
+                    this.monthEndBalances[monthIdx++] = balance;
+                }
+                for (AbstractTxn txn : entry.getValue()) {
+                    balance += txn.getValue();
+
+                    if (isChange(txn) && txn instanceof SplitTxn splitTxn) {
+                        this.changesByMonth.computeIfAbsent(txnMonthOrdinal, k -> new ArrayList<>())
+                            .add(new Change(entry.getKey(), MdUtil.getTxnAmount(splitTxn)));
+                        this.changeNetsByDate.merge(entry.getKey(), splitTxn.getAmount(),
+                            Long::sum);
+                        monthNets.merge(txnMonthOrdinal, splitTxn.getAmount(), Long::sum);
+                    } else if (isInterest(txn) && txn instanceof SplitTxn splitTxn) {
+                        this.interestByDate.computeIfAbsent(entry.getKey(), k -> new ArrayList<>(1))
+                            .add(new Interest(txn.getParentTxn().getMemo(),
+                                MdUtil.getTxnAmount(splitTxn), txn.getValue()));
+                    }
+                }
+            } // end for each date with transactions
+            this.monthEndBalances[monthIdx] = balance;
+        }
+        this.changeOrdinals = new int[monthNets.size()];
+        this.changeNets = new long[this.changeOrdinals.length];
+        int changeIdx = 0;
+
+        for (Map.Entry<Integer, Long> entry : monthNets.entrySet()) {
+            this.changeOrdinals[changeIdx] = entry.getKey();
+            this.changeNets[changeIdx++] = entry.getValue();
+        } // end for each month with changes
+
+    } // end indexMonths()
+
+    /**
+     * Provide the same balance as MdUtil.getBalanceAsOf for the end of a month,
+     * without rescanning the account's transactions.
+     *
+     * @param month Month whose ending balance to return
+     * @return Balance of our security account at the end of the specified month
+     */
+    public BigDecimal getBalanceAtEndOf(YearMonth month) {
+        int monthIdx = RateTable.monthOrdinal(month) - this.firstBalanceOrdinal;
+        long balance = monthIdx < 0 ? this.startBalance
+            : this.monthEndBalances[Math.min(monthIdx, this.monthEndBalances.length - 1)];
+
+        return BigDecimal.valueOf(balance).movePointLeft(this.decimalPlaces);
+    } // end getBalanceAtEndOf(YearMonth)
+
+    /**
+     * {@return Loaded transactions in date order}
+     */
+    List<AbstractTxn> loadedTxns() {
+
+        return this.transactions.values().stream().flatMap(List::stream).toList();
+    } // end loadedTxns()
+
     /**
      * {@return true if this map contains no transactions}
      */
@@ -47,44 +266,103 @@ public class InvestTxnList {
 
     /**
      * @param txnRec Desired interest payment transaction details
-     * @return Optional first matching dividend reinvest destination side transaction
+     * @return Optional amount of the first matching recorded dividend reinvest transaction
      */
-    public Optional<SplitTxn> getMatchingDivReinvestTxn(CalcTxn txnRec) {
-        List<AbstractTxn> txns = this.transactions.get(txnRec.payDate());
+    public Optional<BigDecimal> getMatchingInterestAmount(CalcTxn txnRec) {
+        List<Interest> payments =
+            this.interestByDate.get(MdUtil.convLocalToDateInt(txnRec.payDate()));
 
-        if (txns != null) {
-            for (AbstractTxn txn : txns) {
-                if (txn.getParentTxn().getInvestTxnType() == DIVIDEND_REINVEST
-                        && txn instanceof SplitTxn splitTxn
-                        && txnRec.memo().equalsIgnoreCase(txn.getParentTxn().getMemo())) {
+        if (payments != null) {
+            for (Interest payment : payments) {
+                if (txnRec.memo().equalsIgnoreCase(payment.memo())) {
 
-                    return Optional.of(splitTxn);
+                    return Optional.of(payment.amount());
                 }
             }
         }
 
         return Optional.empty();
-    } // end getMatchingDivReinvestTxn(CalcTxn)
+    } // end getMatchingInterestAmount(CalcTxn)
 
     /**
-     * @param month Month for the transactions to return
-     * @return List of deposits and redemptions for the specified month
+     * @param monthOrdinal Month ordinal to check
+     * @return true when the specified month has deposits or redemptions
      */
-    public List<SplitTxn> getChangesForMonth(YearMonth month) {
-        List<SplitTxn> txns = new ArrayList<>();
+    public boolean hasChangesForMonth(int monthOrdinal) {
 
-        this.transactions.subMap(month.atDay(1), true, month.atEndOfMonth(), true)
-                .forEach((date, txnList) -> txnList.forEach(txn -> {
+        return Arrays.binarySearch(this.changeOrdinals, monthOrdinal) >= 0;
+    } // end hasChangesForMonth(int)
 
-            if (txn.getParentTxn().getInvestTxnType() != DIVIDEND_REINVEST
-                    && txn instanceof SplitTxn splitTxn) {
-                txns.add(splitTxn);
-            }
-        }));
+    /**
+     * @param monthOrdinal Month ordinal to total
+     * @return Net deposits and redemptions for the specified month, in account units
+     */
+    public long getNetChangeForMonth(int monthOrdinal) {
+        int changeIdx = Arrays.binarySearch(this.changeOrdinals, monthOrdinal);
+
+        return changeIdx < 0 ? 0 : this.changeNets[changeIdx];
+    } // end getNetChangeForMonth(int)
+
+    /**
+     * @param month Month for the deposits and redemptions to return
+     * @return Unmodifiable list of deposits and redemptions for the specified month
+     */
+    public List<Change> getChangesForMonth(YearMonth month) {
 
-        return txns;
+        return Collections.unmodifiableList(this.changesByMonth
+            .getOrDefault(RateTable.monthOrdinal(month), List.of()));
     } // end getChangesForMonth(YearMonth)
 
+    /**
+     * @param throughMonth Last month to include
+     * @return Fingerprint of the deposits, redemptions and interest payments
+     *         through the specified month
+     */
+    public String changesKey(YearMonth throughMonth) {
+
+        return changesKey(throughMonth, List.of());
+    } // end changesKey(YearMonth)
+
+    /**
+     * The fingerprint digests each day's net change, then each interest payment in
+     * sorted order, so it does not depend on the order transactions on the same day
+     * were loaded in. Interest payments are included so a recorded payment that is
+     * later deleted or edited invalidates checkpoints past it.
+     *
+     * @param throughMonth Last month to include
+     * @param staged       Interest payments not yet recorded, included as though they were
+     * @return Fingerprint of the deposits, redemptions and interest payments
+     *         through the specified month
+     */
+    public String changesKey(YearMonth throughMonth, Collection<CalcTxn> staged) {
+        int throughDateInt = MdUtil.convLocalToDateInt(throughMonth.atEndOfMonth());
+        StringBuilder canonical = new StringBuilder();
+        List<String> payments = new ArrayList<>();
+
+        for (Map.Entry<Integer, Long> entry :
+                this.changeNetsByDate.headMap(throughDateInt, true).entrySet()) {
+            canonical.append(entry.getKey()).append(':').append(entry.getValue()).append(';');
+        }
+        for (Map.Entry<Integer, List<Interest>> entry :
+                this.interestByDate.headMap(throughDateInt, true).entrySet()) {
+            for (Interest payment : entry.getValue()) {
+                payments.add(interestEntry(entry.getKey(), payment.shares(), payment.memo()));
+            }
+        }
+        for (CalcTxn txn : staged) {
+            int dateInt = MdUtil.convLocalToDateInt(txn.payDate());
+
+            if (dateInt <= throughDateInt) {
+                long shares = txn.payAmount().movePointRight(this.decimalPlaces).longValueExact();
+                payments.add(interestEntry(dateInt, shares, txn.memo()));
+            }
+        }
+        Collections.sort(payments);
+        payments.forEach(canonical::append);
+
+        return IBondCheckpoint.fingerprint(canonical);
+    } // end changesKey(YearMonth, Collection<CalcTxn>)
+
     /**
      * @return Moneydance security account for this transaction
      */
@@ -1,5 +1,6 @@
 package com.moneydance.modules.features.ibondvalues;
 
+import com.infinitekind.moneydance.model.AccountBook;
 import io.github.jrhillery.moneydance.MdLog;
 import com.moneydance.apps.md.controller.FeatureModule;
 
@@ -20,9 +21,37 @@ public class Main extends FeatureModule implements AutoCloseable {
    public void init() {
       getContext().registerFeature(this, "do:i:bond:values", null, getName());
       MdLog.setPrefix("IBVALS: ");
+      prefetchRates();
 
    } // end init()
 
+   /**
+    * Start loading I bond rates when a book is opened. Stop execution, including any
+    * commit of interest payments, before a book is closed.
+    *
+    * @see com.moneydance.apps.md.controller.FeatureModule#handleEvent(java.lang.String)
+    */
+   public void handleEvent(String appEvent) {
+      if ("md:file:opened".equals(appEvent)) {
+         prefetchRates();
+      } else if ("md:file:closing".equals(appEvent)) {
+         cleanup();
+      }
+
+   } // end handleEvent(String)
+
+   /**
+    * Start loading I bond rates in the background for the current book, if any.
+    */
+   private void prefetchRates() {
+      AccountBook book = getContext().getCurrentAccountBook();
+
+      if (book != null) {
+         RatePrefetcher.start(book.getLocalStorage());
+      }
+
+   } // end prefetchRates()
+
    /**
     * This is called when this extension is invoked.
     *
@@ -32,14 +61,19 @@ public class Main extends FeatureModule implements AutoCloseable {
       MdLog.all("%s invoked with uri [%s]".formatted(getName(), uri));
 
       try {
+         CommitWorker priorCommit = null;
+
          if (this.iBondWorker != null) {
+            // a new worker waits for payments still being recorded
+            priorCommit = this.iBondWorker.handOffCommit();
             this.iBondWorker.stopExecute();
          }
          showConsole();
          this.iBondWindow.clearText();
 
          // SwingWorker instances are not reusable, so make a new one
-         this.iBondWorker = new IBondWorker(this.iBondWindow, getName(), getContext());
+         this.iBondWorker =
+            new IBondWorker(this.iBondWindow, getName(), getContext(), priorCommit);
          this.iBondWorker.execute();
       } catch (Throwable e) {
          handleException(e);
@@ -0,0 +1,218 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import io.github.jrhillery.moneydance.MdLog;
+import io.github.jrhillery.swing.HTMLPane;
+
+import javax.swing.Timer;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Output log shown in our window. Messages are queued as they arrive and rendered on
+ * the event dispatch thread at most once per frame, as a single document update. The
+ * document keeps only the most recent lines, in a ring buffer, while every line is
+ * appended to a temporary file so the full log can be exported.
+ */
+class OutputLog implements AutoCloseable {
+   private final HTMLPane pane;
+   /** Maximum number of lines kept in the document */
+   private final int maxLines;
+   /** Messages waiting for the next frame */
+   private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+   /** True while a frame is scheduled to render pending messages */
+   private final AtomicBoolean frameScheduled = new AtomicBoolean();
+   private final Timer frameTimer;
+   /** Most recent lines, which the document shows */
+   private final ArrayDeque<String> retained = new ArrayDeque<>();
+   /** Number of lines dropped from the document since it was last cleared */
+   private int numDropped = 0;
+   /** Temporary file holding every line, or null before the first line */
+   private Path fullLogFile = null;
+   private BufferedWriter fullLog = null;
+   /** True once a problem stopped the full log */
+   private boolean fullLogLost = false;
+   /** True once closed, after which messages are no longer rendered or saved */
+   private volatile boolean closed = false;
+
+   /** Default maximum number of lines kept in the document */
+   static final int MAX_LINES = 2000;
+   private static final int FRAME_MILLIS = 16;
+
+   /**
+    * Sole constructor.
+    *
+    * @param pane     HTML pane to render messages in
+    * @param maxLines Maximum number of lines to keep in the document
+    */
+   OutputLog(HTMLPane pane, int maxLines) {
+      this.pane = pane;
+      this.maxLines = maxLines;
+      this.frameTimer = new Timer(FRAME_MILLIS, event -> flush());
+      this.frameTimer.setRepeats(false);
+
+   } // end constructor
+
+   /**
+    * Queue a message for the next frame. May be called on any thread. After closing,
+    * messages only go to the debug log.
+    *
+    * @param text HTML-text to append
+    */
+   void add(String text) {
+      MdLog.debug(text);
+      if (this.closed)
+         return;
+      this.pending.add(text);
+
+      if (this.frameScheduled.compareAndSet(false, true)) {
+         this.frameTimer.restart();
+      }
+
+   } // end add(String)
+
+   /**
+    * Render all pending messages in one document update. When the document would
+    * exceed its maximum, older lines are dropped down to three quarters of it and the
+    * document is rebuilt, so rebuilds happen once per quarter of the maximum lines.
+    * Runs on event dispatch thread.
+    */
+   void flush() {
+      // clear first so a message queued while draining schedules another frame
+      this.frameScheduled.set(false);
+      if (this.closed)
+         return;
+      List<String> batch = new ArrayList<>();
+      String text;
+
+      while ((text = this.pending.poll()) != null) {
+         batch.add(text);
+      }
+      if (batch.isEmpty())
+         return;
+
+      spill(batch);
+      this.retained.addAll(batch);
+
+      if (this.retained.size() > this.maxLines) {
+         while (this.retained.size() > this.maxLines * 3 / 4) {
+            this.retained.removeFirst();
+            ++this.numDropped;
+         }
+         this.pane.clearText();
+         this.pane.addText("(%d earlier lines not shown; export the log to see them)<br>%s"
+            .formatted(this.numDropped, String.join("<br>", this.retained)));
+      } else {
+         this.pane.addText(String.join("<br>", batch));
+      }
+
+   } // end flush()
+
+   /**
+    * Append lines to the full log file, creating it for the first lines. A problem
+    * only stops the full log, leaving the document unaffected.
+    *
+    * @param lines HTML-text lines to append
+    */
+   private void spill(List<String> lines) {
+      if (this.fullLogLost)
+         return;
+      try {
+         if (this.fullLog == null) {
+            this.fullLogFile = Files.createTempFile("ibond-values-log", ".txt");
+            this.fullLog = Files.newBufferedWriter(this.fullLogFile);
+         }
+         for (String line : lines) {
+            this.fullLog.write(line);
+            this.fullLog.newLine();
+         }
+      } catch (IOException e) {
+         MdLog.all("Problem writing full output log", e);
+         this.fullLogLost = true;
+         closeFullLog();
+      }
+
+   } // end spill(List<String>)
+
+   /**
+    * Write every line logged since last cleared to a file. Runs on event dispatch thread.
+    *
+    * @param target File to write
+    * @throws IOException Problem writing the file or no full log is available
+    */
+   void export(Path target) throws IOException {
+      flush();
+
+      if (this.fullLogLost)
+         throw new IOException("Full output log is unavailable after an earlier problem");
+      if (this.fullLog == null) {
+         Files.writeString(target, "");
+      } else {
+         this.fullLog.flush();
+         Files.copy(this.fullLogFile, target, REPLACE_EXISTING);
+      }
+
+   } // end export(Path)
+
+   /**
+    * {@return Number of lines kept in the document}
+    */
+   int retainedLines() {
+
+      return this.retained.size();
+   } // end retainedLines()
+
+   /**
+    * Discard all lines, including those queued and in the full log.
+    * Runs on event dispatch thread.
+    */
+   void clear() {
+      this.pending.clear();
+      this.retained.clear();
+      this.numDropped = 0;
+      this.pane.clearText();
+      closeFullLog();
+      this.fullLogLost = false;
+
+   } // end clear()
+
+   /**
+    * Close and delete the full log file, if any.
+    */
+   private void closeFullLog() {
+      try {
+         if (this.fullLog != null) {
+            this.fullLog.close();
+         }
+         if (this.fullLogFile != null) {
+            Files.deleteIfExists(this.fullLogFile);
+         }
+      } catch (IOException e) {
+         MdLog.all("Problem deleting full output log %s: %s".formatted(this.fullLogFile, e));
+      }
+      this.fullLog = null;
+      this.fullLogFile = null;
+
+   } // end closeFullLog()
+
+   /**
+    * Stop rendering and delete the full log file. Later messages are ignored, so
+    * nothing starts another frame or full log file.
+    */
+   public void close() {
+      this.closed = true;
+      this.frameTimer.stop();
+      this.pending.clear();
+      closeFullLog();
+
+   } // end close()
+
+} // end class OutputLog
@@ -0,0 +1,146 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.IBondImporter.IBondRateRec;
+import io.github.jrhillery.moneydance.MdLog;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+/**
+ * Persistent cache of the parsed TreasuryDirect I bond interest rate history,
+ * kept in Moneydance local storage along with the HTTP validators needed
+ * to revalidate it with a conditional GET.
+ */
+public class RateCache {
+   /** Moneydance local storage */
+   private final Map<String, String> storage;
+
+   private static final String KEY_PREFIX = "ibond-values.rateCache.";
+   private static final String RATES_KEY = KEY_PREFIX + "rates";
+   private static final String ETAG_KEY = KEY_PREFIX + "etag";
+   private static final String LAST_MODIFIED_KEY = KEY_PREFIX + "lastModified";
+   private static final String CHECKED_KEY = KEY_PREFIX + "checked";
+   private static final String REC_SEPARATOR = ";";
+   private static final String FIELD_SEPARATOR = ",";
+
+   /**
+    * Sole constructor.
+    *
+    * @param storage Moneydance local storage
+    */
+   public RateCache(Map<String, String> storage) {
+      this.storage = storage;
+
+   } // end constructor
+
+   /**
+    * {@return Optional cached mapping from months to historical I bond interest rates}
+    */
+   public Optional<TreeMap<YearMonth, IBondRateRec>> rates() {
+      String ratesStr = this.storage.get(RATES_KEY);
+
+      if (ratesStr == null || ratesStr.isEmpty())
+         return Optional.empty();
+
+      try {
+         TreeMap<YearMonth, IBondRateRec> iBondRates = new TreeMap<>();
+
+         for (String recStr : ratesStr.split(REC_SEPARATOR)) {
+            String[] fields = recStr.split(FIELD_SEPARATOR);
+            YearMonth startMonth = YearMonth.parse(fields[0]);
+            iBondRates.put(startMonth, new IBondRateRec(
+               new BigDecimal(fields[2]), new BigDecimal(fields[1]), startMonth));
+         } // end for each cached rate record
+
+         return Optional.of(iBondRates);
+      } catch (Exception e) {
+         MdLog.all("Ignoring unusable cached I bond rates", e);
+
+         return Optional.empty();
+      }
+   } // end rates()
+
+   /**
+    * {@return Optional entity tag the server supplied with the cached rates}
+    */
+   public Optional<String> etag() {
+
+      return Optional.ofNullable(this.storage.get(ETAG_KEY));
+   } // end etag()
+
+   /**
+    * {@return Optional last modified time the server supplied with the cached rates}
+    */
+   public Optional<String> lastModified() {
+
+      return Optional.ofNullable(this.storage.get(LAST_MODIFIED_KEY));
+   } // end lastModified()
+
+   /**
+    * @param revalidateInterval Minimum time between checks for newer rates
+    * @return true when cached rates exist and were checked within the interval
+    */
+   public boolean isFresh(Duration revalidateInterval) {
+      String checkedStr = this.storage.get(CHECKED_KEY);
+
+      if (checkedStr == null || !this.storage.containsKey(RATES_KEY))
+         return false;
+
+      try {
+         Instant checked = Instant.ofEpochMilli(Long.parseLong(checkedStr));
+
+         return checked.plus(revalidateInterval).isAfter(Instant.now());
+      } catch (NumberFormatException e) {
+         return false;
+      }
+   } // end isFresh(Duration)
+
+   /**
+    * Record that the cached rates were just confirmed to be current.
+    */
+   public void markChecked() {
+      this.storage.put(CHECKED_KEY, Long.toString(System.currentTimeMillis()));
+
+   } // end markChecked()
+
+   /**
+    * Store newly retrieved rates along with the validators the server supplied.
+    *
+    * @param iBondRates   Mapping from months to historical I bond interest rates
+    * @param etag         Optional entity tag for the rates' source
+    * @param lastModified Optional last modified time for the rates' source
+    */
+   public void store(TreeMap<YearMonth, IBondRateRec> iBondRates,
+         Optional<String> etag, Optional<String> lastModified) {
+      StringJoiner ratesStr = new StringJoiner(REC_SEPARATOR);
+      iBondRates.values().forEach(rec -> ratesStr.add(rec.startMonth() + FIELD_SEPARATOR
+         + rec.fixedRate().toPlainString() + FIELD_SEPARATOR
+         + rec.inflationRate().toPlainString()));
+
+      this.storage.put(RATES_KEY, ratesStr.toString());
+      putOrRemove(ETAG_KEY, etag);
+      putOrRemove(LAST_MODIFIED_KEY, lastModified);
+      markChecked();
+
+   } // end store(TreeMap, Optional, Optional)
+
+   /**
+    * @param key   Key to update
+    * @param value Optional value to store, or remove when empty
+    */
+   private void putOrRemove(String key, Optional<String> value) {
+      if (value.isPresent()) {
+         this.storage.put(key, value.get());
+      } else {
+         this.storage.remove(key);
+      }
+
+   } // end putOrRemove(String, Optional<String>)
+
+} // end class RateCache
@@ -0,0 +1,111 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import io.github.jrhillery.moneydance.MdLog;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Warms up the I bond interest rate table on a low-priority background thread, when
+ * the extension is initialized or a book is opened, so the rates are usually loaded
+ * before the user invokes the extension. The in-flight load is held process-wide,
+ * and a worker takes it over, waiting for it to finish, rather than starting a second.
+ * The time spent downloading and parsing in the background is reported with the
+ * run that takes over the load.
+ */
+class RatePrefetcher {
+   /** Load in progress or completed, along with the local storage it is for */
+   private static final AtomicReference<Prefetch> inFlight = new AtomicReference<>();
+
+   private static final ThreadFactory threadFactory = Thread.ofPlatform()
+      .name("ibond-rate-prefetch").daemon().priority(Thread.MIN_PRIORITY).factory();
+
+   /**
+    * Data record for a rate table load started ahead of need.
+    *
+    * @param storage Moneydance local storage caching the rates
+    * @param load    Future rate table
+    * @param metrics Phase timers and counters of the load
+    */
+   private record Prefetch(Map<String, String> storage, CompletableFuture<RateTable> load,
+                           RunMetrics metrics) { }
+
+   /**
+    * Start loading rates in the background, unless prefetching is disabled or a load
+    * for the same local storage is already in flight.
+    *
+    * @param storage Moneydance local storage caching the rates
+    */
+   static void start(Map<String, String> storage) {
+      Prefetch prior = inFlight.get();
+
+      if (prior != null && prior.storage() == storage && !prior.load().isDone())
+         return;
+
+      try {
+         IBondImporter importer = new IBondImporter(storage);
+
+         if (importer.prefetchRates()) {
+            CompletableFuture<RateTable> load = CompletableFuture.supplyAsync(() -> {
+               try {
+                  importer.loadIBondRatesNow();
+
+                  return importer.getRateTable();
+               } catch (Exception e) {
+                  throw new CompletionException(e);
+               }
+            }, runnable -> threadFactory.newThread(runnable).start());
+            inFlight.set(new Prefetch(storage, load, importer.metrics()));
+         }
+      } catch (Exception e) {
+         MdLog.all("Problem starting I bond rate prefetch", e);
+      }
+
+   } // end start(Map<String, String>)
+
+   /**
+    * Take over any prefetch for the given local storage, waiting for it to finish
+    * unless cancelled first. A failed prefetch is only logged, leaving the caller to
+    * load the rates and report any problem itself. Either way, the time the prefetch
+    * spent is added to the caller's metrics. A cancelled caller leaves the prefetch
+    * running and in flight, so the next run takes it over rather than starting a
+    * second download writing the same local storage.
+    *
+    * @param storage      Moneydance local storage caching the rates
+    * @param cancellation Cancellation checked while waiting
+    * @param metrics      Phase timers and counters of the caller's run
+    * @return Optional prefetched rate table
+    */
+   static Optional<RateTable> take(Map<String, String> storage,
+         CancellationToken cancellation, RunMetrics metrics) {
+      Prefetch prefetch = inFlight.get();
+
+      if (prefetch == null || prefetch.storage() != storage)
+         return Optional.empty();
+
+      try {
+         // await a copy, so cancelling our wait does not cancel the prefetch itself
+         RateTable rateTable = cancellation.await(prefetch.load().copy());
+         if (inFlight.compareAndSet(prefetch, null)) {
+            metrics.merge(prefetch.metrics());
+         }
+
+         return Optional.of(rateTable);
+      } catch (CancellationException e) {
+         throw e;
+      } catch (Exception e) {
+         if (inFlight.compareAndSet(prefetch, null)) {
+            metrics.merge(prefetch.metrics());
+         }
+         MdLog.all("I bond rate prefetch did not complete: " + e.getCause());
+
+         return Optional.empty();
+      }
+   } // end take(Map<String, String>, CancellationToken, RunMetrics)
+
+} // end class RatePrefetcher
@@ -0,0 +1,317 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.IBondImporter.IBondRateRec;
+import io.github.jrhillery.moneydance.MdLog;
+import io.github.jrhillery.moneydance.MduException;
+import org.dhatim.fastexcel.reader.Cell;
+import org.dhatim.fastexcel.reader.CellType;
+import org.dhatim.fastexcel.reader.ReadableWorkbook;
+import org.dhatim.fastexcel.reader.Row;
+import org.dhatim.fastexcel.reader.Sheet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.INTEREST_RATE_DIGITS;
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Counter.BYTES_DOWNLOADED;
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Phase.DOWNLOAD;
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Phase.PARSE;
+import static java.math.RoundingMode.HALF_UP;
+import static org.dhatim.fastexcel.reader.CellType.FORMULA;
+import static org.dhatim.fastexcel.reader.CellType.NUMBER;
+import static org.dhatim.fastexcel.reader.CellType.STRING;
+
+/**
+ * Parser for one TreasuryDirect I bond interest rate history spreadsheet.
+ * Instances hold mutable parse state, so use a new instance for each spreadsheet.
+ */
+class RateSheetParser {
+   /** Spreadsheet location, used in messages */
+   private final URI iBondRateHistory;
+   /** Name of the sheet containing rate history */
+   private final String dataSheetName;
+   /** Cancellation checked per chunk spooled and per row parsed */
+   private final CancellationToken cancellation;
+   /** Timers for spooling and parsing, and count of bytes spooled */
+   private final RunMetrics metrics;
+   /** History column header handlers */
+   private final HashMap<String, Consumer<Integer>> histColHdrHandlers = new HashMap<>();
+   /** Column index of semiannual inflation interest rates */
+   private int iRateCol = -1;
+   /** Column index of fixed interest rates */
+   private int fRateCol = -1;
+   /** Column index of dates rates take effect */
+   private int sDateCol = -1;
+
+   private static final Consumer<Integer> NOOP = ignoredInteger -> {};
+   private static final int SPOOL_CHUNK_BYTES = 64 * 1024;
+
+   /**
+    * Constructor for a parse that is never cancelled.
+    *
+    * @param iBondRateHistory Spreadsheet location, used in messages
+    * @param dataSheetName    Name of the sheet containing rate history
+    * @param iRateColName     Header of the semiannual inflation interest rate column
+    * @param fRateColName     Header of the fixed interest rate column
+    * @param sDateColName     Header of the column of dates rates take effect
+    */
+   RateSheetParser(URI iBondRateHistory, String dataSheetName,
+         String iRateColName, String fRateColName, String sDateColName) {
+      this(iBondRateHistory, dataSheetName, iRateColName, fRateColName, sDateColName,
+         new CancellationToken(), new RunMetrics(1));
+
+   } // end constructor
+
+   /**
+    * Constructor for a parse that may be cancelled and is measured.
+    *
+    * @param iBondRateHistory Spreadsheet location, used in messages
+    * @param dataSheetName    Name of the sheet containing rate history
+    * @param iRateColName     Header of the semiannual inflation interest rate column
+    * @param fRateColName     Header of the fixed interest rate column
+    * @param sDateColName     Header of the column of dates rates take effect
+    * @param cancellation     Cancellation checked per chunk spooled and per row parsed
+    * @param metrics          Timers for spooling and parsing, and count of bytes spooled
+    */
+   RateSheetParser(URI iBondRateHistory, String dataSheetName,
+         String iRateColName, String fRateColName, String sDateColName,
+         CancellationToken cancellation, RunMetrics metrics) {
+      this.iBondRateHistory = iBondRateHistory;
+      this.dataSheetName = dataSheetName;
+      this.cancellation = cancellation;
+      this.metrics = metrics;
+      this.histColHdrHandlers.put(iRateColName, colIdx -> this.iRateCol = colIdx);
+      this.histColHdrHandlers.put(fRateColName, colIdx -> this.fRateCol = colIdx);
+      this.histColHdrHandlers.put(sDateColName, colIdx -> this.sDateCol = colIdx);
+
+   } // end constructor
+
+   /**
+    * Spool a spreadsheet to a temporary file, so it is never held in memory whole.
+    * Copy in chunks, checking for cancellation between them. Cancelling also closes
+    * the input stream, releasing a read blocked waiting for more of a download.
+    *
+    * @param iStream Input stream containing a spreadsheet from the TreasuryDirect website
+    * @param xlsx    Temporary file to receive the spreadsheet
+    */
+   private void spool(InputStream iStream, Path xlsx) throws MduException {
+      this.cancellation.onCancel(() -> close(iStream));
+      try (iStream; OutputStream oStream = Files.newOutputStream(xlsx);
+            RunMetrics.Span ignored = this.metrics.time(DOWNLOAD)) {
+         byte[] chunk = new byte[SPOOL_CHUNK_BYTES];
+         int len;
+
+         while ((len = iStream.read(chunk)) >= 0) {
+            this.cancellation.checkCancelled();
+            oStream.write(chunk, 0, len);
+            this.metrics.add(BYTES_DOWNLOADED, len);
+         } // end while more to copy
+         this.cancellation.checkCancelled();
+      } catch (IOException e) {
+         this.cancellation.checkCancelled();
+         throw new MduException(e, "Problem accessing %s", this.iBondRateHistory);
+      } // end try-with-resources
+
+   } // end spool(InputStream, Path)
+
+   /**
+    * Close an input stream, possibly from another thread than the one reading it.
+    *
+    * @param iStream Input stream to close
+    */
+   static void close(InputStream iStream) {
+      try {
+         iStream.close();
+      } catch (IOException e) {
+         MdLog.debug(() -> "Problem closing input stream: " + e);
+      }
+
+   } // end close(InputStream)
+
+   /**
+    * @param xlsx File containing a spreadsheet from the TreasuryDirect website
+    * @return fastexcel-reader ReadableWorkbook of the spreadsheet
+    */
+   private ReadableWorkbook getIBondRateHistoryWorkbook(Path xlsx) throws MduException {
+      try {
+
+         // opened from a file, fastexcel-reader reads zip entries on demand,
+         // so only the data sheet and shared strings are ever parsed
+         return new ReadableWorkbook(xlsx.toFile());
+      } catch (Exception e) {
+         throw new MduException(e, "Problem accessing %s", this.iBondRateHistory);
+      }
+   } // end getIBondRateHistoryWorkbook(Path)
+
+   /**
+    * Retrieve an interest rate value from a spreadsheet
+    * cell and clean it up to avoid lots of zeros and nines.
+    *
+    * @param cell Cell to interrogate
+    * @return BigDecimal value rounded to the fourth place past the decimal point
+    */
+   private static BigDecimal getInterestRateClean(Cell cell) {
+      BigDecimal bd = cell.asNumber();
+
+      return bd.setScale(INTEREST_RATE_DIGITS, HALF_UP);
+   } // end getInterestRateClean(Cell)
+
+   /**
+    * Retrieve a year and month value from a spreadsheet cell.
+    *
+    * @param cell Cell to interrogate
+    * @return Year-month value
+    */
+   private static YearMonth getMonthClean(Cell cell) {
+      LocalDateTime date = cell.asDate();
+
+      return YearMonth.of(date.getYear(), date.getMonthValue());
+   } // end getMonthClean(Cell)
+
+   /**
+    * Load I bond interest rate history from a spreadsheet on the TreasuryDirect website.
+    * The spreadsheet is streamed to a temporary file rather than read into memory.
+    *
+    * @param iStream Input stream containing the spreadsheet
+    * @return Non-empty mapping from months to historical I bond interest rates
+    * @throws MduException Problem interpreting TreasuryDirect spreadsheet
+    */
+   TreeMap<YearMonth, IBondRateRec> parse(InputStream iStream) throws MduException {
+      Path xlsx;
+      try {
+         xlsx = Files.createTempFile("ibond-rates", ".xlsx");
+      } catch (IOException e) {
+         throw new MduException(e, "Problem creating a temporary file for %s",
+            this.iBondRateHistory);
+      }
+
+      try {
+         spool(iStream, xlsx);
+
+         return parse(xlsx);
+      } finally {
+         try {
+            Files.deleteIfExists(xlsx);
+         } catch (IOException e) {
+            MdLog.all("Problem deleting temporary file %s: %s".formatted(xlsx, e));
+         }
+      }
+   } // end parse(InputStream)
+
+   /**
+    * Load I bond interest rate history from a spreadsheet file.
+    *
+    * @param xlsx File containing the spreadsheet
+    * @return Non-empty mapping from months to historical I bond interest rates
+    * @throws MduException Problem interpreting TreasuryDirect spreadsheet
+    */
+   TreeMap<YearMonth, IBondRateRec> parse(Path xlsx) throws MduException {
+      try (RunMetrics.Span ignored = this.metrics.time(PARSE);
+            ReadableWorkbook wb = getIBondRateHistoryWorkbook(xlsx)) {
+         Sheet dataSheet = wb.findSheet(this.dataSheetName).orElseThrow(
+            () -> new MduException(null, "Unable to find sheet %s in %s",
+               this.dataSheetName, this.iBondRateHistory));
+
+         Spliterator<Row> dataRowItr;
+         try {
+            dataRowItr = dataSheet.openStream().spliterator();
+         } catch (Exception e) {
+            throw new MduException(e, "Problem accessing rows in %s", this.iBondRateHistory);
+         }
+         loadColumnIndexes(dataRowItr);
+         TreeMap<YearMonth, IBondRateRec> iBondRates = getIBondRates(dataRowItr);
+
+         if (iBondRates.isEmpty())
+            throw new MduException(null, "Unable to find any interest rates in %s",
+               this.iBondRateHistory);
+
+         return iBondRates;
+      } catch (IOException e) {
+         throw new MduException(e, "Problem closing %s", this.iBondRateHistory);
+      }
+   } // end parse(Path)
+
+   /**
+    * Load the column indexes of interest into our corresponding fields. Find
+    * these column headers in the next row provided by the supplied spliterator.
+    *
+    * @param dataRowItr Row spliterator over the data sheet portion of the spreadsheet to use
+    * @throws MduException Problem finding all interesting column headers
+    */
+   private void loadColumnIndexes(Spliterator<Row> dataRowItr) throws MduException {
+      while (dataRowItr.tryAdvance(row -> {
+         this.cancellation.checkCancelled();
+
+         for (Cell cell : row) {
+            if (cell != null && cell.getType() == STRING) {
+               this.histColHdrHandlers.getOrDefault(cell.asString(), NOOP)
+                  .accept(cell.getColumnIndex());
+            }
+         } // end for each cell in the next row
+      })) {
+         if (this.iRateCol >= 0 && this.fRateCol >= 0 && this.sDateCol >= 0)
+            return;
+      }
+
+      throw new MduException(null, "Unable to locate column headers %s in %s",
+         this.histColHdrHandlers.keySet(), this.iBondRateHistory);
+
+   } // end loadColumnIndexes(Spliterator<Row>)
+
+   /**
+    * Load I bond interest rate history from a spreadsheet on the TreasuryDirect website.
+    * Only our three columns are examined, and rows too short to hold them are skipped.
+    *
+    * @param dataRowItr Row spliterator over the data sheet portion of the spreadsheet to use
+    * @return Mapping from dates to historical I bond interest rates
+    */
+   private TreeMap<YearMonth, IBondRateRec> getIBondRates(Spliterator<Row> dataRowItr) {
+      TreeMap<YearMonth, IBondRateRec> iBondRates = new TreeMap<>();
+      int lastCol = Math.max(this.iRateCol, Math.max(this.fRateCol, this.sDateCol));
+
+      dataRowItr.forEachRemaining(row -> {
+         this.cancellation.checkCancelled();
+
+         if (row.getCellCount() > lastCol) {
+            Cell iRateCell = getCellOfType(this.iRateCol, NUMBER, row);
+            Cell fRateCell = getCellOfType(this.fRateCol, NUMBER, row);
+            Cell sDateCell = getCellOfType(this.sDateCol, FORMULA, row);
+
+            if (iRateCell != null && fRateCell != null && sDateCell != null) {
+               BigDecimal inflateRate = getInterestRateClean(iRateCell);
+               BigDecimal fixedRate = getInterestRateClean(fRateCell);
+               YearMonth startMonth = getMonthClean(sDateCell);
+               iBondRates.put(startMonth, new IBondRateRec(inflateRate, fixedRate, startMonth));
+            }
+         }
+      }); // end for each remaining row
+
+      return iBondRates;
+   } // end getIBondRates(Spliterator<Row>)
+
+   /**
+    * Get the cell at the specified column index with the desired type, otherwise null.
+    *
+    * @param colIndex column index to get
+    * @param desiredType desired type of cell
+    * @param row row containing cell
+    * @return Cell with the desired type, or {@code null} if none
+    */
+   private static Cell getCellOfType(int colIndex, CellType desiredType, Row row) {
+      Cell cell = row.hasCell(colIndex) ? row.getCell(colIndex) : null;
+
+      return cell != null && cell.getType() == desiredType ? cell : null;
+   } // end getCellOfType(int, CellType, Row)
+
+} // end class RateSheetParser
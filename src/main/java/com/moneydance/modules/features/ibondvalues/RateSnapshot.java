@@ -0,0 +1,151 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.IBondImporter.IBondRateRec;
+import io.github.jrhillery.moneydance.MdLog;
+import io.github.jrhillery.moneydance.MdUtil;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.INTEREST_RATE_DIGITS;
+
+/**
+ * Compact binary snapshot of the I bond interest rate history, generated during the
+ * build from a checked-in copy of the TreasuryDirect spreadsheet and bundled in our
+ * jar, so rates are available when TreasuryDirect can't be reached. After a header
+ * of a magic number and a record count, each record is fixed-width: an int month
+ * ordinal the rates took effect, then the semiannual inflation rate and the fixed
+ * rate as short basis point counts.
+ */
+class RateSnapshot {
+   /** Name of the bundled snapshot resource, relative to this class */
+   static final String RESOURCE = "ibond-rates.bin";
+
+   private static final int MAGIC = 0x49425231; // "IBR1"
+   private static final int RECORD_BYTES = Integer.BYTES + 2 * Short.BYTES;
+
+   /**
+    * {@return Optional mapping from months to historical I bond interest rates
+    * bundled with this extension}
+    */
+   static Optional<TreeMap<YearMonth, IBondRateRec>> bundled() {
+      try (InputStream iStream = RateSnapshot.class.getResourceAsStream(RESOURCE)) {
+         if (iStream == null)
+            return Optional.empty();
+
+         return Optional.of(read(iStream));
+      } catch (Exception e) {
+         MdLog.all("Ignoring unusable bundled I bond rates", e);
+
+         return Optional.empty();
+      }
+   } // end bundled()
+
+   /**
+    * Read a snapshot with a single read of the whole stream.
+    *
+    * @param iStream Input stream containing a snapshot
+    * @return Mapping from months to historical I bond interest rates
+    * @throws IOException Problem reading or interpreting the snapshot
+    */
+   static TreeMap<YearMonth, IBondRateRec> read(InputStream iStream) throws IOException {
+      ByteBuffer buf = ByteBuffer.wrap(iStream.readAllBytes());
+      TreeMap<YearMonth, IBondRateRec> iBondRates = new TreeMap<>();
+
+      try {
+         if (buf.getInt() != MAGIC)
+            throw new IOException("Not an I bond rate snapshot");
+         int numRecs = buf.getInt();
+
+         if (numRecs <= 0 || buf.remaining() != numRecs * RECORD_BYTES)
+            throw new IOException("I bond rate snapshot holds %d bytes for %d records"
+               .formatted(buf.remaining(), numRecs));
+
+         for (int i = 0; i < numRecs; ++i) {
+            YearMonth startMonth = RateTable.monthOf(buf.getInt());
+            BigDecimal inflationRate = BigDecimal.valueOf(buf.getShort(), INTEREST_RATE_DIGITS);
+            BigDecimal fixedRate = BigDecimal.valueOf(buf.getShort(), INTEREST_RATE_DIGITS);
+            iBondRates.put(startMonth, new IBondRateRec(inflationRate, fixedRate, startMonth));
+         } // end for each record
+      } catch (BufferUnderflowException e) {
+         throw new IOException("I bond rate snapshot is truncated", e);
+      }
+
+      return iBondRates;
+   } // end read(InputStream)
+
+   /**
+    * Write a snapshot.
+    *
+    * @param iBondRates Mapping from months to historical I bond interest rates
+    * @param oStream    Output stream to receive the snapshot
+    * @throws IOException Problem writing the snapshot
+    */
+   static void write(TreeMap<YearMonth, IBondRateRec> iBondRates, OutputStream oStream)
+         throws IOException {
+      DataOutputStream dStream = new DataOutputStream(oStream);
+      dStream.writeInt(MAGIC);
+      dStream.writeInt(iBondRates.size());
+
+      for (IBondRateRec rec : iBondRates.values()) {
+         dStream.writeInt(RateTable.monthOrdinal(rec.startMonth()));
+         dStream.writeShort(basisPoints(rec.inflationRate()));
+         dStream.writeShort(basisPoints(rec.fixedRate()));
+      } // end for each rate record
+      dStream.flush();
+
+   } // end write(TreeMap, OutputStream)
+
+   /**
+    * @param rate Interest rate with at most 4 places past the decimal point
+    * @return Interest rate in basis points, which must fit in a short
+    */
+   private static short basisPoints(BigDecimal rate) {
+
+      return rate.movePointRight(INTEREST_RATE_DIGITS).shortValueExact();
+   } // end basisPoints(BigDecimal)
+
+   /**
+    * Generate a bundled snapshot during the build. The spreadsheet is checked in, so
+    * builds are reproducible and need no network; any problem fails the build rather
+    * than silently shipping without a snapshot.
+    *
+    * @param args Spreadsheet URI to read, then path of the snapshot file to write
+    * @throws Exception Problem reading the spreadsheet or writing the snapshot
+    */
+   public static void main(String[] args) throws Exception {
+      if (args.length != 2)
+         throw new IllegalArgumentException("Usage: RateSnapshot <spreadsheet-uri> <output-file>");
+      URI source = URI.create(args[0]);
+      Path output = Path.of(args[1]);
+      Properties props = MdUtil.loadProps("ibond-values.properties", RateSnapshot.class);
+      TreeMap<YearMonth, IBondRateRec> iBondRates;
+
+      try (InputStream iStream = source.toURL().openStream()) {
+         iBondRates = new RateSheetParser(source, props.getProperty("sheet.data"),
+            props.getProperty("col.irate"), props.getProperty("col.frate"),
+            props.getProperty("col.sdate")).parse(iStream);
+      }
+      Files.createDirectories(output.getParent());
+
+      try (OutputStream oStream = Files.newOutputStream(output)) {
+         write(iBondRates, oStream);
+      }
+      System.out.format("Wrote %d I bond rate records through %s to %s%n",
+         iBondRates.size(), iBondRates.lastKey(), output);
+
+   } // end main(String[])
+
+} // end class RateSnapshot
@@ -0,0 +1,334 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.IBondImporter.IBondRateRec;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.INTEREST_RATE_DIGITS;
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.SEMIANNUAL_MONTHS;
+import static java.math.MathContext.DECIMAL128;
+
+/**
+ * Immutable snapshot of the Series I savings bond interest rate history.
+ * Any number of threads may read a snapshot concurrently. The current snapshot
+ * is shared process-wide, so rates are loaded once per Moneydance session,
+ * and a refresh atomically swaps in a new snapshot without blocking readers.
+ * Rates are indexed by month ordinal in flat arrays, so lookups are plain array
+ * indexing from the earliest rate month through the latest. Values derived from
+ * a snapshot, such as composite rate schedules, are memoized with the snapshot,
+ * so a refresh implicitly invalidates them.
+ */
+public final class RateTable {
+   /** Mapping from months to historical I bond interest rates */
+   private final NavigableMap<YearMonth, IBondRateRec> iBondRates;
+   /** Distinguishes this snapshot from earlier ones */
+   private final long version;
+   /** Month ordinal of the earliest historical I bond interest rates */
+   private final int firstOrdinal;
+   /** Rate records indexed by month ordinal less our first ordinal */
+   private final IBondRateRec[] recsByMonth;
+   /** Semiannual inflation rates in basis points, indexed like recsByMonth */
+   private final int[] inflationBpByMonth;
+   /** Fixed rates in basis points, indexed like recsByMonth */
+   private final int[] fixedBpByMonth;
+   /** Month ordinals the rates took effect, indexed like recsByMonth */
+   private final int[] startOrdinalByMonth;
+   /** Memoized composite rate schedules keyed by issue month ordinal */
+   private final ConcurrentHashMap<Integer, CompositeRateSchedule> schedulesByIssue =
+      new ConcurrentHashMap<>();
+   /** Memoized monthly growth multipliers keyed by composite rate in basis points */
+   private final ConcurrentHashMap<Integer, BigDecimal> multipliersByRate;
+
+   /** Working precision for monthly growth multiplier roots */
+   private static final MathContext ROOT_CONTEXT = new MathContext(40);
+
+   /** Source of snapshot versions */
+   private static final AtomicLong versionSource = new AtomicLong();
+   /** Current process-wide snapshot */
+   private static final AtomicReference<RateTable> current = new AtomicReference<>();
+
+   /**
+    * Standard constructor.
+    *
+    * @param iBondRates Non-empty mapping from months to historical I bond interest rates
+    */
+   private RateTable(SortedMap<YearMonth, IBondRateRec> iBondRates) {
+      this(iBondRates, new ConcurrentHashMap<>());
+
+   } // end constructor
+
+   /**
+    * Constructor sharing monthly growth multipliers with another table.
+    *
+    * @param iBondRates        Non-empty mapping from months to I bond interest rates
+    * @param multipliersByRate Memoized monthly growth multipliers keyed by composite rate
+    */
+   private RateTable(SortedMap<YearMonth, IBondRateRec> iBondRates,
+         ConcurrentHashMap<Integer, BigDecimal> multipliersByRate) {
+      this.multipliersByRate = multipliersByRate;
+      this.iBondRates = Collections.unmodifiableNavigableMap(new TreeMap<>(iBondRates));
+      this.version = versionSource.incrementAndGet();
+      this.firstOrdinal = monthOrdinal(this.iBondRates.firstKey());
+      int numMonths = monthOrdinal(this.iBondRates.lastKey()) - this.firstOrdinal + 1;
+      this.recsByMonth = new IBondRateRec[numMonths];
+      this.inflationBpByMonth = new int[numMonths];
+      this.fixedBpByMonth = new int[numMonths];
+      this.startOrdinalByMonth = new int[numMonths];
+
+      for (int idx = 0; idx < numMonths; ++idx) {
+         IBondRateRec rec =
+            this.iBondRates.floorEntry(monthOf(this.firstOrdinal + idx)).getValue();
+         this.recsByMonth[idx] = rec;
+         this.inflationBpByMonth[idx] = basisPoints(rec.inflationRate());
+         this.fixedBpByMonth[idx] = basisPoints(rec.fixedRate());
+         this.startOrdinalByMonth[idx] = monthOrdinal(rec.startMonth());
+      } // end for each month with rates
+
+   } // end constructor
+
+   /**
+    * @param month Year and month
+    * @return Ordinal that increases by one for each successive month
+    */
+   public static int monthOrdinal(YearMonth month) {
+
+      return month.getYear() * 12 + month.getMonthValue() - 1;
+   } // end monthOrdinal(YearMonth)
+
+   /**
+    * @param ordinal Month ordinal
+    * @return Corresponding year and month
+    */
+   public static YearMonth monthOf(int ordinal) {
+
+      return YearMonth.of(Math.floorDiv(ordinal, 12), Math.floorMod(ordinal, 12) + 1);
+   } // end monthOf(int)
+
+   /**
+    * @param rate Interest rate with at most 4 places past the decimal point
+    * @return Interest rate in basis points (hundredths of a percent)
+    */
+   private static int basisPoints(BigDecimal rate) {
+
+      return rate.movePointRight(INTEREST_RATE_DIGITS).intValueExact();
+   } // end basisPoints(BigDecimal)
+
+   /**
+    * @param ordinal Month ordinal not earlier than our first month
+    * @return Index into our arrays, clamped to the latest month with rates
+    */
+   private int index(int ordinal) {
+
+      return Math.min(ordinal - this.firstOrdinal, this.recsByMonth.length - 1);
+   } // end index(int)
+
+   /**
+    * {@return Optional current process-wide rate table snapshot}
+    */
+   public static Optional<RateTable> current() {
+
+      return Optional.ofNullable(current.get());
+   } // end current()
+
+   /**
+    * Publish a rate table snapshot for the supplied rates, unless the current snapshot
+    * already holds identical rates, in which case the current snapshot is retained.
+    *
+    * @param iBondRates Non-empty mapping from months to historical I bond interest rates
+    * @return The published snapshot
+    */
+   public static RateTable publish(SortedMap<YearMonth, IBondRateRec> iBondRates) {
+      if (iBondRates.isEmpty())
+         throw new IllegalArgumentException("No I bond interest rates to publish");
+
+      return current.updateAndGet(table ->
+         table != null && table.iBondRates.equals(iBondRates) ? table : new RateTable(iBondRates));
+   } // end publish(SortedMap<YearMonth, IBondRateRec>)
+
+   /**
+    * Create an unpublished snapshot extending this one with hypothetical future rates,
+    * such as one simulated inflation path. Monthly growth multipliers depend only on
+    * the composite rate, so the projection shares ours rather than recomputing them.
+    *
+    * @param futureRates Mapping from months after our latest month to I bond interest rates
+    * @return Snapshot of our rates followed by the future rates
+    */
+   RateTable projection(SortedMap<YearMonth, IBondRateRec> futureRates) {
+      if (!futureRates.isEmpty() && !futureRates.firstKey().isAfter(this.iBondRates.lastKey()))
+         throw new IllegalArgumentException("Projected rates start %s, not after %s"
+            .formatted(futureRates.firstKey(), this.iBondRates.lastKey()));
+      TreeMap<YearMonth, IBondRateRec> rates = new TreeMap<>(this.iBondRates);
+      rates.putAll(futureRates);
+
+      return new RateTable(rates, this.multipliersByRate);
+   } // end projection(SortedMap<YearMonth, IBondRateRec>)
+
+   /**
+    * {@return Unmodifiable mapping from months to historical I bond interest rates}
+    */
+   public NavigableMap<YearMonth, IBondRateRec> rates() {
+
+      return this.iBondRates;
+   } // end rates()
+
+   /**
+    * {@return Version distinguishing this snapshot from earlier ones}
+    */
+   public long version() {
+
+      return this.version;
+   } // end version()
+
+   /**
+    * {@return Month the earliest historical I bond interest rates took effect}
+    */
+   public YearMonth firstMonth() {
+
+      return this.recsByMonth[0].startMonth();
+   } // end firstMonth()
+
+   /**
+    * {@return Month ordinal of the earliest historical I bond interest rates}
+    */
+   public int firstOrdinal() {
+
+      return this.firstOrdinal;
+   } // end firstOrdinal()
+
+   /**
+    * {@return Month the latest historical I bond interest rates took effect}
+    */
+   public YearMonth lastMonth() {
+
+      return this.recsByMonth[this.recsByMonth.length - 1].startMonth();
+   } // end lastMonth()
+
+   /**
+    * {@return Month ordinal of the latest historical I bond interest rates}
+    */
+   public int lastOrdinal() {
+
+      return this.firstOrdinal + this.recsByMonth.length - 1;
+   } // end lastOrdinal()
+
+   /**
+    * Find the Series I savings bond interest rate history data for a given month.
+    * Note: The caller must ensure the specified month is not earlier than
+    * the earliest historical I bond interest rate.
+    *
+    * @param month Month for which to return I bond rate record
+    * @return Corresponding I bond rate record
+    */
+   public IBondRateRec getRateForMonth(YearMonth month) {
+
+      return getRateForOrdinal(monthOrdinal(month));
+   } // end getRateForMonth(YearMonth)
+
+   /**
+    * Find the Series I savings bond interest rate history data for a given month ordinal.
+    * Note: The caller must ensure the specified month is not earlier than
+    * the earliest historical I bond interest rate.
+    *
+    * @param ordinal Month ordinal for which to return I bond rate record
+    * @return Corresponding I bond rate record
+    */
+   public IBondRateRec getRateForOrdinal(int ordinal) {
+
+      return this.recsByMonth[index(ordinal)];
+   } // end getRateForOrdinal(int)
+
+   /**
+    * @param ordinal Month ordinal not earlier than the earliest historical rate
+    * @return Semiannual inflation rate in effect that month, in basis points
+    */
+   public int inflationBasisPoints(int ordinal) {
+
+      return this.inflationBpByMonth[index(ordinal)];
+   } // end inflationBasisPoints(int)
+
+   /**
+    * @param ordinal Month ordinal not earlier than the earliest historical rate
+    * @return Fixed rate in effect that month, in basis points
+    */
+   public int fixedBasisPoints(int ordinal) {
+
+      return this.fixedBpByMonth[index(ordinal)];
+   } // end fixedBasisPoints(int)
+
+   /**
+    * @param ordinal Month ordinal not earlier than the earliest historical rate
+    * @return Month ordinal the rates in effect that month took effect
+    */
+   public int startOrdinal(int ordinal) {
+
+      return this.startOrdinalByMonth[index(ordinal)];
+   } // end startOrdinal(int)
+
+   /**
+    * Compute the sixth root of one plus half a composite rate to 34 significant digits.
+    * Newton's method in decimal arithmetic, seeded from StrictMath, gives the same
+    * digits on every platform.
+    *
+    * @param compositeRate Composite interest rate
+    * @return Exact monthly growth factor for the composite rate
+    */
+   static BigDecimal sixthRoot(BigDecimal compositeRate) {
+      BigDecimal semiannualGrowth = BigDecimal.ONE.add(compositeRate.divide(BigDecimal.TWO));
+      BigDecimal root = new BigDecimal(StrictMath.pow(
+         semiannualGrowth.doubleValue(), 1.0 / SEMIANNUAL_MONTHS), ROOT_CONTEXT);
+      BigDecimal degree = BigDecimal.valueOf(SEMIANNUAL_MONTHS);
+
+      // each iteration doubles the correct digits of our 16-digit seed
+      for (int i = 0; i < 3; ++i) {
+         // root = root - (root^6 - growth) / (6 * root^5)
+         BigDecimal rootPow5 = root.pow(SEMIANNUAL_MONTHS - 1, ROOT_CONTEXT);
+         BigDecimal correction = root.multiply(rootPow5, ROOT_CONTEXT)
+            .subtract(semiannualGrowth, ROOT_CONTEXT)
+            .divide(degree.multiply(rootPow5, ROOT_CONTEXT), ROOT_CONTEXT);
+         root = root.subtract(correction, ROOT_CONTEXT);
+      } // end for each Newton iteration
+
+      return root.round(DECIMAL128);
+   } // end sixthRoot(BigDecimal)
+
+   /**
+    * Obtain the monthly growth multiplier for a composite rate, computing it once
+    * per snapshot. Composite rates have at most 4 places past the decimal point,
+    * so few distinct values occur. The exact root is rounded to the nearest double,
+    * the precision unit values have always been stepped with, so recorded interest
+    * payments keep matching to the cent.
+    *
+    * @param compositeRate Composite interest rate
+    * @return Monthly growth multiplier
+    */
+   public BigDecimal monthlyMultiplier(BigDecimal compositeRate) {
+
+      return this.multipliersByRate.computeIfAbsent(basisPoints(compositeRate),
+         basisPoints -> BigDecimal.valueOf(sixthRoot(compositeRate).doubleValue()));
+   } // end monthlyMultiplier(BigDecimal)
+
+   /**
+    * Obtain the composite rate schedule shared by all I bonds issued in a given month.
+    * Note: The caller must ensure the specified month is not earlier than
+    * the earliest historical I bond interest rate.
+    *
+    * @param issueMonth Month the bonds were issued
+    * @return Composite interest rates for each semiannual period since issue
+    */
+   public CompositeRateSchedule compositeSchedule(YearMonth issueMonth) {
+
+      return this.schedulesByIssue.computeIfAbsent(monthOrdinal(issueMonth),
+         ordinal -> new CompositeRateSchedule(this, issueMonth));
+   } // end compositeSchedule(YearMonth)
+
+} // end class RateTable
@@ -0,0 +1,399 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.BatchValues.Holding;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.PENALTY_MONTHS;
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.PENALTY_YEARS;
+import static java.math.MathContext.DECIMAL64;
+import static java.math.RoundingMode.CEILING;
+import static java.math.RoundingMode.FLOOR;
+import static java.math.RoundingMode.HALF_UP;
+
+/**
+ * Plan which I bond holdings to redeem, and how much of each, to raise a target
+ * amount in a given month at the least cost. The cost of redeeming part of a holding
+ * is the interest it would otherwise have earned through a horizon month, assuming
+ * the latest inflation rate holds, plus, for bonds held less than 5 years, the last
+ * 3 months of interest on the part redeemed. Each candidate is a what-if run of the
+ * interest engine resumed from a checkpoint just before the redemption month, so
+ * partial redemptions reduce interest-eligible balances exactly as recorded ones do.
+ * Candidates costing more than a larger redemption from the same holding are pruned
+ * before the combinations of holdings are searched.
+ */
+class RedemptionPlanner {
+   /** Smallest partial redemption, and smallest balance left after one */
+   static final BigDecimal MIN_REDEMPTION = BigDecimal.valueOf(25);
+   /** Months I bonds must be held before they can be redeemed */
+   static final int MIN_HOLD_MONTHS = 12;
+   /** Most steps toward a target amount searched when no step is given */
+   private static final int DEFAULT_TARGET_STEPS = 200;
+
+   private final IBondImporter importer;
+   /** Rate history extended through our horizon month */
+   private final RateTable rateTable;
+   private final List<Holding> holdings;
+   private final YearMonth redeemMonth;
+   private final YearMonth horizon;
+   /** Redemption amounts considered are multiples of this step */
+   private final BigDecimal step;
+   /** Number of interest engine runs so far */
+   private final LongAdder evaluations = new LongAdder();
+
+   /**
+    * Data record for redeeming part or all of one holding.
+    *
+    * @param holding         Holding to redeem from
+    * @param amount          Amount to redeem
+    * @param forgoneInterest Interest the amount would have earned through the horizon
+    * @param penalty         Interest lost to the early redemption penalty
+    */
+   record Redemption(Holding holding, BigDecimal amount, BigDecimal forgoneInterest,
+         BigDecimal penalty) {
+
+      /**
+       * {@return Total cost of this redemption}
+       */
+      BigDecimal cost() {
+
+         return this.forgoneInterest.add(this.penalty);
+      } // end cost()
+
+   } // end record Redemption
+
+   /**
+    * Data record for a complete redemption plan.
+    *
+    * @param redemptions Redemptions, cheapest per dollar first
+    * @param amount      Total amount raised
+    * @param cost        Total cost
+    */
+   record Plan(List<Redemption> redemptions, BigDecimal amount, BigDecimal cost) { }
+
+   /**
+    * @param units      Steps toward the target this redemption counts for
+    * @param redemption The redemption
+    */
+   private record Option(int units, Redemption redemption) { }
+
+   /**
+    * Link in a chain of options chosen for a partial plan.
+    *
+    * @param option Option chosen
+    * @param prior  Options chosen earlier, or null
+    */
+   private record Choice(Option option, Choice prior) { }
+
+   /**
+    * @param cost Total cost of the options chosen
+    * @param last Latest option chosen, or null when none
+    */
+   private record Partial(BigDecimal cost, Choice last) { }
+
+   /**
+    * Sole constructor.
+    *
+    * @param importer    Importer with rates loaded
+    * @param holdings    Holdings that may be redeemed
+    * @param redeemMonth Month to redeem in
+    * @param horizon     Month through which to count forgone interest
+    * @param step        Redemption amounts considered are multiples of this step
+    */
+   RedemptionPlanner(IBondImporter importer, List<Holding> holdings, YearMonth redeemMonth,
+         YearMonth horizon, BigDecimal step) {
+      if (!horizon.isAfter(redeemMonth) || step.signum() <= 0)
+         throw new IllegalArgumentException("Horizon %s must follow redemption month %s"
+            .formatted(horizon, redeemMonth) + " and step %s be positive".formatted(step));
+      this.importer = importer;
+      this.rateTable = ValueProjection.extendRates(importer.getRateTable(), horizon, rate -> rate);
+      this.holdings = List.copyOf(holdings);
+      this.redeemMonth = redeemMonth;
+      this.horizon = horizon;
+      this.step = step;
+
+   } // end constructor
+
+   /**
+    * Choose a step small enough to plan precisely, yet large enough to keep the
+    * search quick: a multiple of the smallest redemption dividing the target into
+    * at most a couple hundred steps.
+    *
+    * @param target Amount to raise
+    * @return Step for redemption amounts
+    */
+   static BigDecimal defaultStep(BigDecimal target) {
+      BigDecimal minSteps = target.divide(MIN_REDEMPTION.multiply(
+         BigDecimal.valueOf(DEFAULT_TARGET_STEPS)), 0, CEILING);
+
+      return MIN_REDEMPTION.multiply(minSteps.max(BigDecimal.ONE));
+   } // end defaultStep(BigDecimal)
+
+   /**
+    * {@return Number of interest engine runs so far}
+    */
+   long evaluations() {
+
+      return this.evaluations.sum();
+   } // end evaluations()
+
+   /**
+    * @param holding  Holding to total
+    * @param redeemed Extra amount redeemed in our redemption month
+    * @param from     Month after which to total, or null to total from the start
+    * @param through  Last month to total
+    * @return Sum of deposits and redemptions in the months, including the extra redemption
+    */
+   private BigDecimal netBetween(Holding holding, BigDecimal redeemed, YearMonth from,
+         YearMonth through) {
+      BigDecimal net = holding.netBetween(from, through);
+
+      return (from == null || this.redeemMonth.isAfter(from))
+         && !this.redeemMonth.isAfter(through) ? net.subtract(redeemed) : net;
+   } // end netBetween(Holding, BigDecimal, YearMonth, YearMonth)
+
+   /**
+    * Find a holding's value in a month from calculated interest payments.
+    *
+    * @param txns       Calculated interest payments
+    * @param checkpoint Checkpoint the calculation resumed from, or null
+    * @param holding    Holding to value
+    * @param redeemed   Extra amount redeemed in our redemption month
+    * @param month      Month to value
+    * @return Redemption value in the month
+    */
+   private BigDecimal valueAt(CalcTxnList txns, IBondCheckpoint checkpoint, Holding holding,
+         BigDecimal redeemed, YearMonth month) {
+      CalcTxn[] last = new CalcTxn[1];
+      txns.forEach(txn -> {
+         if (!txn.payMonth().isAfter(month)) {
+            last[0] = txn;
+         }
+      });
+
+      if (last[0] != null)
+         return last[0].endingBal().add(netBetween(holding, redeemed, last[0].payMonth(), month));
+      if (checkpoint != null)
+         return checkpoint.redemptionVal().add(
+            netBetween(holding, redeemed, checkpoint.month(), month));
+
+      return netBetween(holding, redeemed, null, month);
+   } // end valueAt(CalcTxnList, IBondCheckpoint, Holding, BigDecimal, YearMonth)
+
+   /**
+    * Evaluate the redemptions worth considering from one holding.
+    *
+    * @param holding     Holding to redeem from
+    * @param targetUnits Steps needed to reach the target amount
+    * @return Options not costing more than a larger redemption from this holding
+    */
+   private List<Option> options(Holding holding, int targetUnits) throws Exception {
+      YearMonth issueMonth = this.importer.getDateForTicker(holding.ticker());
+      if (this.redeemMonth.isBefore(issueMonth.plusMonths(MIN_HOLD_MONTHS)))
+         return List.of();
+
+      CompositeRateSchedule schedule = this.rateTable.compositeSchedule(issueMonth);
+      CalcTxnList baseTxns = this.importer.calcInterestTxns(schedule, holding::netFor,
+         rates -> {}, null, this.redeemMonth.minusMonths(1), this.horizon);
+      this.evaluations.increment();
+      IBondCheckpoint checkpoint = baseTxns.checkpoint().orElse(null);
+      BigDecimal available = valueAt(baseTxns, null, holding, BigDecimal.ZERO, this.redeemMonth);
+      BigDecimal baseValue = valueAt(baseTxns, null, holding, BigDecimal.ZERO, this.horizon);
+      BigDecimal[] pendingInterest = {BigDecimal.ZERO};
+
+      if (this.redeemMonth.isBefore(issueMonth.plusYears(PENALTY_YEARS))) {
+         YearMonth penaltyEnd = this.redeemMonth.plusMonths(PENALTY_MONTHS);
+         baseTxns.forEach(txn -> {
+            if (txn.payMonth().isAfter(this.redeemMonth) && !txn.payMonth().isAfter(penaltyEnd)) {
+               pendingInterest[0] = pendingInterest[0].add(txn.payAmount());
+            }
+         });
+      }
+      List<Option> options = new ArrayList<>();
+      BigDecimal partialLimit = available.subtract(MIN_REDEMPTION);
+
+      for (int units = 1; units <= targetUnits; ++units) {
+         BigDecimal amount = this.step.multiply(BigDecimal.valueOf(units));
+         if (amount.compareTo(partialLimit) > 0)
+            break;
+         if (amount.compareTo(MIN_REDEMPTION) >= 0) {
+            options.add(new Option(units, redemption(holding, schedule, checkpoint, amount,
+               available, baseValue, pendingInterest[0])));
+         }
+      } // end for each partial redemption amount
+      int wholeUnits = Math.min(targetUnits,
+         available.divide(this.step, 0, FLOOR).intValueExact());
+
+      if (wholeUnits > 0) {
+         options.add(new Option(wholeUnits, redemption(holding, schedule, checkpoint, available,
+            available, baseValue, pendingInterest[0])));
+      }
+
+      // a larger redemption costing no more makes a smaller one pointless
+      options.sort(Comparator.comparingInt(Option::units).reversed()
+         .thenComparing(option -> option.redemption().cost()));
+      List<Option> kept = new ArrayList<>();
+
+      for (Option option : options) {
+         if (kept.isEmpty()
+               || option.redemption().cost().compareTo(kept.getLast().redemption().cost()) < 0) {
+            kept.add(option);
+         }
+      } // end for each option
+
+      return kept;
+   } // end options(Holding, int)
+
+   /**
+    * Evaluate redeeming an amount from a holding.
+    *
+    * @param holding         Holding to redeem from
+    * @param schedule        Composite rates and unit values for the holding's issue month
+    * @param checkpoint      Calculation state before our redemption month, or null
+    * @param amount          Amount to redeem
+    * @param available       Redemption value available in our redemption month
+    * @param baseValue       Value at our horizon without redeeming
+    * @param pendingInterest Interest not yet available due to the early redemption penalty
+    * @return The redemption
+    */
+   private Redemption redemption(Holding holding, CompositeRateSchedule schedule,
+         IBondCheckpoint checkpoint, BigDecimal amount, BigDecimal available,
+         BigDecimal baseValue, BigDecimal pendingInterest) {
+      Function<YearMonth, BigDecimal> monthNet = month -> month.equals(this.redeemMonth)
+         ? holding.netFor(month).subtract(amount) : holding.netFor(month);
+      CalcTxnList txns = this.importer.calcInterestTxns(schedule, monthNet, rates -> {},
+         checkpoint, null, this.horizon);
+      this.evaluations.increment();
+      BigDecimal value = valueAt(txns, checkpoint, holding, amount, this.horizon);
+      BigDecimal penalty = pendingInterest.multiply(amount)
+         .divide(available, DECIMAL64).setScale(2, HALF_UP);
+
+      return new Redemption(holding, amount, baseValue.subtract(value).subtract(amount), penalty);
+   } // end redemption(Holding, CompositeRateSchedule, IBondCheckpoint, BigDecimal, ...)
+
+   /**
+    * Insert a partial plan into a list kept in cost order, keeping only the cheapest.
+    *
+    * @param partials Partial plans in cost order
+    * @param partial  Partial plan to insert
+    * @param maxSize  Number of partial plans to keep
+    */
+   private static void insert(List<Partial> partials, Partial partial, int maxSize) {
+      int idx = partials.size();
+
+      while (idx > 0 && partials.get(idx - 1).cost().compareTo(partial.cost()) > 0) {
+         --idx;
+      }
+      if (idx < maxSize) {
+         partials.add(idx, partial);
+         if (partials.size() > maxSize) {
+            partials.removeLast();
+         }
+      }
+
+   } // end insert(List<Partial>, Partial, int)
+
+   /**
+    * Find the cheapest combinations of options reaching the target, at most one
+    * option per holding, by dynamic programming over steps toward the target.
+    * When no option has a negative cost, partial plans already costing as much as
+    * the costliest complete plan kept are abandoned.
+    *
+    * @param optionsByHolding Options for each holding
+    * @param targetUnits      Steps needed to reach the target amount
+    * @param maxPlans         Number of plans wanted
+    * @return Cheapest partial plans reaching the target, in cost order
+    */
+   private static List<Partial> search(List<List<Option>> optionsByHolding, int targetUnits,
+         int maxPlans) {
+      boolean nonNegative = optionsByHolding.stream().flatMap(List::stream)
+         .allMatch(option -> option.redemption().cost().signum() >= 0);
+      List<List<Partial>> best = new ArrayList<>(targetUnits + 1);
+
+      for (int units = 0; units <= targetUnits; ++units) {
+         best.add(new ArrayList<>());
+      }
+      best.getFirst().add(new Partial(BigDecimal.ZERO, null));
+
+      for (List<Option> options : optionsByHolding) {
+         List<List<Partial>> next = new ArrayList<>(targetUnits + 1);
+         best.forEach(partials -> next.add(new ArrayList<>(partials)));
+         List<Partial> complete = next.getLast();
+
+         for (int units = 0; units < targetUnits; ++units) {
+            for (Option option : options) {
+               List<Partial> reached = next.get(Math.min(targetUnits, units + option.units()));
+
+               for (Partial partial : best.get(units)) {
+                  BigDecimal cost = partial.cost().add(option.redemption().cost());
+                  if (nonNegative && complete.size() == maxPlans
+                        && cost.compareTo(complete.getLast().cost()) >= 0)
+                     break;
+                  insert(reached, new Partial(cost, new Choice(option, partial.last())), maxPlans);
+               } // end for each partial plan
+            } // end for each option
+         } // end for each step toward the target
+         best = next;
+      } // end for each holding
+
+      return best.getLast();
+   } // end search(List<List<Option>>, int, int)
+
+   /**
+    * Plan redemptions raising at least a target amount, at the least cost.
+    *
+    * @param target   Amount to raise
+    * @param maxPlans Number of alternative plans wanted
+    * @return Plans raising the target, cheapest first, or none when the holdings cannot
+    */
+   List<Plan> plan(BigDecimal target, int maxPlans) throws Exception {
+      int targetUnits = target.divide(this.step, 0, CEILING).intValueExact();
+      List<List<Option>> optionsByHolding = new ArrayList<>(this.holdings.size());
+      ExecutorService executor = Executors.newFixedThreadPool(this.importer.workerThreads());
+
+      try {
+         List<Future<List<Option>>> futures = new ArrayList<>(this.holdings.size());
+         for (Holding holding : this.holdings) {
+            futures.add(executor.submit(() -> options(holding, targetUnits)));
+         }
+
+         for (Future<List<Option>> future : futures) {
+            try {
+               optionsByHolding.add(this.importer.cancellation().await(future));
+            } catch (ExecutionException e) {
+               if (e.getCause() instanceof CancellationException ce)
+                  throw ce;
+               throw e;
+            }
+         } // end for each future
+      } finally {
+         executor.shutdownNow();
+      }
+      List<Plan> plans = new ArrayList<>();
+
+      for (Partial partial : search(optionsByHolding, targetUnits, maxPlans)) {
+         List<Redemption> redemptions = new ArrayList<>();
+         for (Choice choice = partial.last(); choice != null; choice = choice.prior()) {
+            redemptions.add(choice.option().redemption());
+         }
+         redemptions.sort(Comparator.comparing(redemption ->
+            redemption.cost().divide(redemption.amount(), DECIMAL64)));
+         plans.add(new Plan(redemptions, redemptions.stream().map(Redemption::amount)
+            .reduce(BigDecimal.ZERO, BigDecimal::add), partial.cost()));
+      } // end for each plan
+
+      return plans;
+   } // end plan(BigDecimal, int)
+
+} // end class RedemptionPlanner
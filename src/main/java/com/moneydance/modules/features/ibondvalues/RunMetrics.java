@@ -0,0 +1,299 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import io.github.jrhillery.moneydance.MdLog;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Phase timers and counters for one run of this extension, with a rolling history
+ * of recent runs kept in Moneydance local storage so a slower run stands out.
+ * Timers and counters may be updated from any thread. Phases running on several
+ * threads at once accumulate the time spent on each thread.
+ */
+class RunMetrics {
+   /** When the run started */
+   private final Instant started = Instant.now();
+   private final long startNanos = System.nanoTime();
+   private final EnumMap<Phase, LongAdder> phaseNanos = new EnumMap<>(Phase.class);
+   private final EnumMap<Counter, LongAdder> counts = new EnumMap<>(Counter.class);
+   /** Number of most recent runs to keep in the history */
+   private final int maxHistory;
+   /** Elapsed time of the run, once finished, otherwise -1 */
+   private volatile long runNanos = -1;
+
+   private static final String HISTORY_KEY = "ibond-values.runMetrics.history";
+   private static final String REC_SEPARATOR = ";";
+   private static final String FIELD_SEPARATOR = ",";
+
+   /** Timed phases of a run, in the order they occur */
+   enum Phase {
+      DOWNLOAD("download"), PARSE("parse"), SCAN("scan"),
+      CALCULATE("calculate"), VERIFY("verify"), COMMIT("commit");
+
+      private final String label;
+
+      Phase(String label) {
+         this.label = label;
+
+      } // end constructor
+
+   } // end enum Phase
+
+   /** Counted quantities of a run */
+   enum Counter {
+      SECURITIES, MONTHS, CALC_TXNS, BYTES_DOWNLOADED
+
+   } // end enum Counter
+
+   /**
+    * Time spent in a phase, from creation until closed.
+    */
+   final class Span implements AutoCloseable {
+      private final Phase phase;
+      private final long beginNanos = System.nanoTime();
+
+      private Span(Phase phase) {
+         this.phase = phase;
+
+      } // end constructor
+
+      public void close() {
+         RunMetrics.this.phaseNanos.get(this.phase).add(System.nanoTime() - this.beginNanos);
+
+      } // end close()
+
+   } // end class Span
+
+   /**
+    * Data record for a past run, with times in microseconds.
+    *
+    * @param started   When the run started, in epoch milliseconds
+    * @param runMicros Elapsed time of the run
+    * @param phases    Time spent in each phase
+    * @param counts    Counted quantities
+    */
+   record HistoryRec(long started, long runMicros, long[] phases, long[] counts) { }
+
+   /**
+    * Sole constructor.
+    *
+    * @param maxHistory Number of most recent runs to keep in the history
+    */
+   RunMetrics(int maxHistory) {
+      this.maxHistory = maxHistory;
+
+      for (Phase phase : Phase.values()) {
+         this.phaseNanos.put(phase, new LongAdder());
+      }
+      for (Counter counter : Counter.values()) {
+         this.counts.put(counter, new LongAdder());
+      }
+
+   } // end constructor
+
+   /**
+    * Start timing a phase. Close the returned span when the phase ends.
+    *
+    * @param phase Phase to time
+    * @return Span to close when the phase ends
+    */
+   Span time(Phase phase) {
+
+      return new Span(phase);
+   } // end time(Phase)
+
+   /**
+    * @param counter Quantity to count
+    * @param amount  Amount to add
+    */
+   void add(Counter counter, long amount) {
+      this.counts.get(counter).add(amount);
+
+   } // end add(Counter, long)
+
+   /**
+    * @param counter Counted quantity
+    * @return Current count
+    */
+   long count(Counter counter) {
+
+      return this.counts.get(counter).sum();
+   } // end count(Counter)
+
+   /**
+    * @param phase Timed phase
+    * @return Time spent in the phase so far, in nanoseconds
+    */
+   long nanos(Phase phase) {
+
+      return this.phaseNanos.get(phase).sum();
+   } // end nanos(Phase)
+
+   /**
+    * Add the phase times and counts of work done for this run elsewhere, like
+    * rates loaded by a background prefetch this run took over.
+    *
+    * @param other Metrics of the other work
+    */
+   void merge(RunMetrics other) {
+      for (Phase phase : Phase.values()) {
+         this.phaseNanos.get(phase).add(other.nanos(phase));
+      }
+      for (Counter counter : Counter.values()) {
+         this.counts.get(counter).add(other.count(counter));
+      }
+
+   } // end merge(RunMetrics)
+
+   /**
+    * Note the run's calculations are finished. Time spent committing afterwards
+    * is still accumulated in the commit phase.
+    */
+   void finish() {
+      this.runNanos = System.nanoTime() - this.startNanos;
+
+   } // end finish()
+
+   /**
+    * {@return This run as a history record}
+    */
+   private HistoryRec toHistoryRec() {
+      long[] phases = new long[Phase.values().length];
+      long[] counters = new long[Counter.values().length];
+
+      for (Phase phase : Phase.values()) {
+         phases[phase.ordinal()] = nanos(phase) / 1000;
+      }
+      for (Counter counter : Counter.values()) {
+         counters[counter.ordinal()] = count(counter);
+      }
+      long elapsed = this.runNanos >= 0 ? this.runNanos : System.nanoTime() - this.startNanos;
+
+      return new HistoryRec(this.started.toEpochMilli(), elapsed / 1000, phases, counters);
+   } // end toHistoryRec()
+
+   /**
+    * Read the history of recent runs.
+    *
+    * @param storage Moneydance local storage
+    * @return Recent runs, oldest first, or an empty list when none are usable
+    */
+   static List<HistoryRec> history(Map<String, String> storage) {
+      String historyStr = storage.get(HISTORY_KEY);
+      List<HistoryRec> history = new ArrayList<>();
+
+      if (historyStr == null || historyStr.isEmpty())
+         return history;
+
+      try {
+         int numPhases = Phase.values().length;
+         int numCounters = Counter.values().length;
+
+         for (String recStr : historyStr.split(REC_SEPARATOR)) {
+            String[] fields = recStr.split(FIELD_SEPARATOR);
+            if (fields.length != 2 + numPhases + numCounters)
+               throw new IllegalArgumentException("Run history record [%s] has %d fields"
+                  .formatted(recStr, fields.length));
+            long[] phases = new long[numPhases];
+            long[] counters = new long[numCounters];
+
+            for (int i = 0; i < numPhases; ++i) {
+               phases[i] = Long.parseLong(fields[2 + i]);
+            }
+            for (int i = 0; i < numCounters; ++i) {
+               counters[i] = Long.parseLong(fields[2 + numPhases + i]);
+            }
+            history.add(new HistoryRec(Long.parseLong(fields[0]),
+               Long.parseLong(fields[1]), phases, counters));
+         } // end for each history record
+      } catch (Exception e) {
+         MdLog.all("Ignoring unusable run history", e);
+         history.clear();
+      }
+
+      return history;
+   } // end history(Map<String, String>)
+
+   /**
+    * Store this run in the history of recent runs, replacing any earlier record
+    * of this run, and keep only the most recent runs.
+    *
+    * @param storage Moneydance local storage
+    */
+   void record(Map<String, String> storage) {
+      List<HistoryRec> history = history(storage);
+      HistoryRec thisRun = toHistoryRec();
+      history.removeIf(rec -> rec.started() == thisRun.started());
+      history.add(thisRun);
+      StringJoiner historyStr = new StringJoiner(REC_SEPARATOR);
+
+      for (HistoryRec rec : history.subList(Math.max(0, history.size() - this.maxHistory),
+            history.size())) {
+         StringJoiner recStr = new StringJoiner(FIELD_SEPARATOR);
+         recStr.add(Long.toString(rec.started())).add(Long.toString(rec.runMicros()));
+
+         for (long phase : rec.phases()) {
+            recStr.add(Long.toString(phase));
+         }
+         for (long count : rec.counts()) {
+            recStr.add(Long.toString(count));
+         }
+         historyStr.add(recStr.toString());
+      } // end for each kept record
+      storage.put(HISTORY_KEY, historyStr.toString());
+
+   } // end record(Map<String, String>)
+
+   /**
+    * @param nanos Elapsed nanoseconds
+    * @return Compact rendering in seconds or milliseconds
+    */
+   private static String duration(long nanos) {
+
+      return nanos >= 1_000_000_000 ? "%.2f s".formatted(nanos / 1e9)
+         : "%.0f ms".formatted(nanos / 1e6);
+   } // end duration(long)
+
+   /**
+    * Summarize this run, comparing its elapsed time with the median of earlier runs.
+    *
+    * @param priorRuns Earlier runs, oldest first
+    * @return Compact one line summary
+    */
+   String summary(List<HistoryRec> priorRuns) {
+      long elapsed = this.runNanos >= 0 ? this.runNanos : System.nanoTime() - this.startNanos;
+      StringJoiner phases = new StringJoiner(", ");
+
+      for (Phase phase : Phase.values()) {
+         long nanos = nanos(phase);
+
+         if (nanos > 0) {
+            String extra = phase == Phase.DOWNLOAD
+               ? " (%,d KB)".formatted((count(Counter.BYTES_DOWNLOADED) + 1023) / 1024) : "";
+            phases.add(phase.label + ' ' + duration(nanos) + extra);
+         }
+      } // end for each phase
+      StringBuilder summary = new StringBuilder("Run took ").append(duration(elapsed));
+
+      if (!priorRuns.isEmpty()) {
+         long[] priorMicros =
+            priorRuns.stream().mapToLong(HistoryRec::runMicros).sorted().toArray();
+         summary.append(" (median of last %d: %s)".formatted(priorMicros.length,
+            duration(priorMicros[priorMicros.length / 2] * 1000)));
+      }
+      if (phases.length() > 0) {
+         summary.append(": ").append(phases);
+      }
+
+      return summary.append("; %,d securities, %,d months simulated, %,d payments calculated"
+         .formatted(count(Counter.SECURITIES), count(Counter.MONTHS),
+            count(Counter.CALC_TXNS))).toString();
+   } // end summary(List<HistoryRec>)
+
+} // end class RunMetrics
@@ -0,0 +1,365 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.PENALTY_MONTHS;
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.PENALTY_YEARS;
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.SEMIANNUAL_MONTHS;
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.captureCheckpoint;
+import static java.math.MathContext.DECIMAL64;
+import static java.math.RoundingMode.HALF_UP;
+
+/**
+ * Interest calculation kernel that keeps balances in cents held in longs and months as
+ * indexes since issue, producing the same transactions as the BigDecimal calculations
+ * in IBondImporter digit for digit. The monthly division of the eligible balance by the
+ * unit value is rounded to 16 significant digits, half even, exactly as with DECIMAL64,
+ * using long division. Payment transactions and their memos are only created for months
+ * that pay interest. The rare months with deposits or redemptions, and any value beyond
+ * the range of these long calculations, use BigDecimal arithmetic. Amounts that are not
+ * whole cents cause an ArithmeticException, so callers can use the BigDecimal path.
+ * Instances hold mutable calculation state, so use a new instance for each calculation.
+ */
+final class ScaledInterestKernel {
+   private final CompositeRateSchedule schedule;
+   private final Function<YearMonth, BigDecimal> monthNet;
+   private final CancellationToken cancellation;
+   private final CalcTxnList iBondIntTxns = new CalcTxnList();
+   /** Months since issue when the bond stops losing the last 3 months of interest */
+   private final int penaltyFreeIdx = PENALTY_YEARS * 12;
+   /** Interest payable in cents, indexed by months since issue */
+   private long[] payCents;
+   /** Redemption value in cents after each month's update, indexed by months since issue */
+   private long[] endingCents;
+   private long redemptionCents = 0;
+   /** Scale the BigDecimal calculations would have for the redemption value */
+   private int redemptionScale = 0;
+   private long eligibleCents = 0;
+   /** Scale the BigDecimal calculations would have for the eligible balance */
+   private int eligibleScale = 0;
+   private long unitValCents;
+   /** Months since issue of the current balances */
+   private int monthIdx = 0;
+   /** Remainder of the latest long division */
+   private long remainder = 0;
+
+   /** DECIMAL64 precision */
+   private static final int QUOTIENT_DIGITS = 16;
+   /** Most digits a quotient may be scaled by in one long division step */
+   private static final int DIVISION_STEP_DIGITS = 12;
+   /** Largest divisor for long division steps */
+   private static final long MAX_DIVISOR = 1_000_000;
+   private static final long[] POW10 = new long[19];
+
+   static {
+      POW10[0] = 1;
+
+      for (int i = 1; i < POW10.length; ++i) {
+         POW10[i] = POW10[i - 1] * 10;
+      }
+   } // end static initializer
+
+   /**
+    * Sole constructor.
+    *
+    * @param schedule     Composite rates and unit values for the bond's issue month
+    * @param monthNet     Function providing total net deposits and redemptions for a month
+    * @param cancellation Token checked at each semiannual period
+    */
+   ScaledInterestKernel(CompositeRateSchedule schedule,
+         Function<YearMonth, BigDecimal> monthNet, CancellationToken cancellation) {
+      this.schedule = schedule;
+      this.monthNet = monthNet;
+      this.cancellation = cancellation;
+      this.unitValCents = schedule.unitValueCents(0);
+
+   } // end constructor
+
+   /**
+    * @param value Decimal value
+    * @return Value in cents
+    * @throws ArithmeticException When the value has more than 2 places past the decimal point
+    */
+   private static long toCents(BigDecimal value) {
+      if (value.scale() > 2)
+         throw new ArithmeticException("Value %s is not in whole cents".formatted(value));
+
+      return value.movePointRight(2).longValueExact();
+   } // end toCents(BigDecimal)
+
+   /**
+    * @param cents Value in cents
+    * @param scale Scale the BigDecimal calculations would have, at most 2
+    * @return Decimal value with that scale
+    */
+   private static BigDecimal toDecimal(long cents, int scale) {
+
+      return BigDecimal.valueOf(cents, 2).setScale(scale);
+   } // end toDecimal(long, int)
+
+   /**
+    * @param value Positive value
+    * @return Number of decimal digits in the value
+    */
+   private static int numDigits(long value) {
+      int digits = 1;
+
+      while (digits < POW10.length && value >= POW10[digits]) {
+         ++digits;
+      }
+
+      return digits;
+   } // end numDigits(long)
+
+   /**
+    * Divide, scaling the quotient by a power of ten, using long division in steps
+    * small enough not to overflow. Store the remainder in our remainder field.
+    *
+    * @param dividend Non-negative dividend
+    * @param divisor  Positive divisor less than MAX_DIVISOR
+    * @param scale    Power of ten to scale the quotient by
+    * @return Truncated scaled quotient
+    */
+   private long scaledDivide(long dividend, long divisor, int scale) {
+      long q = dividend / divisor;
+      long r = dividend % divisor;
+
+      for (int remaining = scale; remaining > 0; ) {
+         int step = Math.min(remaining, DIVISION_STEP_DIGITS);
+         long scaledRemainder = r * POW10[step];
+         q = Math.addExact(Math.multiplyExact(q, POW10[step]), scaledRemainder / divisor);
+         r = scaledRemainder % divisor;
+         remaining -= step;
+      } // end for each division step
+      this.remainder = r;
+
+      return q;
+   } // end scaledDivide(long, long, int)
+
+   /**
+    * Calculate a month's interest the way the BigDecimal calculations do: divide the
+    * eligible balance by the unit value to 16 significant digits rounding half even,
+    * multiply by the change in unit value, then round to cents half up.
+    *
+    * @param eligible  Balance eligible to earn interest, in cents
+    * @param unitVal   Unit value, in cents
+    * @param unitDelta Change in unit value during the month, in cents
+    * @return Interest in cents
+    */
+   private long interestCents(long eligible, long unitVal, long unitDelta) {
+      if (eligible == 0 || unitDelta == 0)
+         return 0;
+
+      if (eligible > 0 && unitDelta > 0 && unitVal > 0 && unitVal < MAX_DIVISOR) {
+         try {
+            // scale the quotient to 16 digits, or 17 when the estimate is one high
+            int scale = QUOTIENT_DIGITS - numDigits(eligible) + numDigits(unitVal);
+            long units = scaledDivide(eligible, unitVal, scale);
+
+            if (units >= POW10[QUOTIENT_DIGITS] && scale > 0) {
+               units = scaledDivide(eligible, unitVal, --scale);
+            }
+            if (scale >= 0 && scale < POW10.length && units < POW10[QUOTIENT_DIGITS]) {
+               long twiceRemainder = 2 * this.remainder;
+
+               if (twiceRemainder > unitVal || twiceRemainder == unitVal && (units & 1) != 0) {
+                  ++units;
+               }
+               long product = Math.multiplyExact(unitDelta, units);
+               long interest = product / POW10[scale];
+
+               if (scale > 0 && 2 * (product % POW10[scale]) >= POW10[scale]) {
+                  ++interest;
+               }
+
+               return interest;
+            }
+         } catch (ArithmeticException e) {
+            // beyond long range; use BigDecimal arithmetic below
+         }
+      }
+      BigDecimal eligibleUnits =
+         BigDecimal.valueOf(eligible, 2).divide(BigDecimal.valueOf(unitVal, 2), DECIMAL64);
+
+      return toCents(BigDecimal.valueOf(unitDelta, 2).multiply(eligibleUnits)
+         .setScale(2, HALF_UP));
+   } // end interestCents(long, long, long)
+
+   /**
+    * Update current balances for a specified month.
+    *
+    * @param idx Months since issue of the month to add
+    */
+   private void updateBalances(int idx) {
+      // Start by adding calculated interest for this month
+      long startingBal = Math.addExact(this.redemptionCents, this.payCents[idx]);
+
+      if (this.payCents[idx] != 0) {
+         this.redemptionScale = Math.max(this.redemptionScale, 2);
+      }
+
+      // Add redemption total (typically zero or negative value) for this month
+      BigDecimal change = this.monthNet.apply(this.schedule.month(idx));
+      long changeCents = toCents(change);
+      this.redemptionCents = Math.addExact(startingBal, changeCents);
+      this.redemptionScale = Math.max(this.redemptionScale, change.scale());
+
+      if (changeCents != 0 && startingBal != 0) {
+         // reduce the interest-eligible balance by the portion of the starting balance redeemed
+         BigDecimal factor = BigDecimal.ONE.add(BigDecimal.valueOf(changeCents, 2)
+            .divide(BigDecimal.valueOf(startingBal, 2), DECIMAL64));
+         this.eligibleCents = toCents(BigDecimal.valueOf(this.eligibleCents, 2)
+            .multiply(factor).setScale(2, HALF_UP));
+         this.eligibleScale = 2;
+      }
+      this.endingCents[idx] = this.redemptionCents;
+
+   } // end updateBalances(int)
+
+   /**
+    * Generate monthly (non-compounding) interest transactions within a 6-month rate period.
+    */
+   private void addInterestTxns() {
+      for (int m = 0; m < SEMIANNUAL_MONTHS; ++m) {
+         ++this.monthIdx;
+         long interest = interestCents(this.eligibleCents, this.unitValCents,
+            this.schedule.unitValueCents(this.monthIdx)
+               - this.schedule.unitValueCents(this.monthIdx - 1));
+
+         if (interest > 0) {
+            int payIdx = this.monthIdx < this.penaltyFreeIdx
+               ? Math.min(this.monthIdx + PENALTY_MONTHS, this.penaltyFreeIdx) : this.monthIdx;
+            String memo = CalcTxn.interestMemo(this.schedule.month(this.monthIdx - 1));
+            this.iBondIntTxns.add(new CalcTxn(this.schedule.month(payIdx),
+               BigDecimal.valueOf(interest, 2), memo));
+            this.payCents[payIdx] += interest;
+         }
+
+         updateBalances(this.monthIdx);
+      } // end for non-compounding months
+      this.unitValCents = this.schedule.unitValueCents(this.monthIdx);
+
+   } // end addInterestTxns()
+
+   /**
+    * {@return Current balances in the form the BigDecimal calculations would have}
+    */
+   private IBondBalanceRec toBalanceRec() {
+      IBondBalanceRec curBals = new IBondBalanceRec(
+         toDecimal(this.redemptionCents, this.redemptionScale),
+         this.schedule.unitValue(this.monthIdx), this.schedule.month(this.monthIdx));
+      curBals.eligibleBal(toDecimal(this.eligibleCents, this.eligibleScale));
+
+      return curBals;
+   } // end toBalanceRec()
+
+   /**
+    * Compute interest payment transactions, optionally resuming from a checkpoint.
+    *
+    * @param displayRates    Consumer of interest rate message producer lambdas
+    * @param resumeFrom      Usable checkpoint to resume from, or null to start at issue
+    * @param checkpointLimit Capture a checkpoint at the latest semiannual boundary
+    *                        not after this month, or null to skip capture
+    * @return Collection of calculated interest payment transactions
+    * @throws ArithmeticException When an amount is not in whole cents or out of range
+    */
+   CalcTxnList calcInterestTxns(Consumer<Supplier<String>> displayRates,
+         IBondCheckpoint resumeFrom, YearMonth checkpointLimit) {
+
+      return calcInterestTxns(displayRates, resumeFrom, checkpointLimit, null);
+   } // end calcInterestTxns(Consumer, IBondCheckpoint, YearMonth)
+
+   /**
+    * Compute interest payment transactions payable no later than a horizon month,
+    * optionally resuming from a checkpoint. Balance arrays only cover the months
+    * simulated for the horizon.
+    *
+    * @param displayRates    Consumer of interest rate message producer lambdas
+    * @param resumeFrom      Usable checkpoint to resume from, or null to start at issue
+    * @param checkpointLimit Capture a checkpoint at the latest semiannual boundary
+    *                        not after this month, or null to skip capture
+    * @param horizon         Latest payment month wanted, or null for all payments
+    * @return Collection of calculated interest payment transactions
+    * @throws ArithmeticException When an amount is not in whole cents or out of range
+    */
+   CalcTxnList calcInterestTxns(Consumer<Supplier<String>> displayRates,
+         IBondCheckpoint resumeFrom, YearMonth checkpointLimit, YearMonth horizon) {
+      YearMonth issueMonth = this.schedule.issueMonth();
+      int issueOrdinal = RateTable.monthOrdinal(issueMonth);
+      int startPeriod = 0;
+      int endPeriod = IBondImporter.endPeriod(this.schedule, horizon);
+      int numMonths = Math.max(endPeriod * SEMIANNUAL_MONTHS,
+         resumeFrom == null ? 0 : RateTable.monthOrdinal(resumeFrom.month()) - issueOrdinal);
+      this.payCents = new long[numMonths + PENALTY_MONTHS + 1];
+      this.endingCents = new long[this.payCents.length];
+
+      if (resumeFrom != null) {
+         this.monthIdx = RateTable.monthOrdinal(resumeFrom.month()) - issueOrdinal;
+         startPeriod = this.monthIdx / SEMIANNUAL_MONTHS;
+         this.redemptionCents = toCents(resumeFrom.redemptionVal());
+         this.redemptionScale = resumeFrom.redemptionVal().scale();
+         this.eligibleCents = toCents(resumeFrom.eligibleBal());
+         this.eligibleScale = resumeFrom.eligibleBal().scale();
+         this.unitValCents = toCents(resumeFrom.unitVal());
+
+         for (CalcTxn txn : resumeFrom.copyPendingTxns()) {
+            this.iBondIntTxns.add(txn);
+            this.payCents[RateTable.monthOrdinal(txn.payMonth()) - issueOrdinal] +=
+               toCents(txn.payAmount());
+         }
+      } else {
+         BigDecimal issueVal = this.monthNet.apply(issueMonth);
+         this.redemptionCents = toCents(issueVal);
+         this.redemptionScale = issueVal.scale();
+         this.eligibleCents = this.redemptionCents;
+         this.eligibleScale = this.redemptionScale;
+      }
+      int limitIdx = checkpointLimit == null ? -1
+         : RateTable.monthOrdinal(checkpointLimit) - issueOrdinal;
+
+      for (int period = startPeriod; period < endPeriod; ++period) {
+         this.cancellation.checkCancelled();
+         BigDecimal compositeRate = this.schedule.compositeRate(period);
+         YearMonth periodStart = this.schedule.month(this.monthIdx);
+         displayRates.accept(() -> "For I bonds issued %s, starting %s composite rate is %s%%"
+            .formatted(issueMonth, periodStart, compositeRate.scaleByPowerOfTen(2)));
+         addInterestTxns();
+         // compound semiannually, including interest not yet available
+         long pendingCents = 0;
+
+         for (int idx = this.monthIdx + 1; idx <= this.monthIdx + PENALTY_MONTHS; ++idx) {
+            pendingCents += this.payCents[idx];
+         }
+         this.eligibleCents = Math.addExact(this.redemptionCents, pendingCents);
+         this.eligibleScale = pendingCents != 0
+            ? Math.max(this.redemptionScale, 2) : this.redemptionScale;
+
+         if (limitIdx >= this.monthIdx && (period + 1 == endPeriod
+               || this.monthIdx + SEMIANNUAL_MONTHS > limitIdx)) {
+            this.iBondIntTxns.checkpoint(captureCheckpoint(
+               toBalanceRec(), this.schedule, period, this.iBondIntTxns));
+         }
+      } // end for each semiannual period
+
+      if (endPeriod == this.schedule.periods()) {
+         for (int idx = this.monthIdx + 1; idx <= this.monthIdx + PENALTY_MONTHS; ++idx) {
+            if (idx < this.payCents.length && this.payCents[idx] != 0) {
+               updateBalances(idx);
+            }
+         } // end for each tailing month
+      }
+      if (horizon != null) {
+         // payments later than our simulation are incomplete or lack balances
+         this.iBondIntTxns.truncateAfter(horizon);
+      }
+      this.iBondIntTxns.forEach(txn -> txn.endingBal(BigDecimal.valueOf(
+         this.endingCents[RateTable.monthOrdinal(txn.payMonth()) - issueOrdinal], 2)));
+
+      return this.iBondIntTxns;
+   } // end calcInterestTxns(Consumer, IBondCheckpoint, YearMonth, YearMonth)
+
+} // end class ScaledInterestKernel
@@ -46,11 +46,28 @@ public class TxnHandler {
         return value.movePointRight(decimalPlaces).longValueExact();
     } // end asLong(BigDecimal, Account)
 
+    /**
+     * {@return Investment account}
+     */
+    public Account investAccount() { return this.investAccount; }
+
+    /**
+     * {@return Investment subaccount for security generating interest}
+     */
+    public Account securityAccount() { return this.securityAccount; }
+
+    /**
+     * {@return Interest payment transaction details}
+     */
+    public CalcTxn txnRec() { return this.txnRec; }
+
     /**
      * Apply the stored update by creating a parent transaction in the
      * investment account with splits for a category and a security.
+     *
+     * @return The new parent transaction
      */
-    public void applyUpdate() {
+    public ParentTxn applyUpdate() {
         ParentTxn pTxn = new ParentTxn(this.book);
         pTxn.setEditingMode();
         pTxn.setAccount(this.investAccount);
@@ -74,6 +91,7 @@ public class TxnHandler {
         invFields.storeFields(pTxn);
         pTxn.syncItem();
 
+        return pTxn;
     } // end applyUpdate()
 
 } // end class TxnHandler
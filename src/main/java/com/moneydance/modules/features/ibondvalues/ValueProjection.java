@@ -0,0 +1,325 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.BatchValues.Holding;
+import com.moneydance.modules.features.ibondvalues.IBondImporter.IBondRateRec;
+import io.github.jrhillery.moneydance.MduExcepcionito;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.INTEREST_RATE_DIGITS;
+import static com.moneydance.modules.features.ibondvalues.IBondImporter.SEMIANNUAL_MONTHS;
+
+/**
+ * Monte Carlo projection of I bond holding values past the latest announced rates.
+ * Each path extends the rate history with simulated semiannual inflation rates drawn
+ * from an inflation model, keeping the latest fixed rate, and values every holding
+ * with the usual interest engine, so compounding and early redemption penalties
+ * follow the same rules as recorded interest payments. Paths run in parallel, and
+ * each path draws from its own generator split from the seed in path order, so
+ * results depend only on the seed and not on the number of threads.
+ */
+class ValueProjection {
+   /** Percentiles of portfolio value reported for each month */
+   static final int[] PERCENTILES = {5, 25, 50, 75, 95};
+
+   private final IBondImporter importer;
+   private final RateTable baseTable;
+   private final InflationModel model;
+   /** Holdings to value */
+   private final List<Holding> holdings;
+   /** Month each holding was issued, indexed like our holdings */
+   private final YearMonth[] issueMonths;
+   /** First month to value */
+   private final YearMonth startMonth;
+   /** Number of months to value */
+   private final int numMonths;
+
+   /**
+    * Source of simulated semiannual inflation rates.
+    */
+   sealed interface InflationModel permits Bootstrap, AutoRegressive {
+
+      /**
+       * @param previous Prior semiannual inflation rate
+       * @param random   Generator for this path
+       * @return Next semiannual inflation rate, with at most 4 places past the decimal point
+       */
+      BigDecimal next(BigDecimal previous, SplittableRandom random);
+
+   } // end interface InflationModel
+
+   /**
+    * Historical bootstrap, drawing each rate from the announced inflation rates.
+    *
+    * @param history Announced semiannual inflation rates
+    */
+   record Bootstrap(BigDecimal[] history) implements InflationModel {
+
+      public BigDecimal next(BigDecimal previous, SplittableRandom random) {
+
+         return this.history[random.nextInt(this.history.length)];
+      } // end next(BigDecimal, SplittableRandom)
+
+   } // end record Bootstrap
+
+   /**
+    * First order autoregressive model, where each rate reverts toward a long run mean
+    * plus a normally distributed shock.
+    *
+    * @param mean        Long run mean semiannual inflation rate
+    * @param persistence Fraction of the prior deviation from the mean carried forward
+    * @param volatility  Standard deviation of the shocks
+    */
+   record AutoRegressive(double mean, double persistence, double volatility)
+         implements InflationModel {
+
+      public BigDecimal next(BigDecimal previous, SplittableRandom random) {
+         double rate = this.mean + this.persistence * (previous.doubleValue() - this.mean)
+            + this.volatility * random.nextGaussian();
+
+         return BigDecimal.valueOf(rate).setScale(INTEREST_RATE_DIGITS, RoundingMode.HALF_EVEN);
+      } // end next(BigDecimal, SplittableRandom)
+
+   } // end record AutoRegressive
+
+   /**
+    * Data record for one month's portfolio value percentiles.
+    *
+    * @param month       Month valued
+    * @param percentiles Portfolio value at each of our percentiles
+    */
+   record Band(YearMonth month, BigDecimal[] percentiles) { }
+
+   /**
+    * Sole constructor.
+    *
+    * @param importer   Importer with rates loaded
+    * @param model      Source of simulated inflation rates
+    * @param holdings   Holdings to value
+    * @param startMonth First month to value
+    * @param numMonths  Number of months to value
+    * @throws MduExcepcionito Problem with a holding's ticker symbol
+    */
+   ValueProjection(IBondImporter importer, InflationModel model, List<Holding> holdings,
+         YearMonth startMonth, int numMonths) throws MduExcepcionito {
+      this.importer = importer;
+      this.baseTable = importer.getRateTable();
+      this.model = model;
+      this.holdings = List.copyOf(holdings);
+      this.issueMonths = new YearMonth[holdings.size()];
+      this.startMonth = startMonth;
+      this.numMonths = numMonths;
+
+      for (int idx = 0; idx < this.issueMonths.length; ++idx) {
+         this.issueMonths[idx] = importer.getDateForTicker(this.holdings.get(idx).ticker());
+      }
+
+   } // end constructor
+
+   /**
+    * Create an inflation model fit to a rate history.
+    *
+    * @param name  Model name, bootstrap or parametric
+    * @param table Rate history to fit
+    * @return The inflation model
+    */
+   static InflationModel model(String name, RateTable table) {
+
+      return switch (name) {
+         case "bootstrap" -> new Bootstrap(table.rates().values().stream()
+            .map(IBondRateRec::inflationRate).toArray(BigDecimal[]::new));
+         case "parametric" -> fitAutoRegressive(table.rates().values().stream()
+            .mapToDouble(rec -> rec.inflationRate().doubleValue()).toArray());
+         default -> throw new IllegalArgumentException(
+            "Unknown inflation model [%s]; use bootstrap or parametric".formatted(name));
+      };
+   } // end model(String, RateTable)
+
+   /**
+    * Fit a first order autoregressive model by least squares.
+    *
+    * @param rates Successive semiannual inflation rates
+    * @return Fitted model
+    */
+   private static AutoRegressive fitAutoRegressive(double[] rates) {
+      double mean = Arrays.stream(rates).average().orElse(0);
+      double cov = 0, var = 0;
+
+      for (int i = 1; i < rates.length; ++i) {
+         cov += (rates[i - 1] - mean) * (rates[i] - mean);
+         var += (rates[i - 1] - mean) * (rates[i - 1] - mean);
+      }
+      double persistence = var > 0 ? cov / var : 0;
+      double sumSq = 0;
+
+      for (int i = 1; i < rates.length; ++i) {
+         double shock = rates[i] - mean - persistence * (rates[i - 1] - mean);
+         sumSq += shock * shock;
+      }
+      double volatility = rates.length > 2 ? Math.sqrt(sumSq / (rates.length - 2)) : 0;
+
+      return new AutoRegressive(mean, persistence, volatility);
+   } // end fitAutoRegressive(double[])
+
+   /**
+    * Extend a rate history with future semiannual rates, keeping its latest fixed rate.
+    *
+    * @param baseTable     Rate history to extend
+    * @param throughMonth  Last month needing rates
+    * @param nextInflation Function providing each inflation rate from the prior one
+    * @return Unpublished rate table of the history followed by the future rates
+    */
+   static RateTable extendRates(RateTable baseTable, YearMonth throughMonth,
+         UnaryOperator<BigDecimal> nextInflation) {
+      TreeMap<YearMonth, IBondRateRec> futureRates = new TreeMap<>();
+      IBondRateRec latest = baseTable.rates().lastEntry().getValue();
+      BigDecimal inflationRate = latest.inflationRate();
+
+      for (YearMonth month = latest.startMonth().plusMonths(SEMIANNUAL_MONTHS);
+            !month.isAfter(throughMonth); month = month.plusMonths(SEMIANNUAL_MONTHS)) {
+         inflationRate = nextInflation.apply(inflationRate);
+         futureRates.put(month, new IBondRateRec(inflationRate, latest.fixedRate(), month));
+      }
+
+      return baseTable.projection(futureRates);
+   } // end extendRates(RateTable, YearMonth, UnaryOperator<BigDecimal>)
+
+   /**
+    * {@return Last month to value}
+    */
+   private YearMonth endMonth() {
+
+      return this.startMonth.plusMonths(this.numMonths - 1);
+   } // end endMonth()
+
+   /**
+    * Simulate one inflation path and value every holding along it.
+    *
+    * @param random Generator for this path
+    * @return Portfolio value in each month
+    */
+   double[] simulatePath(SplittableRandom random) {
+      RateTable pathTable = extendRates(this.baseTable, endMonth(),
+         rate -> this.model.next(rate, random));
+      double[] values = new double[this.numMonths];
+
+      for (int idx = 0; idx < this.issueMonths.length; ++idx) {
+         Holding holding = this.holdings.get(idx);
+         CalcTxnList txns = this.importer.calcInterestTxns(
+            pathTable.compositeSchedule(this.issueMonths[idx]), holding::netFor, rates -> {},
+            null, null, endMonth());
+         addValues(holding, txns, values);
+      } // end for each holding
+
+      return values;
+   } // end simulatePath(SplittableRandom)
+
+   /**
+    * Add one holding's value in each month to the portfolio values.
+    *
+    * @param holding Holding to value
+    * @param txns    Calculated interest payments for the holding
+    * @param values  Portfolio value in each month
+    */
+   private void addValues(Holding holding, CalcTxnList txns, double[] values) {
+      TreeMap<YearMonth, BigDecimal> balances = new TreeMap<>();
+      txns.forEach(txn -> balances.put(txn.payMonth(), txn.endingBal()));
+      YearMonth month = this.startMonth;
+
+      for (int idx = 0; idx < this.numMonths; ++idx, month = month.plusMonths(1)) {
+         Map.Entry<YearMonth, BigDecimal> last = balances.floorEntry(month);
+         BigDecimal value = last == null ? holding.netBetween(null, month)
+            : last.getValue().add(holding.netBetween(last.getKey(), month));
+         values[idx] += value.doubleValue();
+      } // end for each month
+
+   } // end addValues(Holding, CalcTxnList, double[])
+
+   /**
+    * Simulate inflation paths in parallel and summarize portfolio values by month.
+    *
+    * @param numPaths Number of inflation paths to simulate
+    * @param seed     Seed making the results reproducible
+    * @param threads  Number of threads to use
+    * @return Portfolio value percentiles for each month
+    */
+   List<Band> project(int numPaths, long seed, int threads) throws Exception {
+      SplittableRandom root = new SplittableRandom(seed);
+      SplittableRandom[] randoms = new SplittableRandom[numPaths];
+
+      for (int path = 0; path < numPaths; ++path) {
+         randoms[path] = root.split();
+      }
+      double[][] pathValues = new double[numPaths][];
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+      try {
+         List<Future<?>> futures = new ArrayList<>(threads);
+         for (int t = 0; t < threads; ++t) {
+            int first = t;
+            futures.add(executor.submit(() -> {
+               for (int path = first; path < numPaths; path += threads) {
+                  pathValues[path] = simulatePath(randoms[path]);
+               }
+            }));
+         } // end for each thread
+
+         for (Future<?> future : futures) {
+            try {
+               this.importer.cancellation().await(future);
+            } catch (ExecutionException e) {
+               if (e.getCause() instanceof CancellationException ce)
+                  throw ce;
+               throw e;
+            }
+         } // end for each future
+      } finally {
+         executor.shutdownNow();
+      }
+
+      return bands(pathValues);
+   } // end project(int, long, int)
+
+   /**
+    * @param pathValues Portfolio value in each month for each path
+    * @return Portfolio value percentiles for each month
+    */
+   private List<Band> bands(double[][] pathValues) {
+      List<Band> bands = new ArrayList<>(this.numMonths);
+      double[] monthValues = new double[pathValues.length];
+      YearMonth month = this.startMonth;
+
+      for (int idx = 0; idx < this.numMonths; ++idx, month = month.plusMonths(1)) {
+         for (int path = 0; path < pathValues.length; ++path) {
+            monthValues[path] = pathValues[path][idx];
+         }
+         Arrays.sort(monthValues);
+         BigDecimal[] percentiles = new BigDecimal[PERCENTILES.length];
+
+         for (int p = 0; p < PERCENTILES.length; ++p) {
+            // nearest rank
+            int rank = (int) Math.ceil(PERCENTILES[p] / 100.0 * monthValues.length);
+            percentiles[p] = BigDecimal.valueOf(monthValues[Math.max(rank, 1) - 1])
+               .setScale(2, RoundingMode.HALF_EVEN);
+         }
+         bands.add(new Band(month, percentiles));
+      } // end for each month
+
+      return bands;
+   } // end bands(double[][])
+
+} // end class ValueProjection
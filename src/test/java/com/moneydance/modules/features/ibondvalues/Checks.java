@@ -0,0 +1,34 @@
+package com.moneydance.modules.features.ibondvalues;
+
+/**
+ * Test helper for the conditions our tests verify, failing with a description of
+ * what did not hold.
+ */
+public class Checks {
+
+    /**
+     * Verify a condition and report it passed.
+     *
+     * @param condition   Condition that must hold
+     * @param description Description of the condition
+     */
+    public static void check(boolean condition, String description) {
+        if (!condition)
+            throw new IllegalStateException("Failed: " + description);
+        System.out.println("Passed: " + description);
+
+    } // end check(boolean, String)
+
+    /**
+     * Verify a condition quietly, as in loops checking many cases.
+     *
+     * @param condition Condition that must hold
+     * @param problem   Description of the problem when it does not
+     */
+    public static void require(boolean condition, String problem) {
+        if (!condition)
+            throw new IllegalStateException(problem);
+
+    } // end require(boolean, String)
+
+} // end class Checks
@@ -0,0 +1,125 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.infinitekind.moneydance.model.Account;
+import com.infinitekind.moneydance.model.AccountBook;
+import com.infinitekind.moneydance.model.CurrencyType;
+import com.infinitekind.moneydance.model.InvestFields;
+import com.infinitekind.moneydance.model.InvestTxnType;
+import com.infinitekind.moneydance.model.ParentTxn;
+import io.github.jrhillery.moneydance.MdUtil;
+
+import java.time.LocalDate;
+
+/**
+ * Test helper building an in-memory Moneydance book of investment accounts holding
+ * I bond securities, with purchases, sales and recorded interest payments.
+ */
+public class FixtureBook {
+    private final AccountBook book = AccountBook.fakeAccountBook();
+
+    /**
+     * {@return In-memory Moneydance account book}
+     */
+    public AccountBook book() {
+
+        return this.book;
+    } // end book()
+
+    /**
+     * @param name Investment account name
+     * @return New investment account
+     */
+    public Account addInvestAccount(String name) {
+        Account investAccount = Account.makeAccount(this.book,
+                Account.AccountType.INVESTMENT, this.book.getRootAccount());
+        investAccount.setAccountName(name);
+        investAccount.syncItem();
+
+        return investAccount;
+    } // end addInvestAccount(String)
+
+    /**
+     * @param investAccount Investment account to hold the security
+     * @param name          Security account name
+     * @return New security account
+     */
+    public Account addSecurityAccount(Account investAccount, String name) {
+        Account securityAccount = Account.makeAccount(this.book,
+                Account.AccountType.SECURITY, investAccount);
+        securityAccount.setAccountName(name);
+        securityAccount.syncItem();
+
+        return securityAccount;
+    } // end addSecurityAccount(Account, String)
+
+    /**
+     * Add an I bond security and an account holding it, which calculations can find.
+     *
+     * @param investAccount Investment account to hold the security
+     * @param name          Security name, also used for its security account
+     * @param ticker        Ticker symbol in the format IBondYYYYMM
+     * @return New security account
+     */
+    public Account addIBondSecurity(Account investAccount, String name, String ticker) {
+        CurrencyType security = new CurrencyType(this.book.getCurrencies());
+        security.setEditingMode();
+        security.setCurrencyType(CurrencyType.Type.SECURITY);
+        security.setName(name);
+        security.setTickerSymbol(ticker);
+        security.setDecimalPlaces(2);
+        security.syncItem();
+        Account securityAccount = addSecurityAccount(investAccount, name);
+        securityAccount.setCurrencyType(security);
+        securityAccount.syncItem();
+
+        return securityAccount;
+    } // end addIBondSecurity(Account, String, String)
+
+    /**
+     * Record a purchase or sale of I bond shares at the fixed price.
+     *
+     * @param investAccount   Investment account
+     * @param securityAccount Security account traded
+     * @param txnType         BUY or SELL
+     * @param date            Date of the transaction
+     * @param cents           Amount in cents
+     * @return The new parent transaction
+     */
+    public ParentTxn recordTrade(Account investAccount, Account securityAccount,
+            InvestTxnType txnType, LocalDate date, long cents) {
+        ParentTxn pTxn = new ParentTxn(this.book);
+        pTxn.setEditingMode();
+        pTxn.setAccount(investAccount);
+
+        InvestFields invFields = new InvestFields();
+        invFields.txnType = txnType;
+        invFields.date = MdUtil.convLocalToDateInt(date);
+        invFields.taxDate = invFields.date;
+        invFields.shares = cents;
+        invFields.hasShares = true;
+        invFields.amount = cents;
+        invFields.hasAmount = true;
+        invFields.price = TxnHandler.FIXED_PRICE;
+        invFields.hasPrice = true;
+        invFields.security = securityAccount;
+        invFields.hasSecurity = true;
+        invFields.storeFields(pTxn);
+        pTxn.syncItem();
+
+        return pTxn;
+    } // end recordTrade(Account, Account, InvestTxnType, LocalDate, long)
+
+    /**
+     * Record an interest payment the way committing a staged payment does.
+     *
+     * @param investAccount   Investment account
+     * @param securityAccount Security account paid
+     * @param txn             Interest payment transaction details
+     * @return The new parent transaction
+     */
+    public ParentTxn recordInterest(Account investAccount, Account securityAccount, CalcTxn txn) {
+
+        return new TxnHandler(this.book, investAccount, securityAccount, txn).applyUpdate();
+    } // end recordInterest(Account, Account, CalcTxn)
+
+} // end class FixtureBook
@@ -0,0 +1,60 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.IBondImporter.IBondRateRec;
+import io.github.jrhillery.moneydance.MdUtil;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Test helper providing the I bond rate history in our checked-in fixture spreadsheet.
+ */
+public class FixtureRates {
+    public static final String FIXTURE = "series-i-rate-history-fixture.xlsx";
+
+    /**
+     * @return Mapping from months to historical I bond interest rates in our fixture
+     */
+    public static TreeMap<YearMonth, IBondRateRec> load() throws Exception {
+        InputStream iStream = FixtureRates.class.getClassLoader().getResourceAsStream(FIXTURE);
+        if (iStream == null)
+            throw new IllegalStateException("Missing test resource " + FIXTURE);
+
+        return new RateSheetParser(URI.create(FIXTURE), "Data",
+                "InflationRate", "FixedRate", "From").parse(iStream);
+    } // end load()
+
+    /**
+     * @return Importer with fixture rates loaded from a freshly populated rate cache
+     */
+    public static IBondImporter importer() throws Exception {
+        HashMap<String, String> storage = new HashMap<>();
+        new RateCache(storage).store(load(), Optional.empty(), Optional.empty());
+        IBondImporter importer = new IBondImporter(storage);
+        importer.loadIBondRates();
+
+        return importer;
+    } // end importer()
+
+    /**
+     * @param calcKernel Interest calculation kernel property value
+     * @return Importer using the given kernel, with fixture rates loaded
+     *         from a freshly populated rate cache
+     */
+    public static IBondImporter importer(String calcKernel) throws Exception {
+        HashMap<String, String> storage = new HashMap<>();
+        new RateCache(storage).store(load(), Optional.empty(), Optional.empty());
+        Properties props = MdUtil.loadProps("ibond-values.properties", FixtureRates.class);
+        props.setProperty("calc.kernel", calcKernel);
+        IBondImporter importer = new IBondImporter(props, storage);
+        importer.loadIBondRates();
+
+        return importer;
+    } // end importer(String)
+
+} // end class FixtureRates
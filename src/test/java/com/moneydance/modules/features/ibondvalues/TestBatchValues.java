@@ -0,0 +1,92 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Verify batch valuations match interest calculations for the same holdings,
+ * using our fixture spreadsheet, and report throughput for many holdings.
+ */
+public class TestBatchValues {
+    private static final int NUM_HOLDINGS = 5000;
+    private static final YearMonth AS_OF = YearMonth.of(2025, 6);
+
+    public static void main(String[] args) {
+        try {
+            Path dir = Files.createTempDirectory("batch-values");
+            Path xlsx = dir.resolve("rates.xlsx");
+            try (InputStream iStream = TestBatchValues.class.getClassLoader()
+                    .getResourceAsStream(FixtureRates.FIXTURE)) {
+                Files.copy(iStream, xlsx, StandardCopyOption.REPLACE_EXISTING);
+            }
+            RateTable table = FixtureRates.importer().getRateTable();
+            List<String> lines = new ArrayList<>(List.of("# holding,ticker,date,amount"));
+
+            for (int i = 0; i < NUM_HOLDINGS; ++i) {
+                YearMonth issueMonth = RateTable.monthOf(table.firstOrdinal()
+                        + i % (table.lastOrdinal() - table.firstOrdinal() + 1));
+                String ticker = "IBond%d%02d".formatted(issueMonth.getYear(),
+                        issueMonth.getMonthValue());
+                lines.add("h%d,%s,%s,%d".formatted(i, ticker, issueMonth.atDay(15),
+                        1000 + i % 9000));
+                if (i % 3 == 0) {
+                    lines.add("h%d,%s,%s,-250.37".formatted(i, ticker, issueMonth.plusMonths(40)));
+                }
+            }
+            Path holdings = dir.resolve("holdings.csv");
+            Path values = dir.resolve("values.csv");
+            Files.write(holdings, lines);
+            BatchValues.main(new String[] {"--rates", xlsx.toString(), "--as-of", AS_OF.toString(),
+                    "--out", values.toString(), holdings.toString()});
+            List<String> valueLines = Files.readAllLines(values);
+
+            // check a few holdings against the engine, including some issued after the as-of month
+            IBondImporter importer = FixtureRates.importer();
+            for (int i = 0; i < NUM_HOLDINGS; i += 997) {
+                String[] fields = valueLines.get(i + 1).split(",");
+                YearMonth issueMonth = YearMonth.parse(fields[1].substring(5, 9) + '-'
+                        + fields[1].substring(9));
+                BigDecimal deposit = BigDecimal.valueOf(1000 + i % 9000);
+                boolean redeem = i % 3 == 0;
+                CalcTxnList txns = importer.calcIBondInterestTxns(fields[1], month ->
+                        month.equals(issueMonth) ? deposit
+                        : redeem && month.equals(issueMonth.plusMonths(40))
+                        ? new BigDecimal("-250.37") : BigDecimal.ZERO, rates -> {});
+                BigDecimal[] expected = {issueMonth.isAfter(AS_OF) ? BigDecimal.ZERO : deposit};
+                txns.forEach(txn -> {
+                    if (!txn.payMonth().isAfter(AS_OF)) {
+                        expected[0] = txn.endingBal();
+                    }
+                });
+                if (new BigDecimal(fields[3]).compareTo(expected[0]) != 0)
+                    throw new IllegalStateException("Holding h%d valued %s, expected %s"
+                            .formatted(i, fields[3], expected[0]));
+            }
+
+            Path schedule = dir.resolve("schedule.csv");
+            BatchValues.main(new String[] {"--rates", xlsx.toString(), "--schedule",
+                    "--out", schedule.toString(), holdings.toString()});
+            long numPayments = Files.readAllLines(schedule).size() - 1;
+            for (Path file : new Path[] {xlsx, holdings, values, schedule}) {
+                Files.delete(file);
+            }
+            Files.delete(dir);
+
+            if (valueLines.size() != NUM_HOLDINGS + 1 || numPayments < NUM_HOLDINGS)
+                throw new IllegalStateException("Wrote %d values and %d payments for %d holdings"
+                        .formatted(valueLines.size() - 1, numPayments, NUM_HOLDINGS));
+            System.out.format("Passed: %d holdings valued, %d scheduled payments%n",
+                    NUM_HOLDINGS, numPayments);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+    } // end main(String[])
+
+} // end class TestBatchValues
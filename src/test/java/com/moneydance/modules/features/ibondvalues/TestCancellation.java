@@ -0,0 +1,179 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Verify cancelling interest calculations and a spreadsheet parse stops them
+ * within a few milliseconds, even with the parse blocked waiting for more of a
+ * download, and time how long they take to stop. The median of trials after
+ * warm-up is checked, since a single trial may include a thread scheduling delay
+ * unrelated to our cancellation checks.
+ */
+public class TestCancellation {
+    private static final int WARMUP_TRIALS = 5;
+    private static final int TRIALS = 21;
+    private static final long RUN_MILLIS = 30;
+    private static final long MAX_STOP_MILLIS = 5;
+
+    /**
+     * Calculate interest for every fixture cohort, over and over, until cancelled.
+     *
+     * @param importer Importer with fixture rates loaded
+     */
+    private static void calcForever(IBondImporter importer) throws Exception {
+        RateTable table = importer.getRateTable();
+
+        while (true) {
+            for (int issue = table.firstOrdinal(); issue <= table.lastOrdinal(); ++issue) {
+                YearMonth issueMonth = RateTable.monthOf(issue);
+                String ticker = "IBond%d%02d".formatted(issueMonth.getYear(),
+                        issueMonth.getMonthValue());
+                importer.calcIBondInterestTxns(ticker, month -> month.equals(issueMonth)
+                        ? BigDecimal.valueOf(10000) : BigDecimal.ZERO, rates -> {});
+            }
+        }
+    } // end calcForever(IBondImporter)
+
+    /**
+     * Run work on its own thread, cancel it, and wait for it to stop.
+     *
+     * @param token Cancellation token the work checks
+     * @param work  Work that only stops when cancelled
+     * @return Milliseconds from cancelling until the work stopped
+     */
+    private static double stopMillis(CancellationToken token, Callable<?> work) throws Exception {
+        AtomicReference<Throwable> outcome = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                work.call();
+            } catch (Throwable e) {
+                outcome.set(e);
+            }
+        });
+        thread.start();
+        TimeUnit.MILLISECONDS.sleep(RUN_MILLIS);
+        if (!thread.isAlive())
+            throw new IllegalStateException("Work stopped before cancel", outcome.get());
+
+        long start = System.nanoTime();
+        token.cancel();
+        thread.join();
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        if (!(outcome.get() instanceof CancellationException))
+            throw new IllegalStateException("Cancelled work ended with " + outcome.get());
+
+        return millis;
+    } // end stopMillis(CancellationToken, Callable)
+
+    /**
+     * {@return Input stream delivering one chunk, then blocking like a stalled download
+     * until closed, ignoring interrupts as a socket read does}
+     */
+    private static InputStream stalledStream() {
+        return new InputStream() {
+            private final CountDownLatch closed = new CountDownLatch(1);
+            private boolean delivered = false;
+
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+
+                return read(b, 0, 1) < 0 ? -1 : b[0];
+            }
+
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (!this.delivered) {
+                    this.delivered = true;
+                    Arrays.fill(b, off, off + len, (byte) 'P');
+
+                    return len;
+                }
+                boolean interrupted = false;
+                while (this.closed.getCount() > 0) {
+                    try {
+                        this.closed.await();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IOException("Stream closed");
+            }
+
+            public void close() {
+                this.closed.countDown();
+            }
+        };
+    } // end stalledStream()
+
+    /**
+     * @param millis Stop times of each trial after warm-up
+     * @return Median stop time
+     */
+    private static double median(double[] millis) {
+        double[] sorted = millis.clone();
+        Arrays.sort(sorted);
+
+        return sorted[sorted.length / 2];
+    } // end median(double[])
+
+    public static void main(String[] args) {
+        try {
+            double[] calcMillis = new double[TRIALS];
+            double[] parseMillis = new double[TRIALS];
+
+            for (int trial = -WARMUP_TRIALS; trial < TRIALS; ++trial) {
+                IBondImporter importer = FixtureRates.importer();
+                double calcStop = stopMillis(importer.cancellation(), () -> {
+                    calcForever(importer);
+
+                    return null;
+                });
+
+                CancellationToken token = new CancellationToken();
+                RateSheetParser parser = new RateSheetParser(URI.create("stalled.xlsx"), "Data",
+                        "InflationRate", "FixedRate", "From", token, new RunMetrics(1));
+                double parseStop = stopMillis(token, () -> parser.parse(stalledStream()));
+
+                if (trial >= 0) {
+                    calcMillis[trial] = calcStop;
+                    parseMillis[trial] = parseStop;
+                }
+            }
+            double medianCalc = median(calcMillis), medianParse = median(parseMillis);
+            if (medianCalc > MAX_STOP_MILLIS || medianParse > MAX_STOP_MILLIS)
+                throw new IllegalStateException(
+                        "Took %.2f ms to stop calculations, %.2f ms to stop a parse"
+                                .formatted(medianCalc, medianParse));
+
+            // a network request waited on through a token stops without a response
+            CancellationToken token = new CancellationToken();
+            CompletableFuture<String> never = new CompletableFuture<>();
+            double awaitStop = stopMillis(token, () -> token.await(never));
+            if (!never.isCancelled())
+                throw new IllegalStateException("Awaited future was not cancelled");
+
+            System.out.format("Passed: median stop %.2f ms calculating (worst %.2f),"
+                    + " %.2f ms parsing (worst %.2f) over %d trials; %.2f ms awaiting%n",
+                    medianCalc, Arrays.stream(calcMillis).max().orElse(0), medianParse,
+                    Arrays.stream(parseMillis).max().orElse(0), TRIALS, awaitStop);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+    } // end main(String[])
+
+} // end class TestCancellation
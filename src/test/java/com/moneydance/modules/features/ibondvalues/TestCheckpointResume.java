@@ -0,0 +1,168 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.infinitekind.moneydance.model.Account;
+import com.infinitekind.moneydance.model.ParentTxn;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static com.infinitekind.moneydance.model.InvestTxnType.BUY;
+import static com.moneydance.modules.features.ibondvalues.Checks.check;
+
+/**
+ * Verify resuming interest calculations from a stored checkpoint reproduces
+ * the transactions of a calculation starting at issue, for every fixture cohort, and
+ * that recorded interest payments are part of a checkpoint's fingerprint.
+ */
+public class TestCheckpointResume {
+
+    /**
+     * @param issueMonth Issue month of the bond
+     * @param redeem     true to include a deposit and partial redemptions
+     * @return Function providing total net deposits and redemptions for a month
+     */
+    private static Function<YearMonth, BigDecimal> monthNet(YearMonth issueMonth, boolean redeem) {
+        return month -> {
+            if (month.equals(issueMonth))
+                return BigDecimal.valueOf(10000);
+            if (redeem && month.equals(issueMonth.plusMonths(8)))
+                return BigDecimal.valueOf(5000);
+            if (redeem && month.equals(issueMonth.plusMonths(40)))
+                return BigDecimal.valueOf(-2500.37);
+
+            return BigDecimal.ZERO;
+        };
+    } // end monthNet(YearMonth, boolean)
+
+    /**
+     * @param txns      Calculated interest payment transactions
+     * @param fromMonth Month after which to include transactions
+     * @return Text of the transactions payable after the given month
+     */
+    private static String describeAfter(CalcTxnList txns, YearMonth fromMonth) {
+        StringBuilder sb = new StringBuilder();
+        txns.forEach(txn -> {
+            if (txn.payMonth().isAfter(fromMonth)) {
+                sb.append(txn).append(" bal ").append(txn.endingBal()).append('\n');
+            }
+        });
+
+        return sb.toString();
+    } // end describeAfter(CalcTxnList, YearMonth)
+
+    /**
+     * @param book          Book holding the security account
+     * @param secAccount    Security account to load
+     * @param throughMonth  Last month to fingerprint
+     * @param staged        Interest payments not yet recorded
+     * @return Fingerprint of the security account's transactions through the month
+     */
+    private static String changesKey(FixtureBook book, Account secAccount,
+            YearMonth throughMonth, List<CalcTxn> staged) {
+
+        return InvestTxnList.loadAll(book.book().getTransactionSet(), List.of(secAccount))
+                .get(secAccount).changesKey(throughMonth, staged);
+    } // end changesKey(FixtureBook, Account, YearMonth, List<CalcTxn>)
+
+    /**
+     * Record the interest payments through a checkpoint in a book, then verify staged
+     * payments fingerprint as though recorded, and deleting or editing a recorded
+     * payment changes the fingerprint, so a checkpoint past it is not resumed.
+     *
+     * @param importer Importer with fixture rates loaded
+     */
+    private static void verifyInterestFingerprint(IBondImporter importer) throws Exception {
+        YearMonth issueMonth = YearMonth.of(2001, 5);
+        CalcTxnList txns = importer.calcIBondInterestTxns("IBond200105",
+                monthNet(issueMonth, false), rates -> {}, null, issueMonth.plusMonths(61));
+        YearMonth checkpointMonth = txns.checkpoint().orElseThrow().month();
+        List<CalcTxn> paid = new ArrayList<>();
+        txns.forEach(txn -> {
+            if (!txn.payMonth().isAfter(checkpointMonth)) {
+                paid.add(txn);
+            }
+        });
+
+        FixtureBook book = new FixtureBook();
+        Account investAccount = book.addInvestAccount("TreasuryDirect");
+        Account secAccount = book.addSecurityAccount(investAccount, "I Bond 2001-05");
+        book.recordTrade(investAccount, secAccount, BUY, issueMonth.atDay(1), 1_000_000);
+        List<ParentTxn> recorded = new ArrayList<>();
+        for (CalcTxn txn : paid.subList(0, paid.size() - 1)) {
+            recorded.add(book.recordInterest(investAccount, secAccount, txn));
+        }
+        String stagedKey = changesKey(book, secAccount, checkpointMonth, List.of(paid.getLast()));
+        recorded.add(book.recordInterest(investAccount, secAccount, paid.getLast()));
+        String recordedKey = changesKey(book, secAccount, checkpointMonth, List.of());
+        check(stagedKey.equals(recordedKey), "staged interest payments fingerprint as recorded");
+
+        recorded.get(3).deleteItem();
+        String deletedKey = changesKey(book, secAccount, checkpointMonth, List.of());
+        check(!deletedKey.equals(recordedKey), "deleted interest payment changes the fingerprint");
+
+        book.recordInterest(investAccount, secAccount, new CalcTxn(paid.get(3).payMonth(),
+                paid.get(3).payAmount().add(BigDecimal.ONE), paid.get(3).memo()));
+        String editedKey = changesKey(book, secAccount, checkpointMonth, List.of());
+        check(!editedKey.equals(recordedKey) && !editedKey.equals(deletedKey),
+                "edited interest payment changes the fingerprint");
+
+    } // end verifyInterestFingerprint(IBondImporter)
+
+    public static void main(String[] args) {
+        try {
+            IBondImporter importer = FixtureRates.importer();
+            RateTable table = importer.getRateTable();
+            int resumed = 0;
+
+            for (int issue = table.firstOrdinal(); issue <= table.lastOrdinal(); ++issue) {
+                YearMonth issueMonth = RateTable.monthOf(issue);
+                String ticker = "IBond%d%02d".formatted(issueMonth.getYear(),
+                        issueMonth.getMonthValue());
+
+                for (boolean redeem : new boolean[] {false, true}) {
+                    Function<YearMonth, BigDecimal> monthNet = monthNet(issueMonth, redeem);
+                    CalcTxnList full = importer.calcIBondInterestTxns(ticker, monthNet,
+                            rates -> {});
+
+                    for (int limit : new int[] {7, 45, 61, 200}) {
+                        CalcTxnList first = importer.calcIBondInterestTxns(ticker, monthNet,
+                                rates -> {}, null, issueMonth.plusMonths(limit));
+                        if (first.checkpoint().isEmpty())
+                            continue;
+                        IBondCheckpoint checkpoint = IBondCheckpoint.fromStorageString(
+                                first.checkpoint().get().toStorageString()).orElseThrow();
+                        CalcTxnList rest = importer.calcIBondInterestTxns(ticker, monthNet,
+                                rates -> {}, checkpoint, null);
+
+                        if (!describeAfter(full, checkpoint.month())
+                                .equals(describeAfter(rest, checkpoint.month())))
+                            throw new IllegalStateException("Resumed %s (redeem %s) at %s differs"
+                                    .formatted(ticker, redeem, checkpoint.month()));
+                        ++resumed;
+
+                        // a checkpoint with different rates must be ignored
+                        IBondCheckpoint stale = new IBondCheckpoint(checkpoint.issueMonth(),
+                                checkpoint.month(), checkpoint.redemptionVal(), BigDecimal.ONE,
+                                checkpoint.unitVal(), checkpoint.pendingTxns(),
+                                IBondCheckpoint.fingerprint("other rates"),
+                                checkpoint.changesKey());
+                        CalcTxnList ignored = importer.calcIBondInterestTxns(ticker, monthNet,
+                                rates -> {}, stale, null);
+                        if (!describeAfter(full, issueMonth)
+                                .equals(describeAfter(ignored, issueMonth)))
+                            throw new IllegalStateException("Stale checkpoint used for " + ticker);
+                    }
+                }
+            }
+            System.out.format("Passed: %d resumed calculations match full calculations%n", resumed);
+            verifyInterestFingerprint(importer);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+    } // end main(String[])
+
+} // end class TestCheckpointResume
@@ -0,0 +1,125 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.HoldingIndex.AccountPair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Verify a holding index over a synthetic book of a few hundred investment accounts
+ * and securities finds the same holdings as scanning each investment account's
+ * subaccounts by name for every security, and compare their times.
+ */
+public class TestHoldingIndex {
+    private static final int NUM_INVEST_ACCOUNTS = 300;
+    private static final int NUM_SECURITIES = 360;
+    private static final int MAX_HOLDINGS_PER_ACCOUNT = 40;
+    private static final int TIMED_ROUNDS = 20;
+
+    /**
+     * Synthetic account.
+     *
+     * @param name        Account name
+     * @param subAccounts Subaccounts
+     */
+    private record SyntheticAccount(String name, List<SyntheticAccount> subAccounts) { }
+
+    /**
+     * @param investAccount Investment account
+     * @param name          Security account name
+     * @return Optional first subaccount with the given name
+     */
+    private static Optional<SyntheticAccount> getSubAccountByName(
+            SyntheticAccount investAccount, String name) {
+
+        return investAccount.subAccounts().stream()
+                .filter(account -> account.name().equals(name)).findFirst();
+    } // end getSubAccountByName(SyntheticAccount, String)
+
+    /**
+     * @param investAccounts Investment accounts
+     * @param securityNames  Security names
+     * @return Holdings found scanning every investment account for each security
+     */
+    private static List<AccountPair<SyntheticAccount>> scanHoldings(
+            List<SyntheticAccount> investAccounts, List<String> securityNames) {
+        List<AccountPair<SyntheticAccount>> holdings = new ArrayList<>();
+        for (String securityName : securityNames) {
+            for (SyntheticAccount investAccount : investAccounts) {
+                getSubAccountByName(investAccount, securityName).ifPresent(secAccount ->
+                        holdings.add(new AccountPair<>(investAccount, secAccount)));
+            }
+        }
+
+        return holdings;
+    } // end scanHoldings(List<SyntheticAccount>, List<String>)
+
+    /**
+     * @param investAccounts Investment accounts
+     * @param securityNames  Security names
+     * @return Holdings found using a holding index
+     */
+    private static List<AccountPair<SyntheticAccount>> indexHoldings(
+            List<SyntheticAccount> investAccounts, List<String> securityNames) {
+        HoldingIndex<SyntheticAccount> index = new HoldingIndex<>(
+                investAccounts.stream(), SyntheticAccount::subAccounts, SyntheticAccount::name);
+        List<AccountPair<SyntheticAccount>> holdings = new ArrayList<>();
+        for (String securityName : securityNames) {
+            holdings.addAll(index.holdingsOf(securityName));
+        }
+
+        return holdings;
+    } // end indexHoldings(List<SyntheticAccount>, List<String>)
+
+    public static void main(String[] args) {
+        Random random = new Random(20240501L);
+        List<String> securityNames = new ArrayList<>();
+        for (int i = 0; i < NUM_SECURITIES; ++i) {
+            securityNames.add("I Bond %d-%02d".formatted(1998 + i / 12, i % 12 + 1));
+        }
+        List<SyntheticAccount> investAccounts = new ArrayList<>();
+        for (int i = 0; i < NUM_INVEST_ACCOUNTS; ++i) {
+            List<SyntheticAccount> subAccounts = new ArrayList<>();
+            int numHoldings = random.nextInt(MAX_HOLDINGS_PER_ACCOUNT + 1);
+            for (int h = 0; h < numHoldings; ++h) {
+                String name = random.nextInt(10) == 0 ? "Stock " + random.nextInt(1000)
+                        : securityNames.get(random.nextInt(NUM_SECURITIES));
+                subAccounts.add(new SyntheticAccount(name, List.of()));
+            }
+            investAccounts.add(new SyntheticAccount("Brokerage " + i, subAccounts));
+        }
+
+        List<AccountPair<SyntheticAccount>> scanned = scanHoldings(investAccounts, securityNames);
+        List<AccountPair<SyntheticAccount>> indexed = indexHoldings(investAccounts, securityNames);
+        if (scanned.size() != indexed.size())
+            throw new IllegalStateException("Found %d holdings scanning, %d indexing"
+                    .formatted(scanned.size(), indexed.size()));
+        for (int i = 0; i < scanned.size(); ++i) {
+            // compare identities, like Moneydance accounts
+            if (scanned.get(i).investAccount() != indexed.get(i).investAccount()
+                    || scanned.get(i).securityAccount() != indexed.get(i).securityAccount())
+                throw new IllegalStateException("Holding %d differs: %s vs %s"
+                        .formatted(i, scanned.get(i), indexed.get(i)));
+        }
+
+        long start = System.nanoTime();
+        for (int r = 0; r < TIMED_ROUNDS; ++r) {
+            scanHoldings(investAccounts, securityNames);
+        }
+        double scanMs = (System.nanoTime() - start) / 1e6 / TIMED_ROUNDS;
+        start = System.nanoTime();
+        for (int r = 0; r < TIMED_ROUNDS; ++r) {
+            indexHoldings(investAccounts, securityNames);
+        }
+        double indexMs = (System.nanoTime() - start) / 1e6 / TIMED_ROUNDS;
+
+        System.out.format("Passed: %d holdings in %d investment accounts for %d securities%n",
+                indexed.size(), NUM_INVEST_ACCOUNTS, NUM_SECURITIES);
+        System.out.format("Scan %.3f ms, index %.3f ms per lookup of all securities%n",
+                scanMs, indexMs);
+
+    } // end main(String[])
+
+} // end class TestHoldingIndex
@@ -1,13 +1,14 @@
 package com.moneydance.modules.features.ibondvalues;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
 
 public class TestIBondValues {
 
     @SuppressWarnings("ConstantValue")
     public static void main(String[] args) {
         try {
-            IBondImporter importer = new IBondImporter();
+            IBondImporter importer = new IBondImporter(new HashMap<>());
             importer.loadIBondRates();
             boolean withdraw = false;
             CalcTxnList iBondIntTxns = importer.calcIBondInterestTxns("IBond202312",
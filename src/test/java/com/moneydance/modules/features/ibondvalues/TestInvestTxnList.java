@@ -0,0 +1,190 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.infinitekind.moneydance.model.AbstractTxn;
+import com.infinitekind.moneydance.model.Account;
+import com.infinitekind.moneydance.model.TransactionSet;
+import io.github.jrhillery.moneydance.MdUtil;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static com.infinitekind.moneydance.model.InvestTxnType.BUY;
+import static com.infinitekind.moneydance.model.InvestTxnType.SELL;
+import static com.moneydance.modules.features.ibondvalues.Checks.check;
+import static com.moneydance.modules.features.ibondvalues.Checks.require;
+
+/**
+ * Verify loading the transactions of many security accounts in one pass over all
+ * transactions yields the same per-account lists as querying each security account,
+ * indexed month-end balances match Moneydance's balance as of each month's last day,
+ * and fingerprints tell apart changes a simple hash would confuse.
+ */
+public class TestInvestTxnList {
+    private static final YearMonth FIRST_MONTH = YearMonth.of(2001, 5);
+    private static final int NUM_MONTHS = 60;
+
+    private final FixtureBook book = new FixtureBook();
+    private final List<Account> secAccounts = new ArrayList<>();
+    private Account unloadedAccount;
+
+    /**
+     * Populate two investment accounts holding securities, including the same security
+     * in both, with purchases, sales and interest payments on shared dates.
+     */
+    private void populate() {
+        Account treasuryDirect = this.book.addInvestAccount("TreasuryDirect");
+        Account brokerage = this.book.addInvestAccount("Brokerage");
+        Account tdFirst = this.book.addSecurityAccount(treasuryDirect, "I Bond 2001-05");
+        Account tdSecond = this.book.addSecurityAccount(treasuryDirect, "I Bond 2002-11");
+        Account brFirst = this.book.addSecurityAccount(brokerage, "I Bond 2001-05");
+        Account brEmpty = this.book.addSecurityAccount(brokerage, "I Bond 2010-01");
+        this.unloadedAccount = this.book.addSecurityAccount(brokerage, "I Bond 2012-03");
+        this.secAccounts.addAll(List.of(tdFirst, tdSecond, brFirst, brEmpty));
+
+        this.book.recordTrade(treasuryDirect, tdFirst, BUY, FIRST_MONTH.atDay(1), 1_000_000);
+        this.book.recordTrade(brokerage, brFirst, BUY, FIRST_MONTH.atDay(1), 250_000);
+        this.book.recordTrade(brokerage, this.unloadedAccount, BUY, FIRST_MONTH.atDay(1), 75_000);
+
+        for (int m = 1; m < NUM_MONTHS; ++m) {
+            YearMonth month = FIRST_MONTH.plusMonths(m);
+            String memo = CalcTxn.interestMemo(month.minusMonths(1));
+            this.book.recordInterest(treasuryDirect, tdFirst,
+                    new CalcTxn(month, BigDecimal.valueOf(3000 + m, 2), memo));
+            this.book.recordInterest(brokerage, brFirst,
+                    new CalcTxn(month, BigDecimal.valueOf(700 + m, 2), memo));
+
+            if (m == 18) {
+                this.book.recordTrade(treasuryDirect, tdSecond, BUY, month.atDay(1), 500_000);
+            } else if (m > 18) {
+                this.book.recordInterest(treasuryDirect, tdSecond,
+                        new CalcTxn(month, BigDecimal.valueOf(1500 + m, 2), memo));
+            }
+            if (m % 13 == 0) {
+                this.book.recordTrade(treasuryDirect, tdFirst, SELL, month.atDay(15), 125_037);
+                this.book.recordTrade(brokerage, brFirst, BUY, month.atDay(15), 40_000);
+                this.book.recordTrade(brokerage, this.unloadedAccount, SELL, month.atDay(15),
+                        5_000);
+            }
+            if (m == 30) {
+                // trades on a month's last day and the next month's first day
+                this.book.recordTrade(treasuryDirect, tdSecond, SELL, month.atEndOfMonth(), 60_000);
+                this.book.recordTrade(treasuryDirect, tdSecond, BUY, month.plusMonths(1).atDay(1),
+                        30_000);
+            }
+        } // end for each month
+
+    } // end populate()
+
+    /**
+     * @param expected List loaded by querying one security account
+     * @param actual   List loaded in one pass over all transactions
+     * @param name     Description of the security account
+     */
+    private static void compare(InvestTxnList expected, InvestTxnList actual, String name) {
+        List<AbstractTxn> expectedTxns = expected.loadedTxns();
+        List<AbstractTxn> actualTxns = actual.loadedTxns();
+        require(expectedTxns.size() == actualTxns.size()
+                && new HashSet<>(expectedTxns).equals(new HashSet<>(actualTxns)),
+                "%s loads %d transactions, not %d"
+                        .formatted(name, actualTxns.size(), expectedTxns.size()));
+        require(actualTxns.stream().allMatch(txn -> txn.getAccount() == actual.account()),
+                "%s loads other accounts' splits".formatted(name));
+        require(expected.isEmpty() == actual.isEmpty(), "%s emptiness differs".formatted(name));
+
+        for (int m = -1; m <= NUM_MONTHS; ++m) {
+            YearMonth month = FIRST_MONTH.plusMonths(m);
+            int monthOrdinal = RateTable.monthOrdinal(month);
+            require(expected.getBalanceAtEndOf(month)
+                    .compareTo(actual.getBalanceAtEndOf(month)) == 0,
+                    "%s balance at end of %s differs".formatted(name, month));
+            require(expected.getNetChangeForMonth(monthOrdinal)
+                    == actual.getNetChangeForMonth(monthOrdinal),
+                    "%s net change for %s differs".formatted(name, month));
+            require(expected.getChangesForMonth(month).size()
+                    == actual.getChangesForMonth(month).size(),
+                    "%s changes for %s differ".formatted(name, month));
+            require(expected.changesKey(month).equals(actual.changesKey(month)),
+                    "%s fingerprint through %s differs".formatted(name, month));
+        } // end for each month
+
+    } // end compare(InvestTxnList, InvestTxnList, String)
+
+    /**
+     * Compare indexed month-end balances with Moneydance's balance as of each month's
+     * last day, from before the first transaction through after the last.
+     *
+     * @param txnLists Mapping from security accounts to their investment transactions
+     */
+    private void verifyBalances(Map<Account, InvestTxnList> txnLists) {
+        int numCompared = 0;
+
+        for (Account secAccount : this.secAccounts) {
+            InvestTxnList txnList = txnLists.get(secAccount);
+
+            for (int m = -3; m <= NUM_MONTHS + 3; ++m) {
+                YearMonth month = FIRST_MONTH.plusMonths(m);
+                BigDecimal indexed = txnList.getBalanceAtEndOf(month);
+                BigDecimal scanned = MdUtil.getBalanceAsOf(this.book.book(), secAccount,
+                        month.atEndOfMonth());
+                require(indexed.compareTo(scanned) == 0,
+                        "%s balance at end of %s: indexed %s, scanned %s"
+                                .formatted(secAccount.getAccountName(), month, indexed, scanned));
+                ++numCompared;
+            } // end for each month
+        } // end for each security account
+        System.out.format("Passed: %d indexed month-end balances match getBalanceAsOf%n",
+                numCompared);
+
+    } // end verifyBalances(Map<Account, InvestTxnList>)
+
+    /**
+     * A purchase of an amount on one day, and 31 cents less the next day, combined
+     * to the same 31-multiplier hash; their fingerprints must differ.
+     */
+    private static void verifyFingerprintCollision() {
+        YearMonth month = FIRST_MONTH;
+        String[] keys = new String[2];
+
+        for (int day = 0; day < 2; ++day) {
+            FixtureBook book = new FixtureBook();
+            Account investAccount = book.addInvestAccount("TreasuryDirect");
+            Account secAccount = book.addSecurityAccount(investAccount, "I Bond 2001-05");
+            book.recordTrade(investAccount, secAccount, BUY, month.atDay(10 + day),
+                    1_000_000 - 31 * day);
+            keys[day] = InvestTxnList.loadAll(book.book().getTransactionSet(),
+                    List.of(secAccount)).get(secAccount).changesKey(month);
+        }
+        check(!keys[0].equals(keys[1]), "fingerprints tell apart changes a simple hash confuses");
+
+    } // end verifyFingerprintCollision()
+
+    private void runTests() {
+        populate();
+        TransactionSet txnSet = this.book.book().getTransactionSet();
+        Map<Account, InvestTxnList> txnLists = InvestTxnList.loadAll(txnSet, this.secAccounts);
+        check(txnLists.keySet().equals(new HashSet<>(this.secAccounts)),
+                "one pass loads exactly the requested security accounts");
+        check(!txnLists.containsKey(this.unloadedAccount), "unrequested account is not loaded");
+
+        for (Account secAccount : this.secAccounts) {
+            String name = "%s:%s".formatted(secAccount.getParentAccount().getAccountName(),
+                    secAccount.getAccountName());
+            compare(new InvestTxnList(txnSet, secAccount), txnLists.get(secAccount), name);
+        }
+        System.out.format("Passed: one pass loads the same transactions as %d per-account"
+                + " queries%n", this.secAccounts.size());
+        verifyBalances(txnLists);
+        verifyFingerprintCollision();
+
+    } // end runTests()
+
+    public static void main(String[] args) {
+        new TestInvestTxnList().runTests();
+
+    } // end main(String[])
+
+} // end class TestInvestTxnList
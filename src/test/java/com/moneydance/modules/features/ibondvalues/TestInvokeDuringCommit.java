@@ -0,0 +1,155 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.infinitekind.moneydance.model.AbstractTxn;
+import com.infinitekind.moneydance.model.Account;
+import com.moneydance.apps.md.controller.FeatureModuleContext;
+
+import java.awt.EventQueue;
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static com.infinitekind.moneydance.model.InvestTxnType.BUY;
+import static com.infinitekind.moneydance.model.InvestTxnType.DIVIDEND_REINVEST;
+import static com.moneydance.modules.features.ibondvalues.Checks.check;
+
+/**
+ * Verify invoking again while staged interest payments are being recorded waits for
+ * the commit, rather than calculating against a half-recorded book and staging the
+ * unrecorded payments a second time, and that a commit stopped when its book closes
+ * leaves the remaining payments to the next invocation, and closing a commit that never
+ * started does not wait for it. Opens our window, so needs a display.
+ */
+public class TestInvokeDuringCommit {
+    private static final String NAME = "I Bond Values";
+
+    private final FixtureBook book = new FixtureBook();
+    private Account secAccount;
+    private FeatureModuleContext context;
+    private IBondWindow window;
+
+    /**
+     * @param task Task to run on the event dispatch thread, like Moneydance callbacks
+     * @param <T>  Result type
+     * @return Result of the task
+     */
+    private static <T> T onEdt(Callable<T> task) throws Exception {
+        FutureTask<T> future = new FutureTask<>(task);
+        EventQueue.invokeAndWait(future);
+
+        return future.get();
+    } // end onEdt(Callable<T>)
+
+    /**
+     * {@return Recorded interest payment transactions in our security account}
+     */
+    private List<AbstractTxn> interestTxns() {
+
+        return InvestTxnList.loadAll(this.book.book().getTransactionSet(), List.of(this.secAccount))
+                .get(this.secAccount).loadedTxns().stream()
+                .filter(txn -> txn.getParentTxn().getInvestTxnType() == DIVIDEND_REINVEST).toList();
+    } // end interestTxns()
+
+    /**
+     * @return true when no interest payment is recorded more than once
+     */
+    private boolean noDuplicates() {
+        List<AbstractTxn> txns = interestTxns();
+        Set<String> payments = new HashSet<>();
+        txns.forEach(txn -> payments.add(txn.getDateInt() + txn.getParentTxn().getMemo()));
+
+        return payments.size() == txns.size();
+    } // end noDuplicates()
+
+    /**
+     * Hand a commit still recording payments from one invocation to the next, like Main.invoke.
+     *
+     * @param worker Worker of the earlier invocation
+     * @return Worker of the new invocation, started
+     */
+    private IBondWorker reinvoke(IBondWorker worker) throws Exception {
+
+        return onEdt(() -> {
+            CommitWorker priorCommit = worker.handOffCommit();
+            worker.stopExecute();
+            IBondWorker next = new IBondWorker(this.window, NAME, this.context, priorCommit);
+            next.execute();
+
+            return next;
+        });
+    } // end reinvoke(IBondWorker)
+
+    private void setUp() throws Exception {
+        Account investAccount = this.book.addInvestAccount("TreasuryDirect");
+        this.secAccount = this.book.addIBondSecurity(investAccount, "I Bond 2001-05",
+                "IBond200105");
+        this.book.recordTrade(investAccount, this.secAccount, BUY, LocalDate.of(2001, 5, 1),
+                1_000_000);
+        Map<String, String> storage = this.book.book().getLocalStorage();
+        new RateCache(storage).store(FixtureRates.load(), Optional.empty(), Optional.empty());
+        this.context = (FeatureModuleContext) Proxy.newProxyInstance(
+                FeatureModuleContext.class.getClassLoader(),
+                new Class<?>[] {FeatureModuleContext.class},
+                (proxy, method, args) -> method.getName().equals("getCurrentAccountBook")
+                        ? this.book.book() : null);
+        this.window = onEdt(() -> new IBondWindow(NAME, storage));
+
+    } // end setUp()
+
+    private void runTests() throws Exception {
+        setUp();
+        IBondWorker first = onEdt(() -> new IBondWorker(this.window, NAME, this.context, null));
+        first.execute();
+        check(first.get(), "first invocation stages interest payments");
+
+        onEdt(() -> first.commitChanges());
+        IBondWorker second = reinvoke(first);
+        check(!second.get(), "invocation during commit stages no payment again");
+        int numPayments = interestTxns().size();
+        check(numPayments > 0 && noDuplicates(), "each interest payment is recorded once");
+
+        // forget some payments, then stop their commit as the book closes
+        interestTxns().subList(0, numPayments / 2)
+                .forEach(txn -> txn.getParentTxn().deleteItem());
+        IBondWorker third = reinvoke(second);
+        check(third.get(), "deleted interest payments are staged again");
+        onEdt(() -> third.commitChanges());
+        IBondWorker fourth = reinvoke(third);
+        onEdt(() -> fourth.stopExecute());
+        check(interestTxns().size() <= numPayments && noDuplicates(),
+                "closing stops the commit without duplicating payments");
+
+        IBondWorker fifth = reinvoke(fourth);
+        if (fifth.get()) {
+            onEdt(() -> fifth.commitChanges());
+            reinvoke(fifth).get();
+        }
+        check(interestTxns().size() == numPayments && noDuplicates(),
+                "next invocation records only the payments the stopped commit left");
+
+        CommitWorker queued = onEdt(() -> new CommitWorker(this.window, this.book.book(),
+                List.of(), Map.of(), 1, new RunMetrics(1)));
+        CompletableFuture.runAsync(queued::close).get(5, TimeUnit.SECONDS);
+        check(queued.finished().isDone(), "closing a commit that never started returns at once");
+        onEdt(() -> this.window.goAway());
+
+    } // end runTests()
+
+    public static void main(String[] args) {
+        try {
+            new TestInvokeDuringCommit().runTests();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+    } // end main(String[])
+
+} // end class TestInvokeDuringCommit
@@ -0,0 +1,131 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.math.MathContext.DECIMAL64;
+import static java.math.RoundingMode.HALF_UP;
+
+/**
+ * Verify the memoized monthly growth multipliers are exact sixth roots rounded to the
+ * nearest double, and that unit values and interest payment amounts calculated with
+ * them reproduce those from stepping each period with Math.pow, for every fixture cohort.
+ */
+public class TestMultiplierTable {
+    private static final int MAX_BASIS_POINTS = 10000;
+    private static final BigDecimal ROOT_TOLERANCE = new BigDecimal("1e-32");
+    private static final BigDecimal FACE_VALUE = BigDecimal.valueOf(10000);
+
+    /**
+     * Step unit values forward the way they were before multipliers were memoized.
+     *
+     * @param schedule Composite rate schedule for an issue month
+     * @return Rounded unit values indexed by months since issue
+     */
+    private static BigDecimal[] powUnitValues(CompositeRateSchedule schedule) {
+        BigDecimal[] unitVals = new BigDecimal[schedule.periods() * 6 + 1];
+        BigDecimal roundedUnitVal = BigDecimal.valueOf(25).setScale(2, HALF_UP);
+        unitVals[0] = roundedUnitVal;
+        for (int period = 0; period < schedule.periods(); ++period) {
+            BigDecimal unitVal = roundedUnitVal;
+            BigDecimal monthlyMultiplier = BigDecimal.valueOf(Math.pow(
+                    1.0 + schedule.compositeRate(period).doubleValue() / 2.0, 1.0 / 6));
+            for (int m = 1; m <= 6; ++m) {
+                unitVal = unitVal.multiply(monthlyMultiplier, DECIMAL64);
+                roundedUnitVal = unitVal.setScale(2, HALF_UP);
+                unitVals[period * 6 + m] = roundedUnitVal;
+            }
+        }
+
+        return unitVals;
+    } // end powUnitValues(CompositeRateSchedule)
+
+    /**
+     * @param table Rate table memoizing multipliers
+     * @return Number of composite rates checked
+     */
+    private static int checkMultipliers(RateTable table) {
+        for (int bp = 0; bp <= MAX_BASIS_POINTS; ++bp) {
+            BigDecimal compositeRate = BigDecimal.valueOf(bp, 4);
+            BigDecimal growth = BigDecimal.ONE.add(compositeRate.divide(BigDecimal.TWO));
+            BigDecimal root = RateTable.sixthRoot(compositeRate);
+            if (root.pow(6, MathContext.DECIMAL128).subtract(growth).abs()
+                    .compareTo(ROOT_TOLERANCE) > 0)
+                throw new IllegalStateException("Inexact sixth root for " + compositeRate);
+
+            BigDecimal multiplier = table.monthlyMultiplier(compositeRate);
+            double nearest = root.doubleValue();
+            if (multiplier.compareTo(BigDecimal.valueOf(nearest)) != 0)
+                throw new IllegalStateException("Multiplier %s for %s is not the nearest double"
+                        .formatted(multiplier, compositeRate));
+            if (table.monthlyMultiplier(compositeRate) != multiplier)
+                throw new IllegalStateException("Multiplier not memoized for " + compositeRate);
+        }
+
+        return MAX_BASIS_POINTS + 1;
+    } // end checkMultipliers(RateTable)
+
+    public static void main(String[] args) {
+        try {
+            IBondImporter importer = FixtureRates.importer();
+            RateTable table = importer.getRateTable();
+            int numRates = checkMultipliers(table);
+            int numCohorts = 0, numPayments = 0;
+
+            for (int issue = table.firstOrdinal(); issue <= table.lastOrdinal(); ++issue) {
+                YearMonth issueMonth = RateTable.monthOf(issue);
+                CompositeRateSchedule schedule = table.compositeSchedule(issueMonth);
+                BigDecimal[] expected = powUnitValues(schedule);
+                for (int monthIdx = 0; monthIdx < expected.length; ++monthIdx) {
+                    if (schedule.unitValue(monthIdx).compareTo(expected[monthIdx]) != 0)
+                        throw new IllegalStateException(
+                                "Unit value %s months after %s is %s, not %s".formatted(monthIdx,
+                                        issueMonth, schedule.unitValue(monthIdx),
+                                        expected[monthIdx]));
+                }
+
+                // without redemptions, each month's interest is the face value's units
+                // times the change in unit value
+                Map<String, BigDecimal> expectedInterest = new HashMap<>();
+                BigDecimal units = FACE_VALUE.divide(expected[0]);
+                for (int monthIdx = 1; monthIdx < expected.length; ++monthIdx) {
+                    BigDecimal interest = expected[monthIdx].subtract(expected[monthIdx - 1])
+                            .multiply(units).setScale(2, HALF_UP);
+                    if (interest.signum() > 0) {
+                        expectedInterest.put("%tb %<tY interest".formatted(
+                                issueMonth.plusMonths(monthIdx - 1)), interest);
+                    }
+                }
+                String ticker = "IBond%d%02d".formatted(issueMonth.getYear(),
+                        issueMonth.getMonthValue());
+                CalcTxnList txns = importer.calcIBondInterestTxns(ticker,
+                        month -> month.equals(issueMonth) ? FACE_VALUE : BigDecimal.ZERO,
+                        rates -> {});
+                List<CalcTxn> payments = new ArrayList<>();
+                txns.forEach(payments::add);
+                for (CalcTxn txn : payments) {
+                    BigDecimal interest = expectedInterest.remove(txn.memo());
+                    if (interest == null || interest.compareTo(txn.payAmount()) != 0)
+                        throw new IllegalStateException("%s %s: expected %s"
+                                .formatted(ticker, txn, interest));
+                    ++numPayments;
+                }
+                if (!expectedInterest.isEmpty())
+                    throw new IllegalStateException("%s missing payments %s"
+                            .formatted(ticker, expectedInterest.keySet()));
+                ++numCohorts;
+            }
+            System.out.format("Passed: %d multipliers, %d payments across %d cohorts match%n",
+                    numRates, numPayments, numCohorts);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+    } // end main(String[])
+
+} // end class TestMultiplierTable
@@ -0,0 +1,112 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import io.github.jrhillery.swing.HTMLPane;
+
+import java.awt.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Measure output log throughput with many messages, appending each to the HTML pane
+ * as before versus coalescing them per frame, and verify the document stays bounded
+ * while an export holds every message.
+ */
+public class TestOutputLog {
+    private static final int NUM_MSGS = 20_000;
+
+    /**
+     * @param i Message number
+     * @return Message like those displayed for new interest payments
+     */
+    private static String message(int i) {
+        return "On 2024-%02d-01 Brokerage:IBond202201 pay %d.%02d for 2.50%% interest, bal %d.00"
+                .formatted(i % 12 + 1, i % 97, i % 100, 10_000 + i);
+    } // end message(int)
+
+    /**
+     * {@return Milliseconds to append every message directly to an HTML pane}
+     */
+    private static double appendEach() throws Exception {
+        HTMLPane pane = new HTMLPane();
+        long start = System.nanoTime();
+        EventQueue.invokeAndWait(() -> {
+            for (int i = 0; i < NUM_MSGS; ++i) {
+                pane.addText(message(i));
+            }
+        });
+
+        return (System.nanoTime() - start) / 1e6;
+    } // end appendEach()
+
+    /**
+     * @param log Output log to receive every message
+     * @return Milliseconds to queue every message from a worker thread and render them
+     */
+    private static double coalesce(OutputLog log) throws Exception {
+        long start = System.nanoTime();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < NUM_MSGS; ++i) {
+                log.add(message(i));
+            }
+        });
+        producer.start();
+        producer.join();
+        EventQueue.invokeAndWait(log::flush);
+
+        return (System.nanoTime() - start) / 1e6;
+    } // end coalesce(OutputLog)
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        try (OutputLog log = new OutputLog(new HTMLPane(), OutputLog.MAX_LINES)) {
+            double coalescedMillis = coalesce(log);
+            if (log.retainedLines() > OutputLog.MAX_LINES)
+                throw new IllegalStateException("Document kept %d lines, over the maximum %d"
+                        .formatted(log.retainedLines(), OutputLog.MAX_LINES));
+
+            Path export = Files.createTempFile("ibond-values-log", ".txt");
+            EventQueue.invokeAndWait(() -> {
+                try {
+                    log.export(export);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            List<String> lines = Files.readAllLines(export);
+            Files.delete(export);
+            if (lines.size() != NUM_MSGS || !lines.getLast().equals(message(NUM_MSGS - 1)))
+                throw new IllegalStateException("Exported %d of %d messages"
+                        .formatted(lines.size(), NUM_MSGS));
+
+            // messages after closing neither render nor start another full log
+            OutputLog closedLog = new OutputLog(new HTMLPane(), OutputLog.MAX_LINES);
+            closedLog.close();
+            closedLog.add(message(0));
+            Path closedExport = Files.createTempFile("ibond-values-log", ".txt");
+            EventQueue.invokeAndWait(() -> {
+                closedLog.flush();
+                try {
+                    closedLog.export(closedExport);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            long closedSize = Files.size(closedExport);
+            Files.delete(closedExport);
+            if (closedLog.retainedLines() != 0 || closedSize != 0)
+                throw new IllegalStateException("Closed log kept %d lines, exported %d bytes"
+                        .formatted(closedLog.retainedLines(), closedSize));
+
+            double eachMillis = appendEach();
+            System.out.format("Passed: %d messages in %.0f ms appending each, %.0f ms coalesced;"
+                    + " %d lines kept%n", NUM_MSGS, eachMillis, coalescedMillis,
+                    log.retainedLines());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        System.exit(0);
+
+    } // end main(String[])
+
+} // end class TestOutputLog
@@ -0,0 +1,99 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.BatchValues.Holding;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import static com.moneydance.modules.features.ibondvalues.Checks.require;
+
+/**
+ * Verify value projections are reproducible from a seed regardless of thread count,
+ * agree with the interest engine while rates are known, and widen afterwards.
+ */
+public class TestProjection {
+    private static final int NUM_HOLDINGS = 40;
+    private static final int NUM_PATHS = 400;
+    private static final int NUM_MONTHS = 10 * 12 + 1;
+
+    /**
+     * @param bands Projected bands
+     * @return Bands rendered for comparison
+     */
+    private static List<String> render(List<ValueProjection.Band> bands) {
+        List<String> lines = new ArrayList<>();
+        bands.forEach(band -> lines.add(band.month() + List.of(band.percentiles()).toString()));
+
+        return lines;
+    } // end render(List<ValueProjection.Band>)
+
+    public static void main(String[] args) {
+        try {
+            IBondImporter importer = FixtureRates.importer();
+            RateTable table = importer.getRateTable();
+            List<Holding> holdings = new ArrayList<>();
+
+            for (int i = 0; i < NUM_HOLDINGS; ++i) {
+                YearMonth issueMonth = RateTable.monthOf(table.lastOrdinal() - i * 7);
+                TreeMap<YearMonth, BigDecimal> monthNet = new TreeMap<>();
+                monthNet.put(issueMonth, BigDecimal.valueOf(1000 + 250 * i));
+                holdings.add(new Holding("h" + i, "IBond%d%02d".formatted(issueMonth.getYear(),
+                        issueMonth.getMonthValue()), monthNet));
+            }
+            YearMonth start = table.lastMonth();
+
+            for (String modelName : new String[] {"bootstrap", "parametric"}) {
+                ValueProjection projection = new ValueProjection(importer,
+                        ValueProjection.model(modelName, table), holdings, start, NUM_MONTHS);
+                long startNanos = System.nanoTime();
+                List<String> parallel = render(projection.project(NUM_PATHS, 42, 4));
+                double seconds = (System.nanoTime() - startNanos) / 1e9;
+                List<String> sequential = render(projection.project(NUM_PATHS, 42, 1));
+                require(parallel.equals(sequential), modelName + " results depend on thread count");
+                require(!parallel.equals(render(projection.project(NUM_PATHS, 43, 4))),
+                        modelName + " results ignore the seed");
+
+                List<ValueProjection.Band> bands = projection.project(NUM_PATHS, 42, 2);
+                for (ValueProjection.Band band : bands) {
+                    BigDecimal[] values = band.percentiles();
+                    for (int p = 1; p < values.length; ++p) {
+                        require(values[p - 1].compareTo(values[p]) <= 0,
+                                "Percentiles out of order in " + band);
+                    }
+                }
+
+                // rates are known through the first semiannual period, so every path agrees
+                BigDecimal expected = BigDecimal.ZERO;
+                for (Holding holding : holdings) {
+                    BigDecimal[] bal = {holding.netBetween(null, start)};
+                    importer.calcIBondInterestTxns(holding.ticker(), holding::netFor, rates -> {})
+                            .forEach(txn -> {
+                                if (!txn.payMonth().isAfter(start)) {
+                                    bal[0] = txn.endingBal();
+                                }
+                            });
+                    expected = expected.add(bal[0]);
+                }
+                BigDecimal[] first = bands.getFirst().percentiles();
+                require(first[0].compareTo(expected) == 0
+                        && first[first.length - 1].compareTo(expected) == 0,
+                        "%s first month %s, expected %s".formatted(modelName, List.of(first),
+                                expected));
+                BigDecimal[] last = bands.getLast().percentiles();
+                require(last[last.length - 1].compareTo(last[0]) > 0,
+                        modelName + " bands did not widen: " + List.of(last));
+
+                System.out.format("Passed %s: %d paths in %.3f s (%,.0f paths/s); %s %s%n",
+                        modelName, NUM_PATHS, seconds, NUM_PATHS / seconds,
+                        bands.getLast().month(), List.of(last));
+            } // end for each model
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+    } // end main(String[])
+
+} // end class TestProjection
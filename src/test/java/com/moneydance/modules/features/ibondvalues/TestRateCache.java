@@ -0,0 +1,159 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.sun.net.httpserver.HttpServer;
+import io.github.jrhillery.moneydance.MdUtil;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.moneydance.modules.features.ibondvalues.Checks.check;
+
+/**
+ * Exercise the persistent rate cache against a local HTTP stand-in for TreasuryDirect.
+ */
+public class TestRateCache {
+    private static final String FIXTURE = "series-i-rate-history-fixture.xlsx";
+    private static final String ETAG = "\"fixture-1\"";
+
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+    private final AtomicInteger unavailableResponses = new AtomicInteger();
+    private final AtomicBoolean unavailable = new AtomicBoolean();
+    private final HashMap<String, String> storage = new HashMap<>();
+    private HttpServer server;
+
+    /**
+     * Start a local server that returns 200 with our fixture, or 304 when the ETag matches,
+     * or 503 while marked unavailable.
+     */
+    private void startServer() throws Exception {
+        byte[] fixture;
+        try (InputStream iStream = getClass().getClassLoader().getResourceAsStream(FIXTURE)) {
+            if (iStream == null)
+                throw new IllegalStateException("Missing test resource " + FIXTURE);
+            fixture = iStream.readAllBytes();
+        }
+        this.server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/", exchange -> {
+            if (this.unavailable.get()) {
+                this.unavailableResponses.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+            } else if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                this.notModifiedResponses.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                this.fullResponses.incrementAndGet();
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                exchange.sendResponseHeaders(200, fixture.length);
+                try (OutputStream oStream = exchange.getResponseBody()) {
+                    oStream.write(fixture);
+                }
+            }
+            exchange.close();
+        });
+        this.server.start();
+
+    } // end startServer()
+
+    /**
+     * @param revalidateHours Hours between checks for a newer spreadsheet
+     * @return Importer using our local server and shared storage
+     */
+    private IBondImporter newImporter(int revalidateHours) throws Exception {
+
+        return newImporter(revalidateHours, false);
+    } // end newImporter(int)
+
+    /**
+     * @param revalidateHours Hours between checks for a newer spreadsheet
+     * @param useBundled      true to fall back on rates bundled with the extension
+     * @return Importer using our local server and shared storage
+     */
+    private IBondImporter newImporter(int revalidateHours, boolean useBundled) throws Exception {
+        Properties props = MdUtil.loadProps("ibond-values.properties", IBondImporter.class);
+        props.setProperty("url.treasurydirect", "http://localhost:%d/rates.xlsx"
+                .formatted(this.server.getAddress().getPort()));
+        props.setProperty("cache.revalidate.hours", Integer.toString(revalidateHours));
+        props.setProperty("rates.bundled", Boolean.toString(useBundled));
+
+        return new IBondImporter(props, this.storage);
+    } // end newImporter(int, boolean)
+
+    /**
+     * @param importer Importer with rates loaded
+     * @return Text of a sample calculation, used to compare rate sources
+     */
+    private static String sampleCalc(IBondImporter importer) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        importer.calcIBondInterestTxns("IBond200105",
+                month -> month.toString().equals("2001-05") ? BigDecimal.valueOf(5000)
+                        : BigDecimal.ZERO,
+                rates -> {}).forEach(txn ->
+                        sb.append(txn).append(' ').append(txn.endingBal()).append('\n'));
+
+        return sb.toString();
+    } // end sampleCalc(IBondImporter)
+
+    private void runTests() throws Exception {
+        String downloaded;
+        startServer();
+        try {
+            IBondImporter importer = newImporter(0);
+            importer.loadIBondRates();
+            downloaded = sampleCalc(importer);
+            check(this.fullResponses.get() == 1, "initial load downloads the spreadsheet");
+
+            importer = newImporter(24);
+            importer.loadIBondRates();
+            check(this.fullResponses.get() == 1 && this.notModifiedResponses.get() == 0,
+                    "fresh cache skips the network");
+            check(downloaded.equals(sampleCalc(importer)), "cached rates match downloaded rates");
+
+            importer = newImporter(0);
+            importer.loadIBondRates();
+            check(this.fullResponses.get() == 1 && this.notModifiedResponses.get() == 1,
+                    "stale cache revalidates with a conditional GET");
+            check(downloaded.equals(sampleCalc(importer)),
+                    "not modified response uses cached rates");
+
+            this.unavailable.set(true);
+            importer = newImporter(0);
+            importer.loadIBondRates();
+            check(this.unavailableResponses.get() == 1, "stale cache requests the spreadsheet");
+            check(downloaded.equals(sampleCalc(importer)),
+                    "error status falls back to cached rates");
+
+            // bundled rates never stand in for a download when nothing is cached
+            this.unavailable.set(false);
+            this.storage.clear();
+            importer = newImporter(24, true);
+            importer.loadIBondRates();
+            check(this.fullResponses.get() == 2, "empty cache downloads despite bundled rates");
+        } finally {
+            this.server.stop(0);
+        }
+
+        IBondImporter importer = newImporter(0);
+        importer.loadIBondRates();
+        check(downloaded.equals(sampleCalc(importer)), "offline load falls back to cached rates");
+
+    } // end runTests()
+
+    public static void main(String[] args) {
+        try {
+            new TestRateCache().runTests();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+    } // end main(String[])
+
+} // end class TestRateCache
@@ -0,0 +1,88 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.IBondImporter.IBondRateRec;
+
+import java.time.YearMonth;
+import java.util.TreeMap;
+
+/**
+ * Micro-benchmark comparing month-ordinal rate lookups with TreeMap floor lookups.
+ */
+public class TestRateLookupBenchmark {
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int TIMED_ROUNDS = 200;
+
+    /**
+     * @param months     Months to look up
+     * @param iBondRates Mapping from months to historical I bond interest rates
+     * @return Checksum of the rates found
+     */
+    private static long treeMapRound(YearMonth[] months,
+            TreeMap<YearMonth, IBondRateRec> iBondRates) {
+        long sum = 0;
+        for (YearMonth month : months) {
+            sum += iBondRates.floorEntry(month).getValue().inflationRate().unscaledValue()
+                    .longValue();
+        }
+
+        return sum;
+    } // end treeMapRound(YearMonth[], TreeMap)
+
+    /**
+     * @param ordinals Month ordinals to look up
+     * @param table    Rate table to use
+     * @return Checksum of the rates found
+     */
+    private static long ordinalRound(int[] ordinals, RateTable table) {
+        long sum = 0;
+        for (int ordinal : ordinals) {
+            sum += table.inflationBasisPoints(ordinal);
+        }
+
+        return sum;
+    } // end ordinalRound(int[], RateTable)
+
+    public static void main(String[] args) {
+        try {
+            TreeMap<YearMonth, IBondRateRec> iBondRates = FixtureRates.load();
+            RateTable table = RateTable.publish(iBondRates);
+
+            // every month of a 30-year bond for each issue month in the fixture
+            int numMonths = (table.lastOrdinal() - table.firstOrdinal() + 1) * 360;
+            YearMonth[] months = new YearMonth[numMonths];
+            int[] ordinals = new int[numMonths];
+            int i = 0;
+            for (int issue = table.firstOrdinal(); issue <= table.lastOrdinal(); ++issue) {
+                for (int m = 0; m < 360; ++m, ++i) {
+                    ordinals[i] = issue + m;
+                    months[i] = RateTable.monthOf(ordinals[i]);
+                }
+            }
+            for (int r = 0; r < WARMUP_ROUNDS; ++r) {
+                if (treeMapRound(months, iBondRates) != ordinalRound(ordinals, table))
+                    throw new IllegalStateException("Lookups disagree");
+            }
+
+            long start = System.nanoTime();
+            long check = 0;
+            for (int r = 0; r < TIMED_ROUNDS; ++r) {
+                check += treeMapRound(months, iBondRates);
+            }
+            double treeNs = (double) (System.nanoTime() - start) / TIMED_ROUNDS / numMonths;
+
+            start = System.nanoTime();
+            for (int r = 0; r < TIMED_ROUNDS; ++r) {
+                check -= ordinalRound(ordinals, table);
+            }
+            double ordinalNs = (double) (System.nanoTime() - start) / TIMED_ROUNDS / numMonths;
+
+            System.out.format("TreeMap floorEntry: %.2f ns/lookup%n", treeNs);
+            System.out.format("Month ordinal index: %.2f ns/lookup (%.1fx faster, check %d)%n",
+                    ordinalNs, treeNs / ordinalNs, check);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+    } // end main(String[])
+
+} // end class TestRateLookupBenchmark
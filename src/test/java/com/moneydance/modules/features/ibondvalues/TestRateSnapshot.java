@@ -0,0 +1,75 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.IBondImporter.IBondRateRec;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.util.TreeMap;
+
+/**
+ * Verify a bundled rate snapshot generated from our fixture spreadsheet reads back
+ * the same rates as parsing the spreadsheet, generating one from a missing spreadsheet
+ * fails, and the build bundled a snapshot; and time reading it.
+ */
+public class TestRateSnapshot {
+    private static final int TIMED_ROUNDS = 1000;
+
+    public static void main(String[] args) {
+        try {
+            TreeMap<YearMonth, IBondRateRec> parsed = FixtureRates.load();
+            Path xlsx = Files.createTempFile("fixture", ".xlsx");
+            Path snapshot = Files.createTempFile("ibond-rates", ".bin");
+            try (InputStream iStream = TestRateSnapshot.class.getClassLoader()
+                    .getResourceAsStream(FixtureRates.FIXTURE)) {
+                Files.copy(iStream, xlsx, StandardCopyOption.REPLACE_EXISTING);
+            }
+            RateSnapshot.main(new String[] {xlsx.toUri().toString(), snapshot.toString()});
+            byte[] bytes = Files.readAllBytes(snapshot);
+            Files.delete(xlsx);
+            Files.delete(snapshot);
+
+            if (bytes.length != 8 + 8 * parsed.size())
+                throw new IllegalStateException("Snapshot of %d records has %d bytes"
+                        .formatted(parsed.size(), bytes.length));
+            TreeMap<YearMonth, IBondRateRec> read =
+                    RateSnapshot.read(new ByteArrayInputStream(bytes));
+            if (!read.equals(parsed))
+                throw new IllegalStateException("Snapshot rates differ from spreadsheet rates");
+
+            try {
+                RateSnapshot.read(new ByteArrayInputStream(bytes, 0, bytes.length - 3));
+                throw new IllegalStateException("Truncated snapshot was read");
+            } catch (IOException e) {
+                // expected
+            }
+
+            try {
+                RateSnapshot.main(new String[] {xlsx.toUri().toString(), snapshot.toString()});
+                throw new IllegalStateException("Snapshot generated from a missing spreadsheet");
+            } catch (IOException e) {
+                // expected
+            }
+            if (Files.exists(snapshot))
+                throw new IllegalStateException("Missing spreadsheet left a snapshot");
+            if (RateSnapshot.bundled().isEmpty())
+                throw new IllegalStateException("Build did not bundle " + RateSnapshot.RESOURCE);
+
+            long start = System.nanoTime();
+            for (int r = 0; r < TIMED_ROUNDS; ++r) {
+                RateSnapshot.read(new ByteArrayInputStream(bytes));
+            }
+            double readUs = (System.nanoTime() - start) / 1e3 / TIMED_ROUNDS;
+            System.out.format("Passed: %d rate records in %d bytes, read in %.1f us%n",
+                    read.size(), bytes.length, readUs);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+    } // end main(String[])
+
+} // end class TestRateSnapshot
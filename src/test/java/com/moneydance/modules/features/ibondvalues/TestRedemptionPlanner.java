@@ -0,0 +1,229 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import com.moneydance.modules.features.ibondvalues.BatchValues.Holding;
+import com.moneydance.modules.features.ibondvalues.RedemptionPlanner.Plan;
+import com.moneydance.modules.features.ibondvalues.RedemptionPlanner.Redemption;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import static com.moneydance.modules.features.ibondvalues.Checks.require;
+import static java.math.MathContext.DECIMAL64;
+import static java.math.RoundingMode.FLOOR;
+import static java.math.RoundingMode.HALF_UP;
+
+/**
+ * Verify redemption plans are the cheapest combinations of redemptions costed by
+ * full calculations from issue, that costs from calculations resumed at checkpoints
+ * match full calculations, and report planning speed.
+ */
+public class TestRedemptionPlanner {
+    private static final BigDecimal STEP = BigDecimal.valueOf(500);
+    private static final int HORIZON_YEARS = 5;
+
+    /**
+     * @param issueMonth Month issued
+     * @param amount     Amount bought
+     * @return Holding of one purchase
+     */
+    private static Holding holding(YearMonth issueMonth, long amount) {
+        TreeMap<YearMonth, BigDecimal> monthNet = new TreeMap<>();
+        monthNet.put(issueMonth, BigDecimal.valueOf(amount));
+
+        return new Holding(issueMonth.toString(), "IBond%d%02d".formatted(issueMonth.getYear(),
+                issueMonth.getMonthValue()), monthNet);
+    } // end holding(YearMonth, long)
+
+    /**
+     * Value a holding at the horizon with a full calculation from issue.
+     *
+     * @param importer Importer with rates loaded
+     * @param table    Rate table extended through the horizon
+     * @param holding  Holding to value
+     * @param month    Redemption month
+     * @param redeemed Amount redeemed that month
+     * @param horizon  Month to value
+     * @return Value at the horizon
+     */
+    private static BigDecimal horizonValue(IBondImporter importer, RateTable table, Holding holding,
+            YearMonth month, BigDecimal redeemed, YearMonth horizon) throws Exception {
+        CalcTxnList txns = importer.calcInterestTxns(
+                table.compositeSchedule(importer.getDateForTicker(holding.ticker())),
+                m -> m.equals(month) ? holding.netFor(m).subtract(redeemed) : holding.netFor(m),
+                rates -> {}, null, null);
+        BigDecimal[] value = {null};
+        YearMonth[] valueMonth = {null};
+        txns.forEach(txn -> {
+            if (!txn.payMonth().isAfter(horizon)) {
+                value[0] = txn.endingBal();
+                valueMonth[0] = txn.payMonth();
+            }
+        });
+        BigDecimal later = holding.netBetween(valueMonth[0], horizon);
+
+        return value[0].add(valueMonth[0].isBefore(month) ? later.subtract(redeemed) : later);
+    } // end horizonValue(IBondImporter, RateTable, Holding, YearMonth, BigDecimal, YearMonth)
+
+    /**
+     * Find the cheapest cost of raising at least each number of steps from one holding,
+     * costing every partial and whole redemption with full calculations from issue.
+     *
+     * @param importer    Importer with rates loaded
+     * @param table       Rate table extended through the horizon
+     * @param holding     Holding to redeem from
+     * @param month       Redemption month
+     * @param horizon     Month through which to count forgone interest
+     * @param targetUnits Steps needed to reach the target amount
+     * @return Cheapest cost by number of steps, null where the holding can't raise them
+     */
+    private static BigDecimal[] cheapestCosts(IBondImporter importer, RateTable table,
+            Holding holding, YearMonth month, YearMonth horizon, int targetUnits) throws Exception {
+        BigDecimal[] cheapest = new BigDecimal[targetUnits + 1];
+        cheapest[0] = BigDecimal.ZERO;
+        YearMonth issueMonth = importer.getDateForTicker(holding.ticker());
+        if (month.isBefore(issueMonth.plusMonths(RedemptionPlanner.MIN_HOLD_MONTHS)))
+            return cheapest;
+
+        BigDecimal available = horizonValue(importer, table, holding, month, BigDecimal.ZERO,
+                month);
+        BigDecimal baseValue = horizonValue(importer, table, holding, month, BigDecimal.ZERO,
+                horizon);
+        BigDecimal[] pendingInterest = {BigDecimal.ZERO};
+        if (month.isBefore(issueMonth.plusYears(IBondImporter.PENALTY_YEARS))) {
+            importer.calcInterestTxns(table.compositeSchedule(issueMonth), holding::netFor,
+                    rates -> {}, null, null).forEach(txn -> {
+                YearMonth penaltyEnd = month.plusMonths(IBondImporter.PENALTY_MONTHS);
+                if (txn.payMonth().isAfter(month) && !txn.payMonth().isAfter(penaltyEnd)) {
+                    pendingInterest[0] = pendingInterest[0].add(txn.payAmount());
+                }
+            });
+        }
+
+        // partial redemptions of each step multiple leaving the minimum, then the whole holding
+        List<BigDecimal> amounts = new ArrayList<>();
+        List<Integer> amountUnits = new ArrayList<>();
+        for (int units = 1; units <= targetUnits; ++units) {
+            BigDecimal amount = STEP.multiply(BigDecimal.valueOf(units));
+            if (amount.compareTo(available.subtract(RedemptionPlanner.MIN_REDEMPTION)) <= 0
+                    && amount.compareTo(RedemptionPlanner.MIN_REDEMPTION) >= 0) {
+                amounts.add(amount);
+                amountUnits.add(units);
+            }
+        }
+        amounts.add(available);
+        amountUnits.add(Math.min(targetUnits, available.divide(STEP, 0, FLOOR).intValueExact()));
+
+        for (int a = 0; a < amounts.size(); ++a) {
+            BigDecimal amount = amounts.get(a);
+            BigDecimal cost = baseValue
+                    .subtract(horizonValue(importer, table, holding, month, amount, horizon))
+                    .subtract(amount)
+                    .add(pendingInterest[0].multiply(amount).divide(available, DECIMAL64)
+                            .setScale(2, HALF_UP));
+            for (int units = 1; units <= amountUnits.get(a); ++units) {
+                if (cheapest[units] == null || cost.compareTo(cheapest[units]) < 0) {
+                    cheapest[units] = cost;
+                }
+            }
+        } // end for each redemption amount
+
+        return cheapest;
+    } // end cheapestCosts(IBondImporter, RateTable, Holding, YearMonth, YearMonth, int)
+
+    public static void main(String[] args) {
+        try {
+            IBondImporter importer = FixtureRates.importer();
+            RateTable table = importer.getRateTable();
+            YearMonth month = table.lastMonth();
+            YearMonth horizon = month.plusYears(HORIZON_YEARS);
+            List<Holding> holdings = List.of(holding(YearMonth.of(2001, 5), 3000),
+                    holding(YearMonth.of(2012, 1), 4000), holding(month.minusMonths(20), 5000),
+                    holding(YearMonth.of(2020, 5), 2000));
+            BigDecimal target = BigDecimal.valueOf(6000);
+            int targetUnits = target.divide(STEP).intValueExact();
+
+            // find each holding's cheapest way to raise each number of steps on its own
+            RateTable extended = ValueProjection.extendRates(table, horizon, rate -> rate);
+            BigDecimal[][] cheapest = new BigDecimal[holdings.size()][];
+            for (int h = 0; h < holdings.size(); ++h) {
+                cheapest[h] = cheapestCosts(importer, extended, holdings.get(h), month, horizon,
+                        targetUnits);
+            }
+
+            // exhaustively combine them
+            BigDecimal bruteForce = null;
+            int numCombos = (int) Math.pow(targetUnits + 1, holdings.size());
+            for (int combo = 0; combo < numCombos; ++combo) {
+                BigDecimal cost = BigDecimal.ZERO;
+                int units = 0;
+                for (int h = 0, c = combo; h < holdings.size() && cost != null;
+                        ++h, c /= targetUnits + 1) {
+                    BigDecimal part = cheapest[h][c % (targetUnits + 1)];
+                    cost = part == null ? null : cost.add(part);
+                    units += c % (targetUnits + 1);
+                }
+                if (cost != null && units >= targetUnits
+                        && (bruteForce == null || cost.compareTo(bruteForce) < 0)) {
+                    bruteForce = cost;
+                }
+            }
+
+            RedemptionPlanner planner = new RedemptionPlanner(importer, holdings, month, horizon,
+                    STEP);
+            List<Plan> plans = planner.plan(target, 5);
+            require(!plans.isEmpty(), "No plan raises " + target);
+            Plan best = plans.getFirst();
+            require(best.cost().compareTo(bruteForce) == 0,
+                    "Best plan costs %s, exhaustive search found %s".formatted(best.cost(),
+                            bruteForce));
+            for (int p = 0; p < plans.size(); ++p) {
+                require(plans.get(p).amount().compareTo(target) >= 0,
+                        "Plan raises too little: " + plans.get(p));
+                require(p == 0 || plans.get(p - 1).cost().compareTo(plans.get(p).cost()) <= 0,
+                        "Plans out of cost order");
+            }
+
+            // costs from resumed calculations match full calculations from issue
+            for (Redemption redemption : best.redemptions()) {
+                Holding holding = redemption.holding();
+                BigDecimal forgone = horizonValue(importer, extended, holding, month,
+                        BigDecimal.ZERO, horizon)
+                        .subtract(horizonValue(importer, extended, holding, month,
+                                redemption.amount(), horizon))
+                        .subtract(redemption.amount());
+                require(forgone.compareTo(redemption.forgoneInterest()) == 0,
+                        "Redeeming %s from %s forgoes %s, full calculation gives %s".formatted(
+                                redemption.amount(), holding.id(), redemption.forgoneInterest(),
+                                forgone));
+                boolean penalized = month.isBefore(YearMonth.parse(holding.id()).plusYears(5));
+                require(penalized == (redemption.penalty().signum() > 0),
+                        "Penalty %s for %s".formatted(redemption.penalty(), holding.id()));
+            }
+
+            // many holdings with fine steps stay quick
+            List<Holding> many = new ArrayList<>();
+            for (int i = 0; i < 60; ++i) {
+                many.add(holding(RateTable.monthOf(table.lastOrdinal() - 12 - i * 5),
+                        1000 + 100L * i));
+            }
+            long startNanos = System.nanoTime();
+            RedemptionPlanner manyPlanner = new RedemptionPlanner(importer, many, month, horizon,
+                    RedemptionPlanner.MIN_REDEMPTION);
+            List<Plan> manyPlans = manyPlanner.plan(BigDecimal.valueOf(5000), 3);
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            require(manyPlans.size() == 3, "Found %d plans".formatted(manyPlans.size()));
+
+            System.out.format("Passed: best of %d plans costs %s using %d redemptions;"
+                    + " %d holdings planned with %,d what-if calculations in %.3f s%n",
+                    plans.size(), best.cost(), best.redemptions().size(), many.size(),
+                    manyPlanner.evaluations(), seconds);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+    } // end main(String[])
+
+} // end class TestRedemptionPlanner
@@ -0,0 +1,90 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+
+import static com.moneydance.modules.features.ibondvalues.Checks.require;
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Counter.BYTES_DOWNLOADED;
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Counter.CALC_TXNS;
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Counter.MONTHS;
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Phase.DOWNLOAD;
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Phase.PARSE;
+
+/**
+ * Verify run metrics count parsing and calculations, take in work done elsewhere,
+ * and keep a bounded history of recent runs in local storage.
+ */
+public class TestRunMetrics {
+    private static final int MAX_HISTORY = 3;
+
+    public static void main(String[] args) {
+        try {
+            // parsing the fixture counts its bytes and times spooling and parsing
+            RunMetrics parseMetrics = new RunMetrics(MAX_HISTORY);
+            byte[] fixture;
+            try (InputStream iStream = TestRunMetrics.class.getClassLoader()
+                    .getResourceAsStream(FixtureRates.FIXTURE)) {
+                fixture = iStream.readAllBytes();
+            }
+            new RateSheetParser(URI.create(FixtureRates.FIXTURE), "Data", "InflationRate",
+                    "FixedRate", "From", new CancellationToken(), parseMetrics)
+                    .parse(new ByteArrayInputStream(fixture));
+            long numBytes = parseMetrics.count(BYTES_DOWNLOADED);
+            require(numBytes == fixture.length,
+                    "Counted %d of %d bytes".formatted(numBytes, fixture.length));
+            require(parseMetrics.nanos(DOWNLOAD) > 0 && parseMetrics.nanos(PARSE) > 0,
+                    "Spooling and parsing were not timed");
+
+            // a run taking over prefetched rates reports their download and parse
+            RunMetrics takeover = new RunMetrics(MAX_HISTORY);
+            takeover.merge(parseMetrics);
+            require(takeover.count(BYTES_DOWNLOADED) == numBytes
+                    && takeover.nanos(DOWNLOAD) == parseMetrics.nanos(DOWNLOAD)
+                    && takeover.nanos(PARSE) == parseMetrics.nanos(PARSE),
+                    "Prefetch metrics were not merged");
+            require(takeover.summary(List.of()).contains("download"),
+                    "Summary lacks the prefetch download: " + takeover.summary(List.of()));
+
+            // a 10-year calculation simulates 20 semiannual periods
+            IBondImporter importer = FixtureRates.importer();
+            YearMonth issueMonth = YearMonth.of(2010, 1);
+            CalcTxnList txns = importer.calcIBondInterestTxns("IBond201001",
+                    month -> month.equals(issueMonth) ? BigDecimal.valueOf(10000) : BigDecimal.ZERO,
+                    rates -> {}, null, issueMonth.plusYears(10));
+            RunMetrics metrics = importer.metrics();
+            require(metrics.count(CALC_TXNS) == txns.size(),
+                    "Counted %d of %d payments".formatted(metrics.count(CALC_TXNS), txns.size()));
+            require(metrics.count(MONTHS) >= 120,
+                    "Counted only %d months".formatted(metrics.count(MONTHS)));
+
+            // recording again replaces this run, and only the most recent runs are kept
+            HashMap<String, String> storage = new HashMap<>();
+            storage.put("ibond-values.runMetrics.history", "not,a;history");
+            require(RunMetrics.history(storage).isEmpty(), "Unusable history was read");
+            for (int run = 0; run < MAX_HISTORY + 2; ++run) {
+                RunMetrics runMetrics = new RunMetrics(MAX_HISTORY);
+                runMetrics.finish();
+                runMetrics.record(storage);
+                runMetrics.record(storage);
+                Thread.sleep(2);
+            }
+            List<RunMetrics.HistoryRec> history = RunMetrics.history(storage);
+            require(history.size() == MAX_HISTORY, "Kept %d runs".formatted(history.size()));
+
+            metrics.finish();
+            String summary = metrics.summary(history);
+            require(summary.contains("median of last %d".formatted(MAX_HISTORY)),
+                    "Summary lacks a comparison: " + summary);
+            System.out.format("Passed: %s%n", summary);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+    } // end main(String[])
+
+} // end class TestRunMetrics
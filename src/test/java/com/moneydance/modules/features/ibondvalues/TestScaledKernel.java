@@ -0,0 +1,82 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.function.Function;
+
+/**
+ * Verify the scaled-long interest kernel reproduces the BigDecimal calculations digit
+ * for digit, including ending balances and checkpoints, for every fixture cohort.
+ */
+public class TestScaledKernel {
+
+    /**
+     * @param issueMonth Issue month of the bond
+     * @param scenario   0 for a plain purchase, 1 for a large purchase,
+     *                   2 for a deposit and partial redemptions
+     * @return Function providing total net deposits and redemptions for a month
+     */
+    private static Function<YearMonth, BigDecimal> monthNet(YearMonth issueMonth, int scenario) {
+        return month -> {
+            if (month.equals(issueMonth))
+                return scenario == 1 ? BigDecimal.valueOf(1000000) : BigDecimal.valueOf(10000);
+            if (scenario == 2 && month.equals(issueMonth.plusMonths(8)))
+                return BigDecimal.valueOf(5000);
+            if (scenario == 2 && month.equals(issueMonth.plusMonths(40)))
+                return BigDecimal.valueOf(-2500.37);
+            if (scenario == 2 && month.equals(issueMonth.plusMonths(71)))
+                return BigDecimal.valueOf(-250);
+
+            return BigDecimal.ZERO;
+        };
+    } // end monthNet(YearMonth, int)
+
+    /**
+     * @param txns Calculated interest payment transactions
+     * @return Text of the transactions and any checkpoint
+     */
+    private static String describe(CalcTxnList txns) {
+        StringBuilder sb = new StringBuilder();
+        txns.forEach(txn -> sb.append(txn).append(" bal ").append(txn.endingBal()).append('\n'));
+        txns.checkpoint().ifPresent(checkpoint -> sb.append(checkpoint.toStorageString()));
+
+        return sb.toString();
+    } // end describe(CalcTxnList)
+
+    public static void main(String[] args) {
+        try {
+            IBondImporter decimal = FixtureRates.importer("decimal");
+            RateTable table = decimal.getRateTable();
+            int compared = 0;
+
+            for (int issue = table.firstOrdinal(); issue <= table.lastOrdinal(); ++issue) {
+                YearMonth issueMonth = RateTable.monthOf(issue);
+                String ticker = "IBond%d%02d".formatted(issueMonth.getYear(),
+                        issueMonth.getMonthValue());
+                CompositeRateSchedule schedule = table.compositeSchedule(issueMonth);
+
+                for (int scenario = 0; scenario < 3; ++scenario) {
+                    Function<YearMonth, BigDecimal> monthNet = monthNet(issueMonth, scenario);
+                    YearMonth limit = issueMonth.plusMonths(61);
+                    String expected = describe(decimal.calcIBondInterestTxns(ticker, monthNet,
+                            rates -> {}, null, limit));
+                    // call the kernel directly so a fallback to BigDecimal cannot mask a difference
+                    String actual = describe(new ScaledInterestKernel(schedule, monthNet,
+                            new CancellationToken()).calcInterestTxns(rates -> {}, null, limit));
+
+                    if (!expected.equals(actual))
+                        throw new IllegalStateException("Scaled kernel differs for %s scenario %d"
+                                .formatted(ticker, scenario));
+                    ++compared;
+                }
+            }
+            System.out.format(
+                    "Passed: %d scaled kernel calculations match BigDecimal calculations%n",
+                    compared);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+    } // end main(String[])
+
+} // end class TestScaledKernel
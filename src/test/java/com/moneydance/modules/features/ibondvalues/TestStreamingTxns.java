@@ -0,0 +1,137 @@
+package com.moneydance.modules.features.ibondvalues;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.moneydance.modules.features.ibondvalues.RunMetrics.Counter.MONTHS;
+
+/**
+ * Verify horizon-bounded and streamed interest calculations produce the transactions
+ * of a full calculation through the horizon, for every fixture cohort with both
+ * calculation kernels, and that streaming only simulates the periods consumed.
+ */
+public class TestStreamingTxns {
+
+    /**
+     * @param issueMonth Issue month of the bond
+     * @param redeem     true to include a deposit and partial redemptions
+     * @return Function providing total net deposits and redemptions for a month
+     */
+    private static Function<YearMonth, BigDecimal> monthNet(YearMonth issueMonth, boolean redeem) {
+        return month -> {
+            if (month.equals(issueMonth))
+                return BigDecimal.valueOf(10000);
+            if (redeem && month.equals(issueMonth.plusMonths(8)))
+                return BigDecimal.valueOf(5000);
+            if (redeem && month.equals(issueMonth.plusMonths(40)))
+                return BigDecimal.valueOf(-2500.37);
+
+            return BigDecimal.ZERO;
+        };
+    } // end monthNet(YearMonth, boolean)
+
+    /**
+     * @param forEach Source of calculated interest payment transactions
+     * @param horizon Latest payment month to include, or null for all
+     * @return Text of the transactions payable through the horizon
+     */
+    private static String describe(Consumer<Consumer<CalcTxn>> forEach, YearMonth horizon) {
+        StringBuilder sb = new StringBuilder();
+        forEach.accept(txn -> {
+            if (horizon == null || !txn.payMonth().isAfter(horizon)) {
+                sb.append(txn).append(" bal ").append(txn.endingBal()).append('\n');
+            }
+        });
+
+        return sb.toString();
+    } // end describe(Consumer<Consumer<CalcTxn>>, YearMonth)
+
+    public static void main(String[] args) {
+        try {
+            int compared = 0;
+
+            for (String kernel : new String[] {"scaled", "decimal"}) {
+                IBondImporter importer = FixtureRates.importer(kernel);
+                RateTable table = importer.getRateTable();
+
+                for (int issue = table.firstOrdinal(); issue <= table.lastOrdinal(); issue += 5) {
+                    YearMonth issueMonth = RateTable.monthOf(issue);
+                    String ticker = "IBond%d%02d".formatted(issueMonth.getYear(),
+                            issueMonth.getMonthValue());
+
+                    for (boolean redeem : new boolean[] {false, true}) {
+                        Function<YearMonth, BigDecimal> monthNet = monthNet(issueMonth, redeem);
+                        CalcTxnList full = importer.calcIBondInterestTxns(ticker, monthNet,
+                                rates -> {});
+                        YearMonth[] horizons = {null, issueMonth, issueMonth.plusMonths(7),
+                                issueMonth.plusMonths(42), issueMonth.plusMonths(61),
+                                table.lastMonth()};
+
+                        for (YearMonth horizon : horizons) {
+                            String expected = describe(full::forEach, horizon);
+                            CalcTxnList bounded = importer.calcIBondInterestTxns(ticker, monthNet,
+                                    rates -> {}, null, null, horizon);
+                            if (!expected.equals(describe(bounded::forEach, null)))
+                                throw new IllegalStateException(
+                                        "%s %s (redeem %s) through %s differs"
+                                        .formatted(kernel, ticker, redeem, horizon));
+                            String streamed = describe(importer.streamIBondInterestTxns(ticker,
+                                    monthNet, rates -> {}, horizon)::forEach, null);
+                            if (!expected.equals(streamed))
+                                throw new IllegalStateException(
+                                        "%s %s (redeem %s) streamed through %s differs"
+                                        .formatted(kernel, ticker, redeem, horizon));
+                            ++compared;
+                        }
+                    }
+                }
+            }
+
+            // taking the first payment of an old bond simulates just its first period
+            IBondImporter importer = FixtureRates.importer();
+            RateTable table = importer.getRateTable();
+            YearMonth oldIssue = table.firstMonth();
+            String oldTicker = "IBond%d%02d".formatted(oldIssue.getYear(),
+                    oldIssue.getMonthValue());
+            long before = importer.metrics().count(MONTHS);
+            CalcTxn first = importer.streamIBondInterestTxns(oldTicker, monthNet(oldIssue, false),
+                    rates -> {}, null).findFirst().orElseThrow();
+            long firstMonths = importer.metrics().count(MONTHS) - before;
+            if (firstMonths != IBondImporter.SEMIANNUAL_MONTHS)
+                throw new IllegalStateException("Simulated %d months for payment %s"
+                        .formatted(firstMonths, first));
+
+            // bonds bought recently only simulate through this month, as the worker asks
+            YearMonth thisMonth = table.lastMonth();
+            before = importer.metrics().count(MONTHS);
+            for (int issue = table.firstOrdinal(); issue <= table.lastOrdinal(); ++issue) {
+                YearMonth issueMonth = RateTable.monthOf(issue);
+                importer.calcIBondInterestTxns("IBond%d%02d".formatted(issueMonth.getYear(),
+                        issueMonth.getMonthValue()), monthNet(issueMonth, true), rates -> {}, null,
+                        thisMonth, thisMonth);
+            }
+            long boundedMonths = importer.metrics().count(MONTHS) - before;
+            before = importer.metrics().count(MONTHS);
+            for (int issue = table.firstOrdinal(); issue <= table.lastOrdinal(); ++issue) {
+                YearMonth issueMonth = RateTable.monthOf(issue);
+                importer.calcIBondInterestTxns("IBond%d%02d".formatted(issueMonth.getYear(),
+                        issueMonth.getMonthValue()), monthNet(issueMonth, true), rates -> {}, null,
+                        thisMonth);
+            }
+            long fullMonths = importer.metrics().count(MONTHS) - before;
+            if (boundedMonths >= fullMonths)
+                throw new IllegalStateException("Bounded calculations simulated %d months, full %d"
+                        .formatted(boundedMonths, fullMonths));
+
+            System.out.format("Passed: %d bounded and streamed calculations match;"
+                    + " every cohort through %s simulates %,d months instead of %,d%n",
+                    compared, thisMonth, boundedMonths, fullMonths);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+    } // end main(String[])
+
+} // end class TestStreamingTxns